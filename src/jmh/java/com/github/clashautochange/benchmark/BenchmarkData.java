@@ -0,0 +1,103 @@
+package com.github.clashautochange.benchmark;
+
+import com.github.clashautochange.entity.ProxyDelayHistory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试的合成数据
+ */
+public final class BenchmarkData {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    /**
+     * 与实体定义一致的延迟历史表结构，用于直接连接数据库的基准
+     */
+    public static final List<String> HISTORY_SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS proxy_delay_history (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "group_id INT NOT NULL, proxy_id INT NOT NULL, delay INT NOT NULL, test_time DATETIME(6) NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_history_group_time "
+                    + "ON proxy_delay_history (group_id, test_time, proxy_id, delay)",
+            "CREATE INDEX IF NOT EXISTS idx_history_group_proxy_time "
+                    + "ON proxy_delay_history (group_id, proxy_id, test_time, delay)",
+            "CREATE INDEX IF NOT EXISTS idx_history_test_time ON proxy_delay_history (test_time)",
+            "CREATE TABLE IF NOT EXISTS proxy_name_registry (id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(255) NOT NULL UNIQUE)");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 构造与 Clash GET /proxies 结构相同的响应
+     *
+     * @param groupCount 策略组数量
+     * @param nodeCount 节点数量，每个策略组包含全部节点
+     */
+    public static byte[] proxiesPayload(int groupCount, int nodeCount) {
+        StringBuilder json = new StringBuilder("{\"proxies\":{");
+        for (int i = 0; i < nodeCount; i++) {
+            json.append("\"node-").append(i).append("\":{")
+                    .append("\"alive\":true,\"extra\":{},\"id\":\"").append(i).append("\",")
+                    .append("\"history\":[{\"time\":\"2025-01-01T00:00:00Z\",\"delay\":").append(100 + i % 50)
+                    .append("},{\"time\":\"2025-01-01T00:01:00Z\",\"delay\":").append(100 + (i + 22) % 50).append("}],")
+                    .append("\"name\":\"node-").append(i).append("\",")
+                    .append("\"tfo\":false,\"type\":\"Shadowsocks\",\"udp\":true,\"xudp\":false},");
+        }
+        for (int g = 0; g < groupCount; g++) {
+            json.append("\"group-").append(g).append("\":{\"all\":[");
+            for (int i = 0; i < nodeCount; i++) {
+                json.append(i > 0 ? "," : "").append("\"node-").append(i).append('"');
+            }
+            json.append("],\"history\":[],\"name\":\"group-").append(g)
+                    .append("\",\"now\":\"node-0\",\"type\":\"Selector\",\"udp\":true}")
+                    .append(g < groupCount - 1 ? "," : "");
+        }
+        json.append("}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 构造一个策略组的延迟历史，按测试时间先后排列，约10%的记录为未连通
+     *
+     * @param nodeCount 节点数量
+     * @param days 天数
+     * @param intervalMinutes 采样间隔（分钟）
+     */
+    public static List<ProxyDelayHistory> histories(int nodeCount, int days, int intervalMinutes) {
+        Random random = new Random(42);
+        int ticks = days * 24 * 60 / intervalMinutes;
+        List<ProxyDelayHistory> histories = new ArrayList<>(ticks * nodeCount);
+        for (int t = 0; t < ticks; t++) {
+            // 同一次监控的记录共享测试时间，与实际写入一致
+            LocalDateTime testTime = START.plusMinutes((long) t * intervalMinutes);
+            for (int i = 0; i < nodeCount; i++) {
+                int delay = random.nextInt(10) == 0 ? -1 : 50 + random.nextInt(400);
+                histories.add(ProxyDelayHistory.create("group-0", "node-" + i, delay, testTime));
+            }
+        }
+        return histories;
+    }
+
+    /**
+     * 构造一次策略组延迟测试的结果，约10%的节点超时不出现在结果中
+     *
+     * @param nodeCount 节点数量
+     */
+    public static Map<String, Integer> delayResults(int nodeCount) {
+        Random random = new Random(42);
+        Map<String, Integer> results = new HashMap<>();
+        for (int i = 0; i < nodeCount; i++) {
+            if (random.nextInt(10) != 0) {
+                results.put("node-" + i, 50 + random.nextInt(1000));
+            }
+        }
+        return results;
+    }
+}
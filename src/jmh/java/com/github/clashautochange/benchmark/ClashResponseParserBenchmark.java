@@ -0,0 +1,60 @@
+package com.github.clashautochange.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.clashautochange.model.ClashProxy;
+import com.github.clashautochange.service.ClashResponseParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clash GET /proxies 响应解析基准
+ * 对比流式解析器和 Map 树反序列化的耗时和每次解析分配的字节数，分配量用 GC profiler 查看（gc.alloc.rate.norm）：
+ * -Djmh.args="ClashResponseParserBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClashResponseParserBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int nodes;
+
+    @Param({"10"})
+    private int groups;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ClashResponseParser parser = new ClashResponseParser(objectMapper);
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = BenchmarkData.proxiesPayload(groups, nodes);
+    }
+
+    @Benchmark
+    public Map<String, ClashProxy> streaming() throws IOException {
+        return parser.parseProxies(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public Map<?, ?> mapTree() throws IOException {
+        return objectMapper.readValue(payload, Map.class);
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.clashautochange.benchmark;
+
+import com.github.clashautochange.entity.ProxyDelayHistory;
+import com.github.clashautochange.service.ProxyDelayHistoryIngestService;
+import com.github.clashautochange.service.ProxyNameRegistryService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟历史写入基准
+ * 比较一次监控的记录在一个事务中逐行插入（与 IDENTITY 主键下的 saveAll 相同，每行一次往返）和 JDBC 批量插入，
+ * rows 计数器即每秒写入的行数。默认使用内存 H2（MariaDB 兼容模式），测试 MariaDB 时指定一个专用的库：
+ * -Djmh.args="ProxyHistoryIngestBenchmark -p url=jdbc:mariadb://localhost:3306/clash_bench -p username=root -p password=123456"
+ * 只删除本基准写入的记录，不会清空表
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ProxyHistoryIngestBenchmark {
+
+    private static final String GROUP_NAME = "benchmark-ingest";
+
+    @Param({"jdbc:h2:mem:ingest;MODE=MariaDB;DB_CLOSE_DELAY=-1"})
+    private String url;
+
+    @Param({"sa"})
+    private String username;
+
+    @Param({""})
+    private String password;
+
+    @Param({"100", "1000"})
+    private int nodes;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ProxyDelayHistoryIngestService ingestService;
+    private int groupId;
+    private int[] proxyIds;
+    private List<ProxyDelayHistory> histories;
+
+    /**
+     * 写入的行数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Setup
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, username, password);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        BenchmarkData.HISTORY_SCHEMA.forEach(jdbcTemplate::execute);
+        ProxyNameRegistryService registry = new ProxyNameRegistryService(jdbcTemplate);
+        ingestService = new ProxyDelayHistoryIngestService(jdbcTemplate, registry, transactionManager);
+        groupId = registry.intern(GROUP_NAME);
+
+        LocalDateTime testTime = LocalDateTime.of(2025, 1, 1, 0, 0);
+        histories = new ArrayList<>(nodes);
+        proxyIds = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            histories.add(ProxyDelayHistory.create(GROUP_NAME, "node-" + i, i % 10 == 0 ? -1 : 100 + i % 200,
+                    testTime));
+            proxyIds[i] = registry.intern("node-" + i);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM proxy_delay_history WHERE group_id = ?", groupId);
+    }
+
+    @Benchmark
+    public void rowByRow(Rows counter) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < histories.size(); i++) {
+                ProxyDelayHistory history = histories.get(i);
+                jdbcTemplate.update("INSERT INTO proxy_delay_history (group_id, proxy_id, delay, test_time) "
+                                + "VALUES (?, ?, ?, ?)", groupId, proxyIds[i],
+                        history.getDelay(), Timestamp.valueOf(history.getTestTime()));
+            }
+        });
+        counter.rows += histories.size();
+    }
+
+    @Benchmark
+    public void batched(Rows counter) {
+        counter.rows += ingestService.ingest(histories);
+    }
+}
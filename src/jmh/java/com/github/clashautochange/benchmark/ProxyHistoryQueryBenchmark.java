@@ -0,0 +1,172 @@
+package com.github.clashautochange.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟历史查询基准
+ * 在 proxy_delay_history 中准备指定行数的数据（默认5000万行，1000个节点每分钟一次，约35天），
+ * 先用 EXPLAIN 确认图表查询只读覆盖索引、按时间清理使用 test_time 索引，计划不符时直接失败，再测量查询耗时。
+ * 数据只在行数不足时补齐，重复运行时复用。需要一个专用的 MariaDB 库，首次准备数据需要数分钟：
+ * -Djmh.args="ProxyHistoryQueryBenchmark -p url=jdbc:mariadb://localhost:3306/clash_bench?createDatabaseIfNotExist=true"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ProxyHistoryQueryBenchmark {
+
+    private static final int GROUP_ID = 1000000;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static final String GROUP_RANGE_SQL = "SELECT proxy_id, delay, test_time FROM proxy_delay_history "
+            + "WHERE group_id = ? AND test_time BETWEEN ? AND ? ORDER BY test_time";
+
+    private static final String NODE_RANGE_SQL = "SELECT proxy_id, delay, test_time FROM proxy_delay_history "
+            + "WHERE group_id = ? AND proxy_id = ? AND test_time BETWEEN ? AND ? ORDER BY test_time DESC";
+
+    private static final String EXPIRED_SQL = "SELECT COUNT(*) FROM proxy_delay_history WHERE test_time < ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO proxy_delay_history (group_id, proxy_id, delay, test_time) VALUES (?, ?, ?, ?)";
+
+    @Param({"jdbc:mariadb://localhost:3306/clash_bench?createDatabaseIfNotExist=true"})
+    private String url;
+
+    @Param({"root"})
+    private String username;
+
+    @Param({"123456"})
+    private String password;
+
+    @Param({"50000000"})
+    private long rows;
+
+    @Param({"1000"})
+    private int nodes;
+
+    /**
+     * 查询的时间范围（天），截止到数据的最后一分钟
+     */
+    @Param({"1", "7"})
+    private int days;
+
+    private JdbcTemplate jdbcTemplate;
+    private Timestamp rangeStart;
+    private Timestamp rangeEnd;
+    private Timestamp expireBefore;
+
+    @Setup
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, username, password));
+        BenchmarkData.HISTORY_SCHEMA.forEach(jdbcTemplate::execute);
+        fill();
+
+        long ticks = rows / nodes;
+        LocalDateTime end = START.plusMinutes(ticks);
+        rangeEnd = Timestamp.valueOf(end);
+        rangeStart = Timestamp.valueOf(end.minusDays(days));
+        expireBefore = Timestamp.valueOf(START.plusDays(1));
+
+        verifyPlan(GROUP_RANGE_SQL, "idx_history_group_time", true, GROUP_ID, rangeStart, rangeEnd);
+        verifyPlan(NODE_RANGE_SQL, "idx_history_group_proxy_time", true, GROUP_ID, 1, rangeStart, rangeEnd);
+        verifyPlan(EXPIRED_SQL, "idx_history_test_time", false, expireBefore);
+    }
+
+    /**
+     * 补齐基准数据，每次提交10个采样周期
+     */
+    private void fill() {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM proxy_delay_history WHERE group_id = ?",
+                Long.class, GROUP_ID);
+        long ticks = rows / nodes;
+        long tick = existing != null ? existing / nodes : 0;
+        if (tick >= ticks) {
+            return;
+        }
+        System.out.printf("准备基准数据: 已有 %d 行, 目标 %d 行%n", existing, ticks * nodes);
+        long started = System.currentTimeMillis();
+        long written = 0;
+        long nextReport = 1000000;
+        while (tick < ticks) {
+            List<Object[]> batch = new ArrayList<>(nodes * 10);
+            for (long end = Math.min(ticks, tick + 10); tick < end; tick++) {
+                Timestamp testTime = Timestamp.valueOf(START.plusMinutes(tick));
+                for (int proxy = 1; proxy <= nodes; proxy++) {
+                    int delay = (tick + proxy) % 10 == 0 ? -1 : 50 + (int) ((tick * 31 + proxy * 17) % 400);
+                    batch.add(new Object[]{GROUP_ID, proxy, delay, testTime});
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+            written += batch.size();
+            if (written >= nextReport) {
+                System.out.printf("已写入 %d 行, %d 行/秒%n", tick * nodes,
+                        written * 1000 / Math.max(1, System.currentTimeMillis() - started));
+                nextReport += 1000000;
+            }
+        }
+        try {
+            jdbcTemplate.execute("ANALYZE TABLE proxy_delay_history");
+        } catch (Exception e) {
+            // 非 MariaDB 数据库没有 ANALYZE TABLE
+        }
+    }
+
+    /**
+     * 检查查询计划使用了指定索引，covering 为 true 时要求只读索引
+     */
+    private void verifyPlan(String sql, String index, boolean covering, Object... args) {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, args);
+        String text = plan.toString();
+        System.out.println("EXPLAIN " + sql + "\n  " + text);
+        if (!text.toLowerCase().contains(index)) {
+            throw new IllegalStateException("查询没有使用索引 " + index + ": " + text);
+        }
+        if (covering && url.startsWith("jdbc:mariadb") && !text.contains("Using index")) {
+            throw new IllegalStateException("查询没有只读索引 " + index + ": " + text);
+        }
+    }
+
+    @Benchmark
+    public long groupRange() {
+        long[] count = new long[1];
+        jdbcTemplate.query(GROUP_RANGE_SQL, rs -> {
+            count[0]++;
+        }, GROUP_ID, rangeStart, rangeEnd);
+        return count[0];
+    }
+
+    @Benchmark
+    public long nodeRange() {
+        long[] count = new long[1];
+        jdbcTemplate.query(NODE_RANGE_SQL, rs -> {
+            count[0]++;
+        }, GROUP_ID, 1, rangeStart, rangeEnd);
+        return count[0];
+    }
+
+    @Benchmark
+    public Long expiredCount() {
+        return jdbcTemplate.queryForObject(EXPIRED_SQL, Long.class, expireBefore);
+    }
+}
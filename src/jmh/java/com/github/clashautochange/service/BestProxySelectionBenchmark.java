@@ -0,0 +1,85 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自动切换中选择最佳节点的基准
+ * 与 AutoChangePolicy 同包以访问包级私有的 findBestProxy 和 LatencyWindow；
+ * 只按本次延迟选择的旧实现作为对照保留在这里
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BestProxySelectionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int nodes;
+
+    @Param({"500"})
+    private int maxDelay;
+
+    private Map<String, Integer> delayResults;
+    private Map<String, LatencyWindow> windows;
+    private LatencyWindow sampleWindow;
+
+    @Setup
+    public void setUp() {
+        delayResults = BenchmarkData.delayResults(nodes);
+        windows = new HashMap<>();
+        Random random = new Random(42);
+        delayResults.forEach((proxy, delay) -> {
+            LatencyWindow window = new LatencyWindow(20, 0.3);
+            for (int i = 0; i < 20; i++) {
+                window.record(random.nextInt(10) == 0 ? LatencyWindow.LOST : delay + random.nextInt(50), i);
+            }
+            windows.put(proxy, window);
+        });
+        sampleWindow = windows.values().iterator().next();
+    }
+
+    @Benchmark
+    public Optional<Map.Entry<String, Integer>> findBestProxy() {
+        return findBestProxyByDelay(delayResults, maxDelay);
+    }
+
+    @Benchmark
+    public Optional<Map.Entry<String, Integer>> findBestProxyByScore() {
+        return AutoChangePolicy.findBestProxy(delayResults, maxDelay,
+                proxy -> windows.get(proxy).score(0.6, 0.4, 0.5, 1000));
+    }
+
+    @Benchmark
+    public void recordSample() {
+        sampleWindow.record(120, System.currentTimeMillis());
+    }
+
+    /**
+     * 找出延迟最低且不超过最大延迟的代理，按得分选择之前的实现
+     */
+    private static Optional<Map.Entry<String, Integer>> findBestProxyByDelay(Map<String, Integer> delayResults,
+                                                                            int maxDelay) {
+        return delayResults.entrySet().stream()
+                .filter(entry -> entry.getValue() <= maxDelay)
+                .min(Map.Entry.comparingByValue());
+    }
+}
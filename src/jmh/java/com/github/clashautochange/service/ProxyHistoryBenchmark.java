@@ -0,0 +1,75 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.benchmark.BenchmarkData;
+import com.github.clashautochange.entity.ProxyDelayHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟历史聚合基准
+ * 覆盖图表数据转换（convertToChartData）和节点统计接口使用的1小时汇总合并（ProxyDelayRollupService.bucketStats），
+ * 汇总在准备阶段由原始记录生成，只测量合并时间桶和延迟直方图并计算统计的部分，不包含数据库读取。
+ * 采样间隔为60分钟，10000个节点30天约720万条记录；与 ProxyDelayRollupService 同包以访问包级私有的 DelayBucket
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProxyHistoryBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int nodes;
+
+    @Param({"1", "7", "30"})
+    private int days;
+
+    @Param({"60"})
+    private int intervalMinutes;
+
+    private final ProxyDelayHistoryService service = new ProxyDelayHistoryService(null, null);
+    private List<ProxyDelayHistory> histories;
+    private Map<String, TreeMap<LocalDateTime, DelayBucket>> hourBuckets;
+
+    @Setup
+    public void setUp() {
+        histories = BenchmarkData.histories(nodes, days, intervalMinutes);
+        hourBuckets = new HashMap<>();
+        for (ProxyDelayHistory history : histories) {
+            hourBuckets.computeIfAbsent(history.getProxyName(), key -> new TreeMap<>())
+                    .computeIfAbsent(ProxyDelayRollupService.Resolution.HOUR.truncate(history.getTestTime()),
+                            key -> new DelayBucket())
+                    .add(history.getDelay());
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> convertToChartData() {
+        return service.convertToChartData(histories);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Object>> proxyStats() {
+        Map<String, Map<String, Object>> proxyStats = new HashMap<>();
+        hourBuckets.forEach((proxyName, buckets) ->
+                proxyStats.put(proxyName, ProxyDelayRollupService.bucketStats(buckets.values())));
+        return proxyStats;
+    }
+}
@@ -1,12 +1,16 @@
 package com.github.clashautochange.config;
 
+import com.github.clashautochange.model.ClashEndpoint;
 import com.github.clashautochange.service.SystemConfigService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 @Configuration
 public class ClashApiConfig {
@@ -18,32 +22,61 @@ public class ClashApiConfig {
     private String defaultSecret;
     
     private final SystemConfigService systemConfigService;
+
+    /**
+     * 当前生效的端点快照，只在首次访问和配置变更时从数据库加载
+     */
+    private final AtomicReference<ClashEndpoint> endpoint = new AtomicReference<>();
     
     @Autowired
     public ClashApiConfig(@Lazy SystemConfigService systemConfigService) {
         this.systemConfigService = systemConfigService;
     }
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
-
-    public String getBaseUrl() {
+    /**
+     * 获取当前Clash API端点
+     *
+     * @return 端点快照
+     */
+    public ClashEndpoint getEndpoint() {
+        ClashEndpoint current = endpoint.get();
+        if (current != null) {
+            return current;
+        }
         try {
-            String baseUrl = systemConfigService.getConfigValue("clash.api.base-url");
-            return baseUrl.isEmpty() ? defaultBaseUrl : baseUrl;
+            ClashEndpoint loaded = createEndpoint(
+                    systemConfigService.getConfigValue("clash.api.base-url"),
+                    systemConfigService.getConfigValue("clash.api.secret"));
+            endpoint.compareAndSet(null, loaded);
+            return endpoint.get();
         } catch (Exception e) {
-            return defaultBaseUrl;
+            // 数据库不可用时使用默认配置，下次访问时重试加载
+            return createEndpoint(null, null);
         }
     }
 
+    public String getBaseUrl() {
+        return getEndpoint().getBaseUrl();
+    }
+
     public String getSecret() {
-        try {
-            String secret = systemConfigService.getConfigValue("clash.api.secret");
-            return secret.isEmpty() ? defaultSecret : secret;
-        } catch (Exception e) {
-            return defaultSecret;
-        }
+        return getEndpoint().getSecret();
+    }
+
+    /**
+     * 配置保存并提交后替换端点快照，先于读取端点的其他监听器执行
+     *
+     * @param event 配置变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onClashApiConfigChanged(ClashApiConfigChangedEvent event) {
+        endpoint.set(createEndpoint(event.getBaseUrl(), event.getSecret()));
+    }
+
+    private ClashEndpoint createEndpoint(String baseUrl, String secret) {
+        return new ClashEndpoint(
+                baseUrl == null || baseUrl.isEmpty() ? defaultBaseUrl : baseUrl,
+                secret == null || secret.isEmpty() ? defaultSecret : secret);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package com.github.clashautochange.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Clash API配置变更事件
+ * 由SystemConfigService在保存配置后发布
+ */
+@Getter
+@AllArgsConstructor
+public class ClashApiConfigChangedEvent {
+
+    /**
+     * 新的Clash API基础URL
+     */
+    private final String baseUrl;
+
+    /**
+     * 新的Clash API密钥
+     */
+    private final String secret;
+}
@@ -0,0 +1,126 @@
+package com.github.clashautochange.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+
+/**
+ * Clash API HTTP客户端配置
+ * 使用带连接池和keep-alive的HttpClient代替JDK默认的HttpURLConnection，
+ * 并为不同操作设置独立的连接/读取超时
+ */
+@Configuration
+public class ClashHttpClientConfig {
+
+    @Value("${clash.http.max-total:32}")
+    private int maxTotal;
+
+    @Value("${clash.http.max-per-route:16}")
+    private int maxPerRoute;
+
+    @Value("${clash.http.connect-timeout:2000}")
+    private long connectTimeout;
+
+    @Value("${clash.http.read-timeout:10000}")
+    private long readTimeout;
+
+    @Value("${clash.http.pool-acquire-timeout:2000}")
+    private long poolAcquireTimeout;
+
+    @Value("${clash.http.keep-alive:30000}")
+    private long keepAlive;
+
+    @Value("${clash.http.delay-timeout-margin:2000}")
+    private long delayTimeoutMargin;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager clashConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public ClashHttpPoolMetrics clashHttpPoolMetrics(PoolingHttpClientConnectionManager clashConnectionManager) {
+        return new ClashHttpPoolMetrics(clashConnectionManager);
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient clashHttpClient(PoolingHttpClientConnectionManager clashConnectionManager,
+                                               ClashHttpPoolMetrics clashHttpPoolMetrics) {
+        return HttpClients.custom()
+                .setConnectionManager(clashConnectionManager)
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive))
+                .setDefaultRequestConfig(createRequestConfig(readTimeout))
+                .addResponseInterceptorLast((response, entity, context) -> {
+                    // 同一连接上的请求数大于1说明连接被复用
+                    EndpointDetails endpoint = HttpClientContext.castOrCreate(context).getEndpointDetails();
+                    clashHttpPoolMetrics.recordRequest(endpoint != null && endpoint.getRequestCount() > 1);
+                })
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient clashHttpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(clashHttpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(createRequestConfig(resolveReadTimeout(uri)));
+            return context;
+        });
+        return new RestTemplate(requestFactory);
+    }
+
+    /**
+     * 根据请求确定读取超时
+     * 延迟测试接口在Clash端会阻塞到探测超时，因此读取超时为探测超时加上余量
+     *
+     * @param uri 请求URI
+     * @return 读取超时（毫秒）
+     */
+    private long resolveReadTimeout(URI uri) {
+        String path = uri.getRawPath();
+        if (path != null && path.endsWith("/delay")) {
+            String timeoutParam = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("timeout");
+            if (timeoutParam != null) {
+                try {
+                    return Long.parseLong(timeoutParam) + delayTimeoutMargin;
+                } catch (NumberFormatException ignored) {
+                    // 使用默认读取超时
+                }
+            }
+        }
+        return readTimeout;
+    }
+
+    private RequestConfig createRequestConfig(long responseTimeout) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeout))
+                .build();
+    }
+}
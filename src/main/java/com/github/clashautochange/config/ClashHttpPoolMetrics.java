@@ -0,0 +1,56 @@
+package com.github.clashautochange.config;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clash API 连接池指标
+ * 记录连接池占用情况以及连接复用次数
+ */
+public class ClashHttpPoolMetrics {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong reusedRequests = new AtomicLong();
+
+    public ClashHttpPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param reused 是否复用了已有连接
+     */
+    public void recordRequest(boolean reused) {
+        totalRequests.incrementAndGet();
+        if (reused) {
+            reusedRequests.incrementAndGet();
+        }
+    }
+
+    /**
+     * 获取连接池指标快照
+     *
+     * @return 指标名称和值的映射
+     */
+    public Map<String, Object> snapshot() {
+        PoolStats stats = connectionManager.getTotalStats();
+        long total = totalRequests.get();
+        long reused = reusedRequests.get();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("leased", stats.getLeased());
+        result.put("available", stats.getAvailable());
+        result.put("pending", stats.getPending());
+        result.put("max", stats.getMax());
+        result.put("totalRequests", total);
+        result.put("reusedRequests", reused);
+        result.put("reuseRate", total > 0 ? Math.round((double) reused / total * 100) : 0);
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.clashautochange.config;
+
+/**
+ * 策略组配置变更事件
+ * 由 ProxyGroupConfigService 在保存或删除策略组配置后、ClashInstanceService 在保存或删除控制器后发布，
+ * 策略组配置引用控制器，两者变更都会使已缓存的配置失效
+ */
+public class ProxyGroupConfigChangedEvent {
+}
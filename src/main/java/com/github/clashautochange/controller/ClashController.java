@@ -1,9 +1,15 @@
 package com.github.clashautochange.controller;
 
+import com.github.clashautochange.config.ClashHttpPoolMetrics;
+import com.github.clashautochange.entity.ClashInstance;
 import com.github.clashautochange.model.ClashDelayResponse;
 import com.github.clashautochange.model.ClashProxiesResponse;
 import com.github.clashautochange.model.ClashSelectProxyRequest;
 import com.github.clashautochange.service.ClashApiService;
+import com.github.clashautochange.service.ClashDelayTestService;
+import com.github.clashautochange.service.ClashProxySnapshotService;
+import com.github.clashautochange.service.ClashInstanceService;
+import com.github.clashautochange.service.ProxyLatencyStatsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.ResourceAccessException;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,10 +26,25 @@ import java.util.Map;
 public class ClashController {
 
     private final ClashApiService clashApiService;
+    private final ClashProxySnapshotService clashProxySnapshotService;
+    private final ClashDelayTestService clashDelayTestService;
+    private final ClashHttpPoolMetrics clashHttpPoolMetrics;
+    private final ProxyLatencyStatsService proxyLatencyStatsService;
+    private final ClashInstanceService clashInstanceService;
 
     @Autowired
-    public ClashController(ClashApiService clashApiService) {
+    public ClashController(ClashApiService clashApiService,
+                           ClashProxySnapshotService clashProxySnapshotService,
+                           ClashDelayTestService clashDelayTestService,
+                           ClashHttpPoolMetrics clashHttpPoolMetrics,
+                           ProxyLatencyStatsService proxyLatencyStatsService,
+                           ClashInstanceService clashInstanceService) {
         this.clashApiService = clashApiService;
+        this.clashProxySnapshotService = clashProxySnapshotService;
+        this.clashDelayTestService = clashDelayTestService;
+        this.clashHttpPoolMetrics = clashHttpPoolMetrics;
+        this.proxyLatencyStatsService = proxyLatencyStatsService;
+        this.clashInstanceService = clashInstanceService;
     }
 
     @GetMapping("/proxies")
@@ -78,6 +100,33 @@ public class ClashController {
         }
     }
 
+    @GetMapping("/pool-stats")
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        return ResponseEntity.ok(clashHttpPoolMetrics.snapshot());
+    }
+
+    @GetMapping("/circuit")
+    public ResponseEntity<List<Map<String, Object>>> getCircuitBreakerStates() {
+        return ResponseEntity.ok(clashApiService.getCircuitBreakerStates());
+    }
+
+    @GetMapping("/delay-stats")
+    public ResponseEntity<Map<String, Object>> getDelayTestStats() {
+        return ResponseEntity.ok(clashDelayTestService.getStats());
+    }
+
+    @GetMapping("/latency-stats")
+    public ResponseEntity<List<Map<String, Object>>> getLatencyStats(@RequestParam(required = false) Long instanceId) {
+        ClashInstance instance = null;
+        if (instanceId != null) {
+            instance = clashInstanceService.getInstanceById(instanceId).orElse(null);
+            if (instance == null) {
+                return ResponseEntity.notFound().build();
+            }
+        }
+        return ResponseEntity.ok(proxyLatencyStatsService.getStats(clashInstanceService.resolveEndpoint(instance)));
+    }
+
     @GetMapping("/proxies/{proxyName}/delay")
     public ResponseEntity<ClashDelayResponse> testProxyDelay(
             @PathVariable String proxyName,
@@ -91,6 +140,7 @@ public class ClashController {
             @PathVariable String proxyGroup,
             @RequestBody ClashSelectProxyRequest request) {
         clashApiService.selectProxy(proxyGroup, request.getName());
+        clashProxySnapshotService.invalidate();
         return ResponseEntity.ok().build();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.github.clashautochange.controller;
+
+import com.github.clashautochange.entity.ClashInstance;
+import com.github.clashautochange.service.ClashFleetExecutor;
+import com.github.clashautochange.service.ClashInstanceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clash 控制器管理接口
+ * 位于需要登录的 /proxy-monitor 下：控制器的地址决定了本服务会请求哪些URL，不能对未登录的请求开放
+ */
+@RestController
+@RequestMapping("/proxy-monitor/api/instances")
+public class ClashInstanceController {
+
+    private final ClashInstanceService clashInstanceService;
+    private final ClashFleetExecutor clashFleetExecutor;
+
+    @Autowired
+    public ClashInstanceController(ClashInstanceService clashInstanceService,
+                                   ClashFleetExecutor clashFleetExecutor) {
+        this.clashInstanceService = clashInstanceService;
+        this.clashFleetExecutor = clashFleetExecutor;
+    }
+
+    /**
+     * 获取所有控制器
+     *
+     * @return 控制器列表
+     */
+    @GetMapping
+    public ResponseEntity<List<ClashInstance>> getAllInstances() {
+        return ResponseEntity.ok(clashInstanceService.getAllInstances());
+    }
+
+    /**
+     * 获取每个控制器上定时任务的执行统计
+     *
+     * @return 任务统计列表
+     */
+    @GetMapping("/scheduler")
+    public ResponseEntity<List<Map<String, Object>>> getSchedulerStats() {
+        return ResponseEntity.ok(clashFleetExecutor.snapshot());
+    }
+
+    /**
+     * 根据ID获取控制器
+     *
+     * @param id 控制器ID
+     * @return Clash 控制器
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ClashInstance> getInstanceById(@PathVariable Long id) {
+        return clashInstanceService.getInstanceById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 创建或更新控制器
+     *
+     * @param instance Clash 控制器
+     * @return 保存后的控制器
+     */
+    @PostMapping
+    public ResponseEntity<ClashInstance> saveInstance(@RequestBody ClashInstance instance) {
+        String baseUrl = instance.getBaseUrl();
+        if (baseUrl == null || !(baseUrl.startsWith("http://") || baseUrl.startsWith("https://"))) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (instance.getEnabled() == null) {
+            instance.setEnabled(true);
+        }
+        return ResponseEntity.ok(clashInstanceService.saveInstance(instance));
+    }
+
+    /**
+     * 删除控制器
+     *
+     * @param id 控制器ID
+     * @return 无内容响应
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteInstance(@PathVariable Long id) {
+        clashInstanceService.deleteInstance(id);
+        return ResponseEntity.noContent().build();
+    }
+}
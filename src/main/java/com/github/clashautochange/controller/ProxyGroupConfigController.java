@@ -1,10 +1,15 @@
 package com.github.clashautochange.controller;
 
 import com.github.clashautochange.entity.ProxyGroupConfig;
-import com.github.clashautochange.service.ClashApiService;
+import com.github.clashautochange.model.ClashProxySnapshot;
+import com.github.clashautochange.service.ClashAutoChangeService;
+import com.github.clashautochange.service.ClashDelayTestService;
+import com.github.clashautochange.service.ClashProxySnapshotService;
 import com.github.clashautochange.service.ProxyGroupConfigService;
+import com.github.clashautochange.service.ProxyGroupRuntimeService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.ResourceAccessException;
@@ -21,13 +26,25 @@ import java.util.List;
 public class ProxyGroupConfigController {
 
     private final ProxyGroupConfigService proxyGroupConfigService;
-    private final ClashApiService clashApiService;
+    private final ClashDelayTestService clashDelayTestService;
+    private final ClashProxySnapshotService clashProxySnapshotService;
+    private final ClashAutoChangeService clashAutoChangeService;
+    private final ProxyGroupRuntimeService proxyGroupRuntimeService;
+
+    @Value("${clash.delay-cache.ui-max-age:5000}")
+    private long delayMaxAge;
 
     @Autowired
     public ProxyGroupConfigController(ProxyGroupConfigService proxyGroupConfigService, 
-                                     ClashApiService clashApiService) {
+                                     ClashDelayTestService clashDelayTestService,
+                                     ClashProxySnapshotService clashProxySnapshotService,
+                                     ClashAutoChangeService clashAutoChangeService,
+                                     ProxyGroupRuntimeService proxyGroupRuntimeService) {
         this.proxyGroupConfigService = proxyGroupConfigService;
-        this.clashApiService = clashApiService;
+        this.clashDelayTestService = clashDelayTestService;
+        this.clashProxySnapshotService = clashProxySnapshotService;
+        this.clashAutoChangeService = clashAutoChangeService;
+        this.proxyGroupRuntimeService = proxyGroupRuntimeService;
     }
 
     /**
@@ -92,8 +109,7 @@ public class ProxyGroupConfigController {
         }
         
         try {
-            log.info("调用ClashApiService.getGroupProxies获取代理节点");
-            List<String> proxies = clashApiService.getGroupProxies(groupName);
+            List<String> proxies = clashProxySnapshotService.getSnapshot().getGroupMembers(groupName);
             
             if (proxies == null) {
                 log.warn("返回的代理节点列表为null");
@@ -134,14 +150,14 @@ public class ProxyGroupConfigController {
         
         try {
             // 先获取策略组中的所有节点
-            List<String> allProxies = clashApiService.getGroupProxies(groupName);
+            List<String> allProxies = clashProxySnapshotService.getSnapshot().getGroupMembers(groupName);
             if (allProxies == null || allProxies.isEmpty()) {
                 log.warn("策略组 '{}' 中没有找到代理节点", groupName);
                 return ResponseEntity.ok(java.util.Collections.emptyMap());
             }
             
-            log.info("调用ClashApiService.testGroupDelay测试延迟");
-            java.util.Map<String, Integer> delays = clashApiService.testGroupDelay(groupName, testUrl, timeout);
+            // 相同的并发测试（例如多次点击或与定时任务同时进行）共享一次探测结果，短时间内的结果直接复用
+            java.util.Map<String, Integer> delays = clashDelayTestService.testGroupDelay(groupName, testUrl, timeout, delayMaxAge);
             
             if (delays == null) {
                 delays = new java.util.HashMap<>();
@@ -183,22 +199,14 @@ public class ProxyGroupConfigController {
         log.info("接收到获取所有策略组当前选择节点的请求");
         
         try {
-            // 获取所有可用的策略组
-            java.util.Map<String, List<String>> allGroups = clashApiService.getAllGroups();
+            // 所有可用策略组的当前节点来自同一次代理快照
+            ClashProxySnapshot snapshot = clashProxySnapshotService.getSnapshot();
             java.util.Map<String, String> currentProxies = new java.util.HashMap<>();
             
-            if (allGroups != null) {
-                for (String groupName : allGroups.keySet()) {
-                    try {
-                        java.util.Map<String, Object> groupInfo = clashApiService.getGroupInfo(groupName);
-                        if (groupInfo != null && groupInfo.containsKey("now")) {
-                            String currentProxy = (String) groupInfo.get("now");
-                            currentProxies.put(groupName, currentProxy);
-                        }
-                    } catch (Exception e) {
-                        log.warn("获取策略组 {} 当前选择节点失败: {}", groupName, e.getMessage());
-                        currentProxies.put(groupName, "获取失败");
-                    }
+            for (String groupName : snapshot.getSelectorGroups().keySet()) {
+                String currentProxy = snapshot.getCurrentProxy(groupName);
+                if (currentProxy != null) {
+                    currentProxies.put(groupName, currentProxy);
                 }
             }
             
@@ -212,4 +220,24 @@ public class ProxyGroupConfigController {
             return ResponseEntity.badRequest().body(java.util.Collections.singletonMap("error", "获取失败"));
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 获取各策略组的调度状态，包括检查延迟（lag）和耗时
+     * 
+     * @return 调度状态列表
+     */
+    @GetMapping("/schedules")
+    public ResponseEntity<List<java.util.Map<String, Object>>> getSchedules() {
+        return ResponseEntity.ok(clashAutoChangeService.getGroupSchedules());
+    }
+
+    /**
+     * 获取各策略组的运行时状态
+     * 
+     * @return 运行时状态列表
+     */
+    @GetMapping("/runtime-state")
+    public ResponseEntity<List<java.util.Map<String, Object>>> getRuntimeState() {
+        return ResponseEntity.ok(proxyGroupRuntimeService.getStates());
+    }
+}
@@ -2,9 +2,13 @@ package com.github.clashautochange.controller;
 
 import com.github.clashautochange.entity.MonitoredProxyGroup;
 import com.github.clashautochange.entity.ProxyDelayHistory;
-import com.github.clashautochange.service.ClashApiService;
+import com.github.clashautochange.model.SimulationPolicy;
+import com.github.clashautochange.service.AutoChangeSimulationService;
+import com.github.clashautochange.service.ClashProxySnapshotService;
 import com.github.clashautochange.service.MonitoredProxyGroupService;
+import com.github.clashautochange.service.ProxyDelayHistoryIngestService;
 import com.github.clashautochange.service.ProxyDelayHistoryService;
+import com.github.clashautochange.service.ProxyDelayRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -23,7 +27,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * 代理监控控制器
@@ -34,7 +37,10 @@ public class ProxyMonitorController {
 
     private final MonitoredProxyGroupService monitoredProxyGroupService;
     private final ProxyDelayHistoryService proxyDelayHistoryService;
-    private final ClashApiService clashApiService;
+    private final ClashProxySnapshotService clashProxySnapshotService;
+    private final AutoChangeSimulationService autoChangeSimulationService;
+    private final ProxyDelayHistoryIngestService proxyDelayHistoryIngestService;
+    private final ProxyDelayRollupService proxyDelayRollupService;
 
     // 中国时区常量
     private static final ZoneId CHINA_ZONE = ZoneId.of("Asia/Shanghai");
@@ -43,10 +49,16 @@ public class ProxyMonitorController {
     public ProxyMonitorController(
             MonitoredProxyGroupService monitoredProxyGroupService,
             ProxyDelayHistoryService proxyDelayHistoryService,
-            ClashApiService clashApiService) {
+            ClashProxySnapshotService clashProxySnapshotService,
+            AutoChangeSimulationService autoChangeSimulationService,
+            ProxyDelayHistoryIngestService proxyDelayHistoryIngestService,
+            ProxyDelayRollupService proxyDelayRollupService) {
         this.monitoredProxyGroupService = monitoredProxyGroupService;
         this.proxyDelayHistoryService = proxyDelayHistoryService;
-        this.clashApiService = clashApiService;
+        this.clashProxySnapshotService = clashProxySnapshotService;
+        this.autoChangeSimulationService = autoChangeSimulationService;
+        this.proxyDelayHistoryIngestService = proxyDelayHistoryIngestService;
+        this.proxyDelayRollupService = proxyDelayRollupService;
     }
 
     /**
@@ -59,7 +71,7 @@ public class ProxyMonitorController {
         model.addAttribute("newConfig", new MonitoredProxyGroup());
         
         // 获取可用的代理组
-        Map<String, List<String>> availableGroups = clashApiService.getAllGroups();
+        Map<String, List<String>> availableGroups = clashProxySnapshotService.getSnapshot().getSelectorGroups();
         model.addAttribute("availableGroups", availableGroups);
         
         return "proxy-monitor";
@@ -95,6 +107,8 @@ public class ProxyMonitorController {
             Optional<MonitoredProxyGroup> existingConfig = monitoredProxyGroupService.getConfigById(id);
             if (existingConfig.isPresent()) {
                 config.setId(id);
+                // 表单中没有控制器，保留原来的控制器
+                config.setInstance(existingConfig.get().getInstance());
                 monitoredProxyGroupService.saveConfig(config);
                 redirectAttributes.addFlashAttribute("message", "监控配置更新成功");
             } else {
@@ -149,17 +163,19 @@ public class ProxyMonitorController {
     @GetMapping("/history/{groupName}")
     public String showDelayHistory(
             @PathVariable String groupName,
+            @RequestParam(required = false) Long instance,
             Model model) {
-        Optional<MonitoredProxyGroup> config = monitoredProxyGroupService.getConfigByGroupName(groupName);
+        Optional<MonitoredProxyGroup> config = monitoredProxyGroupService.getConfig(instance, groupName);
         if (config.isPresent()) {
             model.addAttribute("config", config.get());
+            String historyGroupName = ProxyDelayHistoryService.historyGroupName(instance, groupName);
             
             // 获取最近7天的历史记录
-            List<ProxyDelayHistory> histories = proxyDelayHistoryService.getLast7DaysHistories(groupName);
+            List<ProxyDelayHistory> histories = proxyDelayHistoryService.getLast7DaysHistories(historyGroupName);
             model.addAttribute("histories", histories);
             
             // 获取代理组中的所有代理节点
-            List<String> proxyNames = proxyDelayHistoryService.getDistinctProxyNamesByGroupName(groupName);
+            List<String> proxyNames = proxyDelayHistoryService.getDistinctProxyNamesByGroupName(historyGroupName);
             model.addAttribute("proxyNames", proxyNames);
             
             return "proxy-history";
@@ -175,28 +191,38 @@ public class ProxyMonitorController {
     @ResponseBody
     public ResponseEntity<Map<String, Object>> getDelayHistoryData(
             @PathVariable String groupName,
+            @RequestParam(required = false) Long instance,
             @RequestParam(required = false) String proxyName,
             @RequestParam(required = false) Integer days) {
         
         LocalDateTime endTime = LocalDateTime.now(CHINA_ZONE);
         LocalDateTime startTime = endTime.minusDays(days != null ? days : 7);
         
+        String historyGroupName = ProxyDelayHistoryService.historyGroupName(instance, groupName);
+        boolean byProxy = proxyName != null && !proxyName.isEmpty();
+        // 时间范围较长时按时间桶读取汇总，控制图表的数据点数
+        ProxyDelayRollupService.Resolution resolution = proxyDelayRollupService.chooseResolution(startTime, endTime);
         List<ProxyDelayHistory> histories;
-        if (proxyName != null && !proxyName.isEmpty()) {
+        if (resolution != null) {
+            histories = proxyDelayRollupService.getChartHistories(
+                    historyGroupName, byProxy ? proxyName : null, startTime, endTime, resolution);
+        } else if (byProxy) {
             histories = proxyDelayHistoryService.getHistoriesByProxyNameAndTimeRange(
-                    groupName, proxyName, startTime, endTime);
+                    historyGroupName, proxyName, startTime, endTime);
         } else {
-            histories = proxyDelayHistoryService.getHistoriesByTimeRange(groupName, startTime, endTime);
+            histories = proxyDelayHistoryService.getHistoriesByTimeRange(historyGroupName, startTime, endTime);
         }
         
-        Map<String, Object> chartData = proxyDelayHistoryService.convertToChartData(histories);
+        Map<String, Object> chartData = new HashMap<>(proxyDelayHistoryService.convertToChartData(histories));
+        chartData.put("resolution", resolution != null ? resolution.getLabel() : "raw");
         return ResponseEntity.ok(chartData);
     }
 
     @GetMapping("/node-history")
-    public String showNodeHistory(@RequestParam String group, @RequestParam String node, Model model) {
+    public String showNodeHistory(@RequestParam String group, @RequestParam String node,
+                                  @RequestParam(required = false) Long instance, Model model) {
         // 获取代理组配置
-        MonitoredProxyGroup config = monitoredProxyGroupService.getConfigByGroupName(group).orElse(null);
+        MonitoredProxyGroup config = monitoredProxyGroupService.getConfig(instance, group).orElse(null);
         if (config == null) {
             model.addAttribute("error", "代理组 " + group + " 不存在");
             return "error";
@@ -213,15 +239,20 @@ public class ProxyMonitorController {
     @ResponseBody
     public Map<String, Object> getNodeHistoryData(@RequestParam String group, 
                                                   @RequestParam String node, 
+                                                  @RequestParam(required = false) Long instance,
                                                   @RequestParam(defaultValue = "7") int days) {
+        String historyGroupName = ProxyDelayHistoryService.historyGroupName(instance, group);
         
         // 计算时间范围
         LocalDateTime endTime = LocalDateTime.now(CHINA_ZONE);
         LocalDateTime startTime = endTime.minusDays(days);
         
-        // 获取延迟历史数据
-        List<ProxyDelayHistory> historyList = proxyDelayHistoryService.findByGroupNameAndProxyNameAndTimeRange(
-            group, node, startTime, endTime);
+        // 获取延迟历史数据，时间范围较长时读取汇总
+        ProxyDelayRollupService.Resolution resolution = proxyDelayRollupService.chooseResolution(startTime, endTime);
+        List<ProxyDelayHistory> historyList = resolution != null
+                ? proxyDelayRollupService.getChartHistories(historyGroupName, node, startTime, endTime, resolution)
+                : proxyDelayHistoryService.findByGroupNameAndProxyNameAndTimeRange(
+                        historyGroupName, node, startTime, endTime);
         
         // 准备返回数据
         Map<String, Object> result = new HashMap<>();
@@ -243,6 +274,7 @@ public class ProxyMonitorController {
         result.put("groupName", group);
         result.put("nodeName", node);
         result.put("days", days);
+        result.put("resolution", resolution != null ? resolution.getLabel() : "raw");
         
         return result;
     }
@@ -250,51 +282,15 @@ public class ProxyMonitorController {
     @GetMapping("/api/proxy-stats/{groupName}")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> getProxyStats(@PathVariable String groupName,
+                                                         @RequestParam(required = false) Long instance,
                                                          @RequestParam(defaultValue = "7") int days) {
         
         LocalDateTime endTime = LocalDateTime.now(CHINA_ZONE);
         LocalDateTime startTime = endTime.minusDays(days);
         
-        // 获取该代理组的所有历史记录
-        List<ProxyDelayHistory> histories = proxyDelayHistoryService.getHistoriesByTimeRange(groupName, startTime, endTime);
-        
-        // 按代理节点分组计算统计信息
-        Map<String, List<ProxyDelayHistory>> groupedByProxy = histories.stream()
-                .collect(Collectors.groupingBy(ProxyDelayHistory::getProxyName));
-        
-        Map<String, Map<String, Object>> proxyStats = new HashMap<>();
-        
-        for (Map.Entry<String, List<ProxyDelayHistory>> entry : groupedByProxy.entrySet()) {
-            String proxyName = entry.getKey();
-            List<ProxyDelayHistory> proxyHistories = entry.getValue();
-            
-            // 计算统计信息
-            List<Integer> connectedDelays = proxyHistories.stream()
-                    .map(ProxyDelayHistory::getDelay)
-                    .filter(delay -> delay >= 0)
-                    .collect(Collectors.toList());
-            
-            int totalCount = proxyHistories.size();
-            int connectedCount = connectedDelays.size();
-            double connectivityRate = totalCount > 0 ? (double) connectedCount / totalCount * 100 : 0;
-            
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("connectivityRate", Math.round(connectivityRate));
-            stats.put("totalTests", totalCount);
-            stats.put("connectedTests", connectedCount);
-            
-            if (!connectedDelays.isEmpty()) {
-                stats.put("avgDelay", connectedDelays.stream().mapToInt(Integer::intValue).average().orElse(0));
-                stats.put("minDelay", connectedDelays.stream().mapToInt(Integer::intValue).min().orElse(0));
-                stats.put("maxDelay", connectedDelays.stream().mapToInt(Integer::intValue).max().orElse(0));
-            } else {
-                stats.put("avgDelay", null);
-                stats.put("minDelay", null);
-                stats.put("maxDelay", null);
-            }
-            
-            proxyStats.put(proxyName, stats);
-        }
+        // 按代理节点计算统计信息，完整的小时读取汇总，两端不足一小时的部分读取原始记录
+        Map<String, Map<String, Object>> proxyStats = proxyDelayRollupService.getProxyStats(
+                ProxyDelayHistoryService.historyGroupName(instance, groupName), startTime, endTime);
         
         Map<String, Object> result = new HashMap<>();
         result.put("proxyStats", proxyStats);
@@ -303,5 +299,30 @@ public class ProxyMonitorController {
         
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * 用最近几天的延迟历史回放自动切换，比较多组参数的切换次数、不可用时长和平均恢复时间
+     * 请求体为参数组列表，为空时使用当前配置
+     */
+    @PostMapping("/api/simulate/{groupName}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> simulate(@PathVariable String groupName,
+                                                        @RequestParam(required = false) Long instance,
+                                                        @RequestParam(defaultValue = "7") int days,
+                                                        @RequestParam(required = false) String preferredProxy,
+                                                        @RequestBody(required = false) List<SimulationPolicy> policies) {
+        LocalDateTime endTime = LocalDateTime.now(CHINA_ZONE);
+        LocalDateTime startTime = endTime.minusDays(days);
+        return ResponseEntity.ok(autoChangeSimulationService.simulate(instance, groupName, preferredProxy, policies,
+                startTime, endTime));
+    }
+
+    /**
+     * 获取延迟历史写入统计
+     */
+    @GetMapping("/api/history-ingest-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getHistoryIngestStats() {
+        return ResponseEntity.ok(proxyDelayHistoryIngestService.getStats());
+    }
 }
- 
\ No newline at end of file
@@ -1,8 +1,9 @@
 package com.github.clashautochange.controller;
 
 import com.github.clashautochange.entity.ProxyGroupConfig;
-import com.github.clashautochange.model.ClashProxiesResponse;
-import com.github.clashautochange.service.ClashApiService;
+import com.github.clashautochange.model.ClashProxySnapshot;
+import com.github.clashautochange.service.ClashInstanceService;
+import com.github.clashautochange.service.ClashProxySnapshotService;
 import com.github.clashautochange.service.ProxyGroupConfigService;
 import com.github.clashautochange.service.SystemConfigService;
 import lombok.extern.slf4j.Slf4j;
@@ -28,15 +29,18 @@ public class WebController {
 
     private final SystemConfigService systemConfigService;
     private final ProxyGroupConfigService proxyGroupConfigService;
-    private final ClashApiService clashApiService;
+    private final ClashProxySnapshotService clashProxySnapshotService;
+    private final ClashInstanceService clashInstanceService;
 
     @Autowired
     public WebController(SystemConfigService systemConfigService, 
                          ProxyGroupConfigService proxyGroupConfigService,
-                         ClashApiService clashApiService) {
+                         ClashProxySnapshotService clashProxySnapshotService,
+                         ClashInstanceService clashInstanceService) {
         this.systemConfigService = systemConfigService;
         this.proxyGroupConfigService = proxyGroupConfigService;
-        this.clashApiService = clashApiService;
+        this.clashProxySnapshotService = clashProxySnapshotService;
+        this.clashInstanceService = clashInstanceService;
     }
 
     /**
@@ -120,20 +124,22 @@ public class WebController {
             Map<String, String> currentProxies = new HashMap<>();
             
             try {
-                availableGroups = clashApiService.getAllGroups();
+                ClashProxySnapshot snapshot = clashProxySnapshotService.getSnapshot();
+                availableGroups = snapshot.getSelectorGroups();
                 model.addAttribute("availableGroups", availableGroups);
                 
-                // 获取每个策略组当前选择的节点
+                // 获取每个策略组当前选择的节点，绑定了控制器的策略组从对应控制器获取
                 for (ProxyGroupConfig config : configs) {
                     try {
-                        Map<String, Object> groupInfo = clashApiService.getGroupInfo(config.getGroupName());
-                        if (groupInfo != null && groupInfo.containsKey("now")) {
-                            String currentProxy = (String) groupInfo.get("now");
+                        ClashProxySnapshot configSnapshot = config.getInstance() == null ? snapshot
+                                : clashProxySnapshotService.getSnapshot(
+                                        clashInstanceService.resolveEndpoint(config.getInstance()));
+                        String currentProxy = configSnapshot.getCurrentProxy(config.getGroupName());
+                        if (currentProxy != null) {
                             currentProxies.put(config.getGroupName(), currentProxy);
                         }
                     } catch (Exception e) {
-                        log.warn("获取策略组 {} 当前选择节点失败: {}", config.getGroupName(), e.getMessage());
-                        currentProxies.put(config.getGroupName(), "获取失败");
+                        log.warn("获取策略组 {} 的当前节点失败: {}", config.getGroupName(), e.getMessage());
                     }
                 }
                 
@@ -203,6 +209,7 @@ public class WebController {
                 existingConfig.setTimeout(config.getTimeout());
                 existingConfig.setMaxDelay(config.getMaxDelay());
                 existingConfig.setMaxTimeoutCount(config.getMaxTimeoutCount());
+                existingConfig.setCheckInterval(config.getCheckInterval());
                 existingConfig.setEnabled(config.getEnabled());
                 proxyGroupConfigService.saveConfig(existingConfig);
                 redirectAttributes.addFlashAttribute("message", "策略组配置已更新");
@@ -0,0 +1,51 @@
+package com.github.clashautochange.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Clash 控制器实体类
+ * 用于在一个部署中管理多个 Clash 实例，未关联控制器的配置使用系统设置中的默认 Clash API
+ */
+@Entity
+@Table(name = "clash_instance")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClashInstance {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 控制器名称
+     */
+    @Column(nullable = false, unique = true)
+    private String name;
+
+    /**
+     * Clash API基础URL
+     */
+    @Column(nullable = false)
+    private String baseUrl;
+
+    /**
+     * Clash API密钥，只在保存时读取，不会出现在任何响应中
+     */
+    @Column
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String secret;
+
+    /**
+     * 是否启用
+     */
+    @Column(nullable = false)
+    private Boolean enabled;
+}
@@ -10,7 +10,10 @@ import lombok.NoArgsConstructor;
  * 用于存储需要被监控的代理组配置
  */
 @Entity
-@Table(name = "monitored_proxy_group")
+@Table(name = "monitored_proxy_group",
+        uniqueConstraints = @UniqueConstraint(name = "uk_monitored_proxy_group_instance_group",
+                columnNames = {"instance_key", "group_name"}),
+        indexes = @Index(name = "idx_monitored_proxy_group_instance", columnList = "instance_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,10 +26,24 @@ public class MonitoredProxyGroup {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /**
+     * 所属 Clash 控制器，为空时使用默认 Clash API
+     */
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "instance_id")
+    private ClashInstance instance;
+
+    /**
+     * 所属 Clash 控制器的ID，默认 Clash API 为0，保存时由 instance 生成
+     * 与策略组名称组成唯一键；instance_id 为 NULL 的行在唯一索引中互不冲突，不能直接用于唯一键
+     */
+    @Column(name = "instance_key", nullable = false, columnDefinition = "bigint default 0")
+    private Long instanceKey = 0L;
+
     /**
      * 策略组名称
      */
-    @Column(nullable = false, unique = true)
+    @Column(name = "group_name", nullable = false)
     private String groupName;
 
     /**
@@ -46,4 +63,10 @@ public class MonitoredProxyGroup {
      */
     @Column(nullable = false)
     private Boolean enabled;
-} 
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    void updateInstanceKey() {
+        instanceKey = instance != null ? instance.getId() : 0L;
+    }
+}
@@ -11,9 +11,14 @@ import java.time.ZoneId;
 /**
  * 代理节点延迟历史记录实体类
  * 用于存储代理节点的延迟测试结果历史
+ * 两个组合索引都包含图表查询需要的全部列，查询只读索引不回表；test_time 索引用于按时间清理
  */
 @Entity
-@Table(name = "proxy_delay_history")
+@Table(name = "proxy_delay_history", indexes = {
+        @Index(name = "idx_history_group_time", columnList = "group_id, test_time, proxy_id, delay"),
+        @Index(name = "idx_history_group_proxy_time", columnList = "group_id, proxy_id, test_time, delay"),
+        @Index(name = "idx_history_test_time", columnList = "test_time")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,29 +32,41 @@ public class ProxyDelayHistory {
     private Long id;
 
     /**
-     * 代理组名称
+     * 代理组名称在 proxy_name_registry 中的ID
      */
-    @Column(nullable = false)
-    private String groupName;
+    @Column(name = "group_id", nullable = false)
+    private Integer groupId;
 
     /**
-     * 代理节点名称
+     * 代理节点名称在 proxy_name_registry 中的ID
      */
-    @Column(nullable = false)
-    private String proxyName;
+    @Column(name = "proxy_id", nullable = false)
+    private Integer proxyId;
 
     /**
      * 延迟时间（毫秒），-1 表示未连通
      */
-    @Column(nullable = false)
+    @Column(name = "delay", nullable = false)
     private Integer delay;
 
     /**
      * 测试时间
      */
-    @Column(nullable = false)
+    @Column(name = "test_time", nullable = false)
     private LocalDateTime testTime;
 
+    /**
+     * 代理组名称，不保存到表中，写入时转换为ID，查询时由ID还原
+     */
+    @Transient
+    private String groupName;
+
+    /**
+     * 代理节点名称，不保存到表中，写入时转换为ID，查询时由ID还原
+     */
+    @Transient
+    private String proxyName;
+
     /**
      * 创建一个新的代理延迟历史记录
      * 
@@ -59,11 +76,24 @@ public class ProxyDelayHistory {
      * @return 新的代理延迟历史记录
      */
     public static ProxyDelayHistory create(String groupName, String proxyName, Integer delay) {
+        return create(groupName, proxyName, delay, LocalDateTime.now(ZoneId.of("Asia/Shanghai")));
+    }
+
+    /**
+     * 创建一个指定测试时间的代理延迟历史记录
+     *
+     * @param groupName 代理组名称
+     * @param proxyName 代理节点名称
+     * @param delay 延迟时间
+     * @param testTime 测试时间
+     * @return 新的代理延迟历史记录
+     */
+    public static ProxyDelayHistory create(String groupName, String proxyName, Integer delay, LocalDateTime testTime) {
         ProxyDelayHistory history = new ProxyDelayHistory();
         history.setGroupName(groupName);
         history.setProxyName(proxyName);
         history.setDelay(delay);
-        history.setTestTime(LocalDateTime.now(ZoneId.of("Asia/Shanghai")));
+        history.setTestTime(testTime);
         return history;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.github.clashautochange.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 代理节点延迟汇总实体类
+ * 按5分钟、1小时和1天汇总 proxy_delay_history，长时间范围的图表和统计读取汇总而不是原始记录
+ */
+@Entity
+@Table(name = "proxy_delay_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rollup_group_proxy_bucket",
+                columnNames = {"resolution", "group_id", "proxy_id", "bucket_start"}),
+        indexes = {
+                @Index(name = "idx_rollup_group_bucket", columnList = "resolution, group_id, bucket_start"),
+                @Index(name = "idx_rollup_bucket", columnList = "resolution, bucket_start")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProxyDelayRollup {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 时间桶长度（分钟）
+     */
+    @Column(name = "resolution", nullable = false)
+    private Integer resolution;
+
+    /**
+     * 代理组名称在 proxy_name_registry 中的ID
+     */
+    @Column(name = "group_id", nullable = false)
+    private Integer groupId;
+
+    /**
+     * 代理节点名称在 proxy_name_registry 中的ID
+     */
+    @Column(name = "proxy_id", nullable = false)
+    private Integer proxyId;
+
+    /**
+     * 时间桶开始时间
+     */
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    /**
+     * 测试次数
+     */
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    /**
+     * 未连通次数
+     */
+    @Column(name = "loss_count", nullable = false)
+    private Long lossCount;
+
+    /**
+     * 最小延迟（毫秒），全部未连通时为-1
+     */
+    @Column(name = "min_delay", nullable = false)
+    private Integer minDelay;
+
+    /**
+     * 最大延迟（毫秒），全部未连通时为-1
+     */
+    @Column(name = "max_delay", nullable = false)
+    private Integer maxDelay;
+
+    /**
+     * 成功测试的延迟之和（毫秒）
+     */
+    @Column(name = "sum_delay", nullable = false)
+    private Long sumDelay;
+
+    /**
+     * 成功测试延迟的对数直方图，用于估计分位数
+     */
+    @Column(name = "sketch", columnDefinition = "varbinary(512)")
+    private byte[] sketch;
+}
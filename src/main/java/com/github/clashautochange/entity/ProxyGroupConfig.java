@@ -10,7 +10,10 @@ import lombok.NoArgsConstructor;
  * 用于存储策略组及其优先节点的配置
  */
 @Entity
-@Table(name = "proxy_group_config")
+@Table(name = "proxy_group_config",
+        uniqueConstraints = @UniqueConstraint(name = "uk_proxy_group_config_instance_group",
+                columnNames = {"instance_key", "group_name"}),
+        indexes = @Index(name = "idx_proxy_group_config_instance", columnList = "instance_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,10 +26,24 @@ public class ProxyGroupConfig {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /**
+     * 所属 Clash 控制器，为空时使用默认 Clash API
+     */
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "instance_id")
+    private ClashInstance instance;
+
+    /**
+     * 所属 Clash 控制器的ID，默认 Clash API 为0，保存时由 instance 生成
+     * 与策略组名称组成唯一键；instance_id 为 NULL 的行在唯一索引中互不冲突，不能直接用于唯一键
+     */
+    @Column(name = "instance_key", nullable = false, columnDefinition = "bigint default 0")
+    private Long instanceKey = 0L;
+
     /**
      * 策略组名称
      */
-    @Column(nullable = false, unique = true)
+    @Column(name = "group_name", nullable = false)
     private String groupName;
 
     /**
@@ -61,13 +78,26 @@ public class ProxyGroupConfig {
 
     /**
      * 当前超时计数，记录连续超时的次数
+     * 运行时由 ProxyGroupRuntimeService 在内存中维护并定期单独写回，保存配置时不更新此列
      */
-    @Column(columnDefinition = "integer default 0")
+    @Column(columnDefinition = "integer default 0", updatable = false)
     private Integer currentTimeoutCount = 0;
 
+    /**
+     * 检查间隔（毫秒），为空时使用全局配置 clash.auto-change.check-interval
+     */
+    @Column
+    private Integer checkInterval;
+
     /**
      * 是否启用
      */
     @Column(nullable = false)
     private Boolean enabled;
-} 
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    void updateInstanceKey() {
+        instanceKey = instance != null ? instance.getId() : 0L;
+    }
+}
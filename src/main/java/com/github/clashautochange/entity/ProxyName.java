@@ -0,0 +1,32 @@
+package com.github.clashautochange.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 策略组和节点名称字典
+ * 延迟历史等大表只保存名称对应的整数ID，名称在这里只保存一次
+ */
+@Entity
+@Table(name = "proxy_name_registry")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProxyName {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    /**
+     * 策略组或节点名称，使用二进制排序规则，大小写或全半角不同的名称视为不同名称
+     */
+    @Column(nullable = false, unique = true,
+            columnDefinition = "varchar(255) character set utf8mb4 collate utf8mb4_bin")
+    private String name;
+}
@@ -0,0 +1,34 @@
+package com.github.clashautochange.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Clash 连接
+ * 只保留关闭连接所需的字段，由 ClashResponseParser 流式解析生成
+ */
+@Data
+public class ClashConnection {
+    private String id;
+
+    /**
+     * 连接经过的代理链，从实际节点到最外层策略组
+     */
+    private List<String> chains;
+
+    /**
+     * 判断连接是否经由指定策略组中的指定节点
+     *
+     * @param groupName 策略组名称
+     * @param proxyName 节点名称
+     * @return 是否匹配
+     */
+    public boolean isRoutedThrough(String groupName, String proxyName) {
+        if (chains == null) {
+            return false;
+        }
+        int groupIndex = chains.indexOf(groupName);
+        return groupIndex > 0 && proxyName.equals(chains.get(groupIndex - 1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.clashautochange.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Clash API 连接端点
+ * 不可变快照，配置变更时整体替换
+ */
+@Getter
+@EqualsAndHashCode
+public final class ClashEndpoint {
+
+    /**
+     * 默认端点名称，对应系统设置中的 Clash API
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    /**
+     * 端点名称，用于日志和监控
+     */
+    @EqualsAndHashCode.Exclude
+    private final String name;
+
+    /**
+     * Clash API基础URL
+     */
+    private final String baseUrl;
+
+    /**
+     * Clash API密钥
+     */
+    private final String secret;
+
+    /**
+     * 预先计算的Authorization请求头，无密钥时为null
+     */
+    @EqualsAndHashCode.Exclude
+    private final String authorization;
+
+    public ClashEndpoint(String baseUrl, String secret) {
+        this(DEFAULT_NAME, baseUrl, secret);
+    }
+
+    public ClashEndpoint(String name, String baseUrl, String secret) {
+        this.name = name;
+        this.baseUrl = baseUrl;
+        this.secret = secret;
+        this.authorization = secret != null && !secret.isEmpty() ? "Bearer " + secret : null;
+    }
+}
@@ -4,15 +4,21 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
 
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Clash 代理或策略组
+ * 只保留自动切换所需的字段，由 ClashResponseParser 流式解析生成
+ */
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ClashProxy {
     private String name;
     private String type;
-    private String udp;
-    private Map<String, Object> history;
-    private List<Map<String, Object>> all;
     private String now;
-} 
\ No newline at end of file
+    private List<String> all;
+
+    /**
+     * 最近一次延迟测试结果（毫秒），无历史记录时为null
+     */
+    private Integer delay;
+}
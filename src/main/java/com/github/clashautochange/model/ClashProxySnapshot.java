@@ -0,0 +1,102 @@
+package com.github.clashautochange.model;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clash 代理快照
+ * 一次 GET /proxies 的不可变结果，用于在内存中回答策略组成员和当前选择节点的查询
+ */
+public final class ClashProxySnapshot {
+
+    private final Map<String, ClashProxy> proxies;
+
+    /**
+     * 快照对应的端点
+     */
+    @Getter
+    private final ClashEndpoint endpoint;
+
+    /**
+     * 获取快照的时间戳（毫秒）
+     */
+    @Getter
+    private final long fetchedAt;
+
+    public ClashProxySnapshot(ClashEndpoint endpoint, Map<String, ClashProxy> proxies, long fetchedAt) {
+        this.endpoint = endpoint;
+        this.proxies = proxies != null ? proxies : Collections.emptyMap();
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * 判断策略组是否存在
+     *
+     * @param groupName 策略组名称
+     * @return 是否存在
+     */
+    public boolean containsGroup(String groupName) {
+        ClashProxy proxy = proxies.get(groupName);
+        return proxy != null && proxy.getAll() != null;
+    }
+
+    /**
+     * 获取策略组当前选择的节点
+     *
+     * @param groupName 策略组名称
+     * @return 当前节点，策略组不存在时返回null
+     */
+    public String getCurrentProxy(String groupName) {
+        ClashProxy proxy = proxies.get(groupName);
+        return proxy != null ? proxy.getNow() : null;
+    }
+
+    /**
+     * 获取策略组的所有节点
+     *
+     * @param groupName 策略组名称
+     * @return 节点列表，策略组不存在时返回空列表
+     */
+    public List<String> getGroupMembers(String groupName) {
+        ClashProxy proxy = proxies.get(groupName);
+        if (proxy == null || proxy.getAll() == null) {
+            return Collections.emptyList();
+        }
+        return proxy.getAll();
+    }
+
+    /**
+     * 获取所有Selector类型的策略组
+     *
+     * @return 策略组名称和其代理节点的映射
+     */
+    public Map<String, List<String>> getSelectorGroups() {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, ClashProxy> entry : proxies.entrySet()) {
+            ClashProxy proxy = entry.getValue();
+            if ("Selector".equals(proxy.getType()) && proxy.getAll() != null) {
+                result.put(entry.getKey(), proxy.getAll());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取所有策略组当前选择的节点
+     *
+     * @return 策略组名称和当前节点的映射
+     */
+    public Map<String, String> getCurrentProxies() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, ClashProxy> entry : proxies.entrySet()) {
+            if (entry.getValue().getNow() != null) {
+                result.put(entry.getKey(), entry.getValue().getNow());
+            }
+        }
+        return result;
+    }
+}
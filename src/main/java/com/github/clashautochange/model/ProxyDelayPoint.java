@@ -0,0 +1,30 @@
+package com.github.clashautochange.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 延迟历史查询投影
+ * 只包含图表和统计需要的列，这些列都在 proxy_delay_history 的组合索引中
+ */
+@Data
+@AllArgsConstructor
+public class ProxyDelayPoint {
+
+    /**
+     * 代理节点ID
+     */
+    private Integer proxyId;
+
+    /**
+     * 延迟时间（毫秒），-1 表示未连通
+     */
+    private Integer delay;
+
+    /**
+     * 测试时间
+     */
+    private LocalDateTime testTime;
+}
@@ -0,0 +1,355 @@
+package com.github.clashautochange.model;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 策略组运行时状态
+ * 自动切换过程中频繁变化的计数和最近一次观察结果，与策略组配置实体分开保存在内存中，
+ * 需要持久化的字段标记为脏，由后台批量写回数据库
+ */
+public class ProxyGroupRuntimeState {
+
+    /**
+     * 主动切换被抑制的原因
+     */
+    public enum SuppressReason {
+        /**
+         * 距上次切换不足最短停留时间
+         */
+        DWELL,
+        /**
+         * 目标节点得分没有比当前节点低出余量
+         */
+        MARGIN,
+        /**
+         * 最近一小时切换次数已达上限
+         */
+        BUDGET
+    }
+
+    /**
+     * 切换次数统计保留的时长
+     */
+    private static final long SWITCH_HISTORY_WINDOW = 3600000L;
+
+    private final Long configId;
+    private final String groupName;
+
+    /**
+     * 当前节点连续超时次数
+     */
+    private int timeoutCount;
+
+    /**
+     * 最近一次观察到的当前节点
+     */
+    private String currentProxy;
+
+    /**
+     * 最近一次检查时当前节点的延迟，超时为null
+     */
+    private Integer lastDelay;
+
+    private long lastCheckedAt;
+    private long lastSwitchAt;
+    private long switchCount;
+    private long failoverCount;
+    private final long[] suppressedSwitches = new long[SuppressReason.values().length];
+
+    /**
+     * 切换后尚未确认新节点可用时为切换时间，否则为0
+     */
+    private long recoveryPendingSince;
+    private long lastRecoveryLatency;
+    private long maxRecoveryLatency;
+    private long totalRecoveryLatency;
+    private long recoveries;
+
+    private long closedConnections;
+    private long lastCloseDuration;
+
+    /**
+     * 最近一小时内各次主动切换的时间，故障切换不计入切换次数上限
+     */
+    private final Deque<Long> recentSwitches = new ArrayDeque<>();
+
+    /**
+     * 增量探测升级为全量测试的次数
+     */
+    private long fullScanCount;
+
+    /**
+     * 按得分排名的备用节点和排名时的延迟
+     */
+    private Map<String, Integer> standby = Map.of();
+    private long standbyRefreshedAt;
+    private boolean standbyRefreshing;
+
+    /**
+     * 超时次数是否有尚未写回数据库的变更
+     */
+    private boolean dirty;
+
+    public ProxyGroupRuntimeState(Long configId, String groupName, int timeoutCount) {
+        this.configId = configId;
+        this.groupName = groupName;
+        this.timeoutCount = timeoutCount;
+    }
+
+    public Long getConfigId() {
+        return configId;
+    }
+
+    public synchronized int getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * 超时次数加一
+     *
+     * @return 增加后的超时次数
+     */
+    public synchronized int incrementTimeoutCount() {
+        timeoutCount++;
+        dirty = true;
+        return timeoutCount;
+    }
+
+    /**
+     * 重置超时次数
+     */
+    public synchronized void resetTimeoutCount() {
+        if (timeoutCount != 0) {
+            timeoutCount = 0;
+            dirty = true;
+        }
+    }
+
+    /**
+     * 记录一次检查的结果
+     *
+     * @param currentProxy 当前节点
+     * @param delay 当前节点延迟，超时为null
+     * @param now 检查时间
+     */
+    public synchronized void recordCheck(String currentProxy, Integer delay, long now) {
+        this.currentProxy = currentProxy;
+        this.lastDelay = delay;
+        this.lastCheckedAt = now;
+    }
+
+    /**
+     * 记录一次当前节点可用的检查，切换后的第一次可用检查记为恢复
+     *
+     * @param currentProxy 当前节点
+     * @param delay 当前节点延迟
+     * @param now 检查时间
+     */
+    public synchronized void recordHealthy(String currentProxy, Integer delay, long now) {
+        recordCheck(currentProxy, delay, now);
+        if (recoveryPendingSince > 0) {
+            lastRecoveryLatency = lastCheckedAt - recoveryPendingSince;
+            maxRecoveryLatency = Math.max(maxRecoveryLatency, lastRecoveryLatency);
+            totalRecoveryLatency += lastRecoveryLatency;
+            recoveries++;
+            recoveryPendingSince = 0;
+        }
+    }
+
+    /**
+     * 记录一次切换后关闭旧节点连接的结果
+     *
+     * @param count 关闭的连接数
+     * @param duration 耗时（毫秒）
+     */
+    public synchronized void recordClosedConnections(int count, long duration) {
+        closedConnections += count;
+        lastCloseDuration = duration;
+    }
+
+    /**
+     * 记录一次节点切换，切换后超时次数归零
+     *
+     * @param proxy 切换到的节点
+     * @param delay 切换到的节点延迟
+     * @param failover 是否是当前节点不可用时的故障切换
+     * @param now 切换时间
+     */
+    public synchronized void recordSwitch(String proxy, Integer delay, boolean failover, long now) {
+        resetTimeoutCount();
+        recordCheck(proxy, delay, now);
+        this.lastSwitchAt = lastCheckedAt;
+        this.switchCount++;
+        if (failover) {
+            this.failoverCount++;
+        } else {
+            recentSwitches.addLast(lastSwitchAt);
+        }
+        recoveryPendingSince = lastSwitchAt;
+        pruneSwitches(lastSwitchAt - SWITCH_HISTORY_WINDOW);
+    }
+
+    /**
+     * 记录一次被抑制的主动切换
+     *
+     * @param reason 抑制原因
+     */
+    public synchronized void recordSuppressedSwitch(SuppressReason reason) {
+        suppressedSwitches[reason.ordinal()]++;
+    }
+
+    public synchronized long getLastSwitchAt() {
+        return lastSwitchAt;
+    }
+
+    public synchronized long getSwitchCount() {
+        return switchCount;
+    }
+
+    public synchronized long getFailoverCount() {
+        return failoverCount;
+    }
+
+    /**
+     * 各种原因被抑制的主动切换次数之和
+     */
+    public synchronized long getSuppressedSwitchCount() {
+        long total = 0;
+        for (long count : suppressedSwitches) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * 统计指定时间之后的主动切换次数，只保留最近一小时的切换记录
+     *
+     * @param since 起始时间
+     * @return 切换次数
+     */
+    public synchronized int countSwitchesSince(long since) {
+        int count = 0;
+        for (long switchedAt : recentSwitches) {
+            if (switchedAt >= since) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void pruneSwitches(long expireBefore) {
+        while (!recentSwitches.isEmpty() && recentSwitches.peekFirst() < expireBefore) {
+            recentSwitches.pollFirst();
+        }
+    }
+
+    /**
+     * 记录一次策略组全量测试
+     */
+    public synchronized void recordFullScan() {
+        fullScanCount++;
+    }
+
+    /**
+     * 备用节点列表到期且没有正在刷新时标记为刷新中
+     *
+     * @param now 当前时间
+     * @param refreshInterval 刷新间隔
+     * @return 是否需要刷新
+     */
+    public synchronized boolean tryStartStandbyRefresh(long now, long refreshInterval) {
+        if (standbyRefreshing || now - standbyRefreshedAt < refreshInterval) {
+            return false;
+        }
+        standbyRefreshing = true;
+        return true;
+    }
+
+    /**
+     * 结束备用节点刷新
+     *
+     * @param ranked 新的备用节点排名，刷新失败时为null，保留原有列表
+     * @param now 当前时间
+     */
+    public synchronized void finishStandbyRefresh(Map<String, Integer> ranked, long now) {
+        standbyRefreshing = false;
+        standbyRefreshedAt = now;
+        if (ranked != null) {
+            standby = Collections.unmodifiableMap(new LinkedHashMap<>(ranked));
+        }
+    }
+
+    /**
+     * 让备用节点列表在下次调度时刷新
+     */
+    public synchronized void expireStandby() {
+        standbyRefreshedAt = 0;
+    }
+
+    /**
+     * 获取备用节点列表
+     *
+     * @param refreshedAfter 列表需在此时间之后刷新过
+     * @return 按得分排名的备用节点和延迟，过期时为空
+     */
+    public synchronized Map<String, Integer> getStandby(long refreshedAfter) {
+        return standbyRefreshedAt >= refreshedAfter ? standby : Map.of();
+    }
+
+    /**
+     * 取出待写回的超时次数并清除脏标记
+     *
+     * @return 待写回的超时次数，没有变更时为-1
+     */
+    public synchronized int pollDirtyTimeoutCount() {
+        if (!dirty) {
+            return -1;
+        }
+        dirty = false;
+        return timeoutCount;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 写回失败时恢复脏标记，等待下次重试
+     */
+    public synchronized void markDirty() {
+        dirty = true;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("configId", configId);
+        result.put("groupName", groupName);
+        result.put("currentProxy", currentProxy);
+        result.put("lastDelay", lastDelay);
+        result.put("timeoutCount", timeoutCount);
+        result.put("switchCount", switchCount);
+        result.put("failoverCount", failoverCount);
+        result.put("voluntarySwitchesLastHour", countSwitchesSince(System.currentTimeMillis() - SWITCH_HISTORY_WINDOW));
+        for (SuppressReason reason : SuppressReason.values()) {
+            result.put("suppressedBy" + reason.name().charAt(0) + reason.name().substring(1).toLowerCase(),
+                    suppressedSwitches[reason.ordinal()]);
+        }
+        result.put("fullScanCount", fullScanCount);
+        result.put("lastRecoveryLatency", lastRecoveryLatency);
+        result.put("maxRecoveryLatency", maxRecoveryLatency);
+        result.put("avgRecoveryLatency", recoveries > 0 ? totalRecoveryLatency / recoveries : 0);
+        result.put("recoveries", recoveries);
+        result.put("closedConnections", closedConnections);
+        result.put("lastCloseDuration", lastCloseDuration);
+        result.put("standby", standby);
+        result.put("standbyRefreshedAt", standbyRefreshedAt);
+        result.put("lastCheckedAt", lastCheckedAt);
+        result.put("lastSwitchAt", lastSwitchAt);
+        result.put("dirty", dirty);
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.clashautochange.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 回放模拟中的一组自动切换参数
+ * 未指定的字段使用与策略组配置和全局配置相同的默认值
+ */
+@Data
+@NoArgsConstructor
+public class SimulationPolicy {
+
+    /**
+     * 参数组名称，用于区分结果
+     */
+    private String name;
+
+    private int maxDelay = 500;
+    private int maxTimeoutCount = 3;
+    private long checkInterval = 5000;
+
+    /**
+     * 切换后的最短停留时间（毫秒）
+     */
+    private long minDwell = 60000;
+
+    /**
+     * 主动切换时目标节点得分需要比当前节点得分低的比例余量
+     */
+    private double margin = 0.2;
+
+    /**
+     * 每小时最多主动切换次数，0表示不限制
+     */
+    private int maxSwitchesPerHour = 6;
+
+    /**
+     * 是否按延迟统计得分选择故障切换目标
+     */
+    private boolean scoreSelection = true;
+}
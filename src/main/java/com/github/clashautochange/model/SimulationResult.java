@@ -0,0 +1,46 @@
+package com.github.clashautochange.model;
+
+import lombok.Data;
+
+/**
+ * 一组自动切换参数的回放模拟结果
+ */
+@Data
+public class SimulationResult {
+
+    private String name;
+
+    /**
+     * 模拟的检查次数
+     */
+    private long checks;
+
+    /**
+     * 切换次数，其中 failovers 次是当前节点连续超时后的故障切换
+     */
+    private long switches;
+    private long failovers;
+
+    /**
+     * 防抖条件抑制的主动切换次数
+     */
+    private long suppressedSwitches;
+
+    /**
+     * 停留在不可用或超过最大延迟的节点上的时长（毫秒）及其占模拟时长的比例
+     */
+    private long badTime;
+    private double badRatio;
+
+    /**
+     * 当前节点变为不可用的次数、其中已恢复的次数和平均恢复时间（毫秒）
+     */
+    private long outages;
+    private long recoveries;
+    private long meanTimeToRecover;
+
+    /**
+     * 模拟结束时使用的节点
+     */
+    private String finalProxy;
+}
@@ -0,0 +1,30 @@
+package com.github.clashautochange.repository;
+
+import com.github.clashautochange.entity.ClashInstance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Clash 控制器存储库接口
+ */
+@Repository
+public interface ClashInstanceRepository extends JpaRepository<ClashInstance, Long> {
+
+    /**
+     * 根据名称查找控制器
+     *
+     * @param name 控制器名称
+     * @return Clash 控制器
+     */
+    Optional<ClashInstance> findByName(String name);
+
+    /**
+     * 查找所有已启用的控制器
+     *
+     * @return 已启用的控制器列表
+     */
+    List<ClashInstance> findByEnabledTrue();
+}
@@ -14,12 +14,13 @@ import java.util.Optional;
 public interface MonitoredProxyGroupRepository extends JpaRepository<MonitoredProxyGroup, Long> {
     
     /**
-     * 根据策略组名称查找配置
+     * 根据控制器和策略组名称查找配置
      * 
+     * @param instanceKey 控制器ID，默认 Clash API 为0
      * @param groupName 策略组名称
      * @return 监控代理组配置
      */
-    Optional<MonitoredProxyGroup> findByGroupName(String groupName);
+    Optional<MonitoredProxyGroup> findByInstanceKeyAndGroupName(Long instanceKey, String groupName);
     
     /**
      * 查找所有已启用的配置
@@ -1,8 +1,8 @@
 package com.github.clashautochange.repository;
 
 import com.github.clashautochange.entity.ProxyDelayHistory;
+import com.github.clashautochange.model.ProxyDelayPoint;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,80 +12,66 @@ import java.util.List;
 
 /**
  * 代理延迟历史记录存储库接口
+ * 代理组和代理节点以 proxy_name_registry 中的ID查询，名称由 ProxyDelayHistoryService 转换
  */
 @Repository
 public interface ProxyDelayHistoryRepository extends JpaRepository<ProxyDelayHistory, Long> {
 
     /**
-     * 根据代理组名称查找历史记录
+     * 根据代理组查找历史记录
      *
-     * @param groupName 代理组名称
+     * @param groupId 代理组ID
      * @return 代理延迟历史记录列表
      */
-    List<ProxyDelayHistory> findByGroupNameOrderByTestTimeDesc(String groupName);
+    List<ProxyDelayHistory> findByGroupIdOrderByTestTimeDesc(Integer groupId);
 
     /**
-     * 根据代理组名称和代理节点名称查找历史记录
+     * 根据代理组和代理节点查找历史记录
      *
-     * @param groupName 代理组名称
-     * @param proxyName 代理节点名称
+     * @param groupId 代理组ID
+     * @param proxyId 代理节点ID
      * @return 代理延迟历史记录列表
      */
-    List<ProxyDelayHistory> findByGroupNameAndProxyNameOrderByTestTimeDesc(String groupName, String proxyName);
+    List<ProxyDelayHistory> findByGroupIdAndProxyIdOrderByTestTimeDesc(Integer groupId, Integer proxyId);
 
     /**
-     * 查找指定时间范围内的历史记录
+     * 查找指定时间范围内的延迟，只读取 idx_history_group_time 索引
      *
-     * @param groupName 代理组名称
+     * @param groupId 代理组ID
      * @param startTime 开始时间
      * @param endTime 结束时间
-     * @return 代理延迟历史记录列表
+     * @return 按时间升序排列的延迟
      */
-    List<ProxyDelayHistory> findByGroupNameAndTestTimeBetweenOrderByTestTimeAsc(
-            String groupName, LocalDateTime startTime, LocalDateTime endTime);
+    @Query("SELECT new com.github.clashautochange.model.ProxyDelayPoint(p.proxyId, p.delay, p.testTime) "
+            + "FROM ProxyDelayHistory p WHERE p.groupId = :groupId AND p.testTime BETWEEN :startTime AND :endTime "
+            + "ORDER BY p.testTime ASC")
+    List<ProxyDelayPoint> findPointsByGroupIdAndTestTimeBetween(@Param("groupId") Integer groupId,
+                                                                @Param("startTime") LocalDateTime startTime,
+                                                                @Param("endTime") LocalDateTime endTime);
 
     /**
-     * 查找指定时间范围内特定代理节点的历史记录
+     * 查找指定时间范围内特定代理节点的延迟，只读取 idx_history_group_proxy_time 索引
      *
-     * @param groupName 代理组名称
-     * @param proxyName 代理节点名称
+     * @param groupId 代理组ID
+     * @param proxyId 代理节点ID
      * @param startTime 开始时间
      * @param endTime 结束时间
-     * @return 代理延迟历史记录列表
-     */
-    List<ProxyDelayHistory> findByGroupNameAndProxyNameAndTestTimeBetweenOrderByTestTimeAsc(
-            String groupName, String proxyName, LocalDateTime startTime, LocalDateTime endTime);
-
-    /**
-     * 删除指定时间之前的历史记录
-     *
-     * @param dateTime 截止时间
-     * @return 删除的记录数
+     * @return 按时间倒序排列的延迟
      */
-    long deleteByTestTimeBefore(LocalDateTime dateTime);
+    @Query("SELECT new com.github.clashautochange.model.ProxyDelayPoint(p.proxyId, p.delay, p.testTime) "
+            + "FROM ProxyDelayHistory p WHERE p.groupId = :groupId AND p.proxyId = :proxyId "
+            + "AND p.testTime BETWEEN :startTime AND :endTime ORDER BY p.testTime DESC")
+    List<ProxyDelayPoint> findPointsByGroupIdAndProxyIdAndTestTimeBetween(@Param("groupId") Integer groupId,
+                                                                          @Param("proxyId") Integer proxyId,
+                                                                          @Param("startTime") LocalDateTime startTime,
+                                                                          @Param("endTime") LocalDateTime endTime);
 
     /**
-     * 查询指定代理组中的所有唯一代理节点名称
+     * 查询指定代理组中的所有唯一代理节点ID
      *
-     * @param groupName 代理组名称
-     * @return 代理节点名称列表
-     */
-    @Query("SELECT DISTINCT p.proxyName FROM ProxyDelayHistory p WHERE p.groupName = :groupName")
-    List<String> findDistinctProxyNamesByGroupName(@Param("groupName") String groupName);
-
-    List<ProxyDelayHistory> findByGroupNameAndTestTimeBetween(String groupName, LocalDateTime startTime, LocalDateTime endTime);
-
-    List<ProxyDelayHistory> findByGroupNameAndProxyNameAndTestTimeBetween(String groupName, String proxyName, LocalDateTime startTime, LocalDateTime endTime);
-
-    /**
-     * 查找指定时间范围内特定代理节点的历史记录（按时间倒序）
-     *
-     * @param groupName 代理组名称
-     * @param proxyName 代理节点名称
-     * @param startTime 开始时间
-     * @param endTime 结束时间
-     * @return 代理延迟历史记录列表
+     * @param groupId 代理组ID
+     * @return 代理节点ID列表
      */
-    List<ProxyDelayHistory> findByGroupNameAndProxyNameAndTestTimeBetweenOrderByTestTimeDesc(
-            String groupName, String proxyName, LocalDateTime startTime, LocalDateTime endTime);
-}
\ No newline at end of file
+    @Query("SELECT DISTINCT p.proxyId FROM ProxyDelayHistory p WHERE p.groupId = :groupId")
+    List<Integer> findDistinctProxyIdsByGroupId(@Param("groupId") Integer groupId);
+}
@@ -14,12 +14,13 @@ import java.util.Optional;
 public interface ProxyGroupConfigRepository extends JpaRepository<ProxyGroupConfig, Long> {
     
     /**
-     * 根据策略组名称查找配置
+     * 根据控制器和策略组名称查找配置
      * 
+     * @param instanceKey 控制器ID，默认 Clash API 为0
      * @param groupName 策略组名称
      * @return 策略组配置
      */
-    Optional<ProxyGroupConfig> findByGroupName(String groupName);
+    Optional<ProxyGroupConfig> findByInstanceKeyAndGroupName(Long instanceKey, String groupName);
     
     /**
      * 查找所有已启用的配置
@@ -0,0 +1,331 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ProxyGroupRuntimeState;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 自动切换决策策略
+ * 只根据一次检查观察到的延迟和策略组运行时状态做出决定，不访问 Clash API 和数据库，
+ * 同一份逻辑既用于 ClashAutoChangeService 的实时检查，也用于 AutoChangeSimulator 的历史回放。
+ * 决策只修改超时计数和被抑制的切换统计，切换是否成功由调用方执行后记录
+ */
+public final class AutoChangePolicy {
+
+    /**
+     * 切换次数上限的统计窗口
+     */
+    static final long SWITCH_BUDGET_WINDOW = 3600000L;
+
+    private final long minDwell;
+    private final double switchMargin;
+    private final int maxSwitchesPerHour;
+
+    /**
+     * @param minDwell 切换后的最短停留时间（毫秒）
+     * @param switchMargin 主动切换时目标节点得分需要比当前节点得分低的比例余量
+     * @param maxSwitchesPerHour 每小时最多主动切换次数，0表示不限制
+     */
+    public AutoChangePolicy(long minDwell, double switchMargin, int maxSwitchesPerHour) {
+        this.minDwell = minDwell;
+        this.switchMargin = switchMargin;
+        this.maxSwitchesPerHour = maxSwitchesPerHour;
+    }
+
+    /**
+     * 对一次常规检查做出决定
+     *
+     * @param observation 本次检查观察到的延迟
+     * @param state 策略组运行时状态
+     * @param now 检查时间
+     * @return 决定
+     */
+    public Decision evaluate(Observation observation, ProxyGroupRuntimeState state, long now) {
+        String currentProxy = observation.currentProxy;
+        String preferredProxy = observation.preferredProxy;
+        int maxDelay = observation.maxDelay;
+
+        Integer currentDelay = observation.delays.get(currentProxy);
+        boolean currentAvailable = currentDelay != null && currentDelay <= maxDelay;
+        Integer preferredDelay = preferredProxy != null ? observation.delays.get(preferredProxy) : null;
+        boolean preferredAvailable = preferredDelay != null && preferredDelay <= maxDelay;
+        // 没有延迟既可能是本次测试失败也可能是没有测试，只有确实测试失败的当前节点才算不可用
+        boolean currentFailed = !currentAvailable && observation.tested.contains(currentProxy);
+
+        if (preferredAvailable) {
+            if (preferredProxy.equals(currentProxy)) {
+                state.resetTimeoutCount();
+                return Decision.keep(preferredDelay);
+            }
+            // 当前节点测试失败时切回优先节点属于故障切换，不受防抖条件限制，也不占用主动切换次数
+            if (currentFailed) {
+                return Decision.switchTo(Action.SWITCH, preferredProxy, preferredDelay, false, true);
+            }
+            // 当前节点工作正常或没有测试结果时，切回优先节点需要满足防抖条件
+            if (allowVoluntarySwitch(observation, state, preferredProxy, now)) {
+                return Decision.switchTo(Action.SWITCH, preferredProxy, preferredDelay, false, false);
+            }
+        }
+
+        if (currentAvailable) {
+            // 保持当前节点稳定，不寻找更低延迟的节点
+            state.resetTimeoutCount();
+            return Decision.keep(currentDelay);
+        }
+
+        int timeoutCount = state.incrementTimeoutCount();
+        if (timeoutCount < observation.maxTimeoutCount) {
+            return Decision.waitFor(timeoutCount);
+        }
+
+        // 优先使用备用节点，不在切换路径上等待延迟测试
+        for (Map.Entry<String, Integer> entry : observation.standby.entrySet()) {
+            String proxy = entry.getKey();
+            if (!proxy.equals(currentProxy) && observation.members.contains(proxy)
+                    && observation.score.applyAsDouble(proxy) <= maxDelay) {
+                return Decision.switchTo(Action.FAILOVER, proxy, entry.getValue(), true, true);
+            }
+        }
+        if (!observation.complete) {
+            return Decision.scan();
+        }
+        return selectFailover(observation, state);
+    }
+
+    /**
+     * 当前节点已连续超时，根据完整的测试结果选择故障切换目标
+     *
+     * @param observation 包含策略组全部节点的观察结果
+     * @param state 策略组运行时状态
+     * @return 决定
+     */
+    public Decision selectFailover(Observation observation, ProxyGroupRuntimeState state) {
+        Optional<Map.Entry<String, Integer>> best = findBestProxy(observation.delays, observation.maxDelay,
+                observation.score);
+        if (best.isEmpty()) {
+            return Decision.noCandidate();
+        }
+        if (best.get().getKey().equals(observation.currentProxy)) {
+            // 全量测试时当前节点已恢复
+            state.resetTimeoutCount();
+            return Decision.keep(best.get().getValue());
+        }
+        return Decision.switchTo(Action.FAILOVER, best.get().getKey(), best.get().getValue(), false, true);
+    }
+
+    /**
+     * 找出延迟不超过最大延迟且得分最低的代理
+     *
+     * @param delayResults 代理名称和延迟的映射
+     * @param maxDelay 最大可接受延迟
+     * @param score 代理得分，越低越好
+     * @return 最佳代理及其延迟
+     */
+    static Optional<Map.Entry<String, Integer>> findBestProxy(Map<String, Integer> delayResults, int maxDelay,
+                                                              ToDoubleFunction<String> score) {
+        Map.Entry<String, Integer> best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Map.Entry<String, Integer> entry : delayResults.entrySet()) {
+            if (entry.getValue() > maxDelay) {
+                continue;
+            }
+            double entryScore = score.applyAsDouble(entry.getKey());
+            if (best == null || entryScore < bestScore) {
+                best = entry;
+                bestScore = entryScore;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * 最近一小时的主动切换次数是否已达上限，故障切换不计入也不受限制，只用于提示
+     */
+    public boolean isOverBudget(ProxyGroupRuntimeState state, long now) {
+        return maxSwitchesPerHour > 0 && state.countSwitchesSince(now - SWITCH_BUDGET_WINDOW) >= maxSwitchesPerHour;
+    }
+
+    /**
+     * 判断是否允许从工作正常的节点主动切换到目标节点
+     * 距上次切换不足最短停留时间、目标得分没有比当前节点低出余量或最近一小时切换次数已达上限时不切换
+     */
+    private boolean allowVoluntarySwitch(Observation observation, ProxyGroupRuntimeState state, String target,
+                                         long now) {
+        long lastSwitchAt = state.getLastSwitchAt();
+        if (lastSwitchAt > 0 && now - lastSwitchAt < minDwell) {
+            state.recordSuppressedSwitch(ProxyGroupRuntimeState.SuppressReason.DWELL);
+            return false;
+        }
+        double currentScore = observation.score.applyAsDouble(observation.currentProxy);
+        if (observation.score.applyAsDouble(target) > currentScore * (1 - switchMargin)) {
+            state.recordSuppressedSwitch(ProxyGroupRuntimeState.SuppressReason.MARGIN);
+            return false;
+        }
+        if (isOverBudget(state, now)) {
+            state.recordSuppressedSwitch(ProxyGroupRuntimeState.SuppressReason.BUDGET);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 决定的类型
+     */
+    public enum Action {
+        /**
+         * 当前节点可用，保持不变
+         */
+        KEEP,
+        /**
+         * 当前节点不可用，超时次数未达到上限，暂不切换
+         */
+        WAIT,
+        /**
+         * 切换到优先节点，当前节点不可用时同时是故障切换
+         */
+        SWITCH,
+        /**
+         * 当前节点连续超时，切换到其他节点
+         */
+        FAILOVER,
+        /**
+         * 需要测试整个策略组后再选择故障切换目标
+         */
+        SCAN,
+        /**
+         * 没有可切换的节点
+         */
+        NO_CANDIDATE
+    }
+
+    /**
+     * 一次检查观察到的延迟
+     */
+    public static final class Observation {
+
+        private final String currentProxy;
+        private final String preferredProxy;
+        private final Map<String, Integer> delays;
+        private final Set<String> tested;
+        private final boolean complete;
+        private final int maxDelay;
+        private final int maxTimeoutCount;
+        private final Collection<String> members;
+        private final ToDoubleFunction<String> score;
+        private final Map<String, Integer> standby;
+
+        /**
+         * @param currentProxy 当前节点
+         * @param preferredProxy 优先节点
+         * @param delays 测试成功的节点和延迟
+         * @param tested 本次测试过的节点，包含测试失败的节点；在其中但不在 delays 中的节点测试失败
+         * @param complete delays 是否来自策略组全部节点的测试
+         * @param maxDelay 最大可接受延迟
+         * @param maxTimeoutCount 最大超时次数
+         * @param members 策略组中的节点
+         * @param score 节点得分，越低越好
+         * @param standby 按得分排名的备用节点和延迟
+         */
+        public Observation(String currentProxy, String preferredProxy, Map<String, Integer> delays,
+                           Set<String> tested, boolean complete, int maxDelay, int maxTimeoutCount,
+                           Collection<String> members, ToDoubleFunction<String> score, Map<String, Integer> standby) {
+            this.currentProxy = currentProxy;
+            this.preferredProxy = preferredProxy;
+            this.delays = delays;
+            this.tested = tested;
+            this.complete = complete;
+            this.maxDelay = maxDelay;
+            this.maxTimeoutCount = maxTimeoutCount;
+            this.members = members;
+            this.score = score;
+            this.standby = standby;
+        }
+    }
+
+    /**
+     * 决定
+     */
+    public static final class Decision {
+
+        private final Action action;
+        private final String target;
+        private final Integer delay;
+        private final boolean fromStandby;
+        private final boolean failover;
+        private final int timeoutCount;
+
+        private Decision(Action action, String target, Integer delay, boolean fromStandby, boolean failover,
+                         int timeoutCount) {
+            this.action = action;
+            this.target = target;
+            this.delay = delay;
+            this.fromStandby = fromStandby;
+            this.failover = failover;
+            this.timeoutCount = timeoutCount;
+        }
+
+        private static Decision keep(Integer delay) {
+            return new Decision(Action.KEEP, null, delay, false, false, 0);
+        }
+
+        private static Decision waitFor(int timeoutCount) {
+            return new Decision(Action.WAIT, null, null, false, false, timeoutCount);
+        }
+
+        private static Decision switchTo(Action action, String target, Integer delay, boolean fromStandby,
+                                         boolean failover) {
+            return new Decision(action, target, delay, fromStandby, failover, 0);
+        }
+
+        private static Decision scan() {
+            return new Decision(Action.SCAN, null, null, false, false, 0);
+        }
+
+        private static Decision noCandidate() {
+            return new Decision(Action.NO_CANDIDATE, null, null, false, false, 0);
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * 切换目标节点
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * 保持时为当前节点延迟，切换时为目标节点延迟
+         */
+        public Integer getDelay() {
+            return delay;
+        }
+
+        /**
+         * 切换目标是否来自备用节点列表
+         */
+        public boolean isFromStandby() {
+            return fromStandby;
+        }
+
+        /**
+         * 是否因为当前节点不可用而切换，包括当前节点测试失败时切回优先节点
+         */
+        public boolean isFailover() {
+            return failover;
+        }
+
+        /**
+         * WAIT 时增加后的超时次数
+         */
+        public int getTimeoutCount() {
+            return timeoutCount;
+        }
+    }
+}
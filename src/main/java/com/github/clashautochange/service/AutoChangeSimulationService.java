@@ -0,0 +1,151 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.entity.ProxyGroupConfig;
+import com.github.clashautochange.model.SimulationPolicy;
+import com.github.clashautochange.model.SimulationResult;
+import com.github.clashautochange.repository.ProxyGroupConfigRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 自动切换策略回放服务
+ * 从 proxy_delay_history 表按时间顺序流式读取策略组的延迟记录，交给 {@link AutoChangeSimulator}
+ * 用多组参数同时回放，比较切换次数、停留在不可用节点上的时长和平均恢复时间
+ */
+@Service
+@Slf4j
+public class AutoChangeSimulationService {
+
+    private static final String HISTORY_SQL = "SELECT proxy_id, delay, test_time FROM proxy_delay_history "
+            + "WHERE group_id = ? AND test_time >= ? AND test_time < ? ORDER BY test_time";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProxyGroupConfigRepository proxyGroupConfigRepository;
+    private final ProxyLatencyStatsService proxyLatencyStatsService;
+    private final ProxyNameRegistryService proxyNameRegistryService;
+
+    /**
+     * 读取历史记录时每次从数据库获取的行数
+     */
+    @Value("${clash.simulation.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${clash.auto-change.check-interval:5000}")
+    private long defaultCheckInterval;
+
+    @Value("${clash.auto-change.hysteresis.min-dwell:60000}")
+    private long minDwell;
+
+    @Value("${clash.auto-change.hysteresis.margin:0.2}")
+    private double switchMargin;
+
+    @Value("${clash.auto-change.hysteresis.max-switches-per-hour:6}")
+    private int maxSwitchesPerHour;
+
+    @Value("${clash.latency-stats.score-selection:true}")
+    private boolean scoreSelection;
+
+    @Autowired
+    public AutoChangeSimulationService(JdbcTemplate jdbcTemplate,
+                                       ProxyGroupConfigRepository proxyGroupConfigRepository,
+                                       ProxyLatencyStatsService proxyLatencyStatsService,
+                                       ProxyNameRegistryService proxyNameRegistryService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.proxyGroupConfigRepository = proxyGroupConfigRepository;
+        this.proxyLatencyStatsService = proxyLatencyStatsService;
+        this.proxyNameRegistryService = proxyNameRegistryService;
+    }
+
+    /**
+     * 用延迟历史回放自动切换
+     *
+     * @param instanceKey 控制器ID，为null或0时为默认 Clash API
+     * @param groupName 策略组名称
+     * @param preferredProxy 优先节点，为空时使用策略组配置中的优先节点
+     * @param policies 参与比较的参数组，为空时使用策略组配置和全局配置的当前参数
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @return 模拟结果
+     */
+    public Map<String, Object> simulate(Long instanceKey, String groupName, String preferredProxy,
+                                        List<SimulationPolicy> policies, LocalDateTime startTime,
+                                        LocalDateTime endTime) {
+        Optional<ProxyGroupConfig> config = proxyGroupConfigRepository.findByInstanceKeyAndGroupName(
+                instanceKey != null ? instanceKey : 0L, groupName);
+        if ((preferredProxy == null || preferredProxy.isEmpty()) && config.isPresent()) {
+            preferredProxy = config.get().getPreferredProxy();
+        }
+        if (policies == null || policies.isEmpty()) {
+            policies = List.of(currentPolicy(config.orElse(null)));
+        }
+
+        long started = System.currentTimeMillis();
+        AutoChangeSimulator simulator = new AutoChangeSimulator(groupName, preferredProxy, policies,
+                proxyLatencyStatsService::newWindow, proxyLatencyStatsService::score);
+        Optional<Integer> groupId = proxyNameRegistryService.findId(
+                ProxyDelayHistoryService.historyGroupName(instanceKey, groupName));
+        groupId.ifPresent(id -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(HISTORY_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setInt(1, id);
+            ps.setTimestamp(2, Timestamp.valueOf(startTime));
+            ps.setTimestamp(3, Timestamp.valueOf(endTime));
+            return ps;
+        }, rs -> {
+            simulator.accept(proxyNameRegistryService.getName(rs.getInt(1)), rs.getInt(2),
+                    rs.getTimestamp(3).getTime());
+        }));
+        List<SimulationResult> results = simulator.finish(Timestamp.valueOf(endTime).getTime());
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+
+        long span = simulator.getRows() > 0 ? Timestamp.valueOf(endTime).getTime() - simulator.getStartTime() : 0;
+        log.info("策略组 {} 回放完成: {} 条记录, {} 组参数, 模拟时长 {}ms, 耗时 {}ms",
+                groupName, simulator.getRows(), policies.size(), span, elapsed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("groupName", groupName);
+        result.put("preferredProxy", preferredProxy);
+        result.put("rows", simulator.getRows());
+        result.put("simulatedSpan", span);
+        result.put("elapsed", elapsed);
+        result.put("speedup", span / elapsed);
+        result.put("results", results);
+        return result;
+    }
+
+    /**
+     * 策略组配置和全局配置的当前参数
+     */
+    private SimulationPolicy currentPolicy(ProxyGroupConfig config) {
+        SimulationPolicy policy = new SimulationPolicy();
+        policy.setName("current");
+        policy.setCheckInterval(defaultCheckInterval);
+        policy.setMinDwell(minDwell);
+        policy.setMargin(switchMargin);
+        policy.setMaxSwitchesPerHour(maxSwitchesPerHour);
+        policy.setScoreSelection(scoreSelection);
+        if (config != null) {
+            policy.setMaxDelay(config.getMaxDelay());
+            if (config.getMaxTimeoutCount() != null) {
+                policy.setMaxTimeoutCount(config.getMaxTimeoutCount());
+            }
+            if (config.getCheckInterval() != null) {
+                policy.setCheckInterval(config.getCheckInterval());
+            }
+        }
+        return policy;
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ProxyGroupRuntimeState;
+import com.github.clashautochange.model.SimulationPolicy;
+import com.github.clashautochange.model.SimulationResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 自动切换策略回放模拟器
+ * 按时间顺序逐条接收一个策略组的延迟历史记录，以虚拟时间按各组参数的检查间隔进行检查，
+ * 每次检查用 {@link AutoChangePolicy} 做出与实时检查相同的决定。
+ * 每次检查看到的是各节点截至当时最近一次记录的延迟，相当于每次检查都测试了整个策略组；
+ * 所有参数组共用同一份延迟数据，只保存各自的当前节点和运行时状态
+ */
+final class AutoChangeSimulator {
+
+    private final String groupName;
+    private final String preferredProxy;
+    private final Supplier<LatencyWindow> windowFactory;
+    private final ToDoubleBiFunction<LatencyWindow, Integer> windowScore;
+    private final List<Run> runs = new ArrayList<>();
+
+    /**
+     * 各节点最近一次成功的延迟，最近一次失败的节点不在其中
+     */
+    private final Map<String, Integer> delays = new HashMap<>();
+    private final Map<String, LatencyWindow> windows = new HashMap<>();
+    private final Set<String> members = new LinkedHashSet<>();
+
+    private long startTime = -1;
+    private long rows;
+
+    /**
+     * @param groupName 策略组名称
+     * @param preferredProxy 优先节点，模拟开始时使用的节点
+     * @param policies 参与比较的参数组
+     * @param windowFactory 创建节点延迟滑动窗口
+     * @param windowScore 计算滑动窗口得分，第二个参数为没有成功结果时使用的延迟
+     */
+    AutoChangeSimulator(String groupName, String preferredProxy, List<SimulationPolicy> policies,
+                        Supplier<LatencyWindow> windowFactory,
+                        ToDoubleBiFunction<LatencyWindow, Integer> windowScore) {
+        this.groupName = groupName;
+        this.preferredProxy = preferredProxy;
+        this.windowFactory = windowFactory;
+        this.windowScore = windowScore;
+        for (SimulationPolicy policy : policies) {
+            runs.add(new Run(policy));
+        }
+    }
+
+    /**
+     * 接收一条延迟历史记录，记录必须按时间升序到达
+     *
+     * @param proxy 节点名称
+     * @param delay 延迟（毫秒），失败为-1
+     * @param time 测试时间（毫秒）
+     */
+    void accept(String proxy, int delay, long time) {
+        if (startTime < 0) {
+            startTime = time;
+            for (Run run : runs) {
+                run.start(time);
+            }
+        }
+        // 同一时间的记录全部到达后才进行该时间的检查
+        advanceTo(time);
+
+        rows++;
+        members.add(proxy);
+        if (delay > 0) {
+            delays.put(proxy, delay);
+        } else {
+            delays.remove(proxy);
+        }
+        LatencyWindow window = windows.get(proxy);
+        if (window == null) {
+            window = windowFactory.get();
+            windows.put(proxy, window);
+        }
+        window.record(delay, time);
+    }
+
+    /**
+     * 结束模拟
+     *
+     * @param endTime 模拟结束时间（毫秒）
+     * @return 各参数组的模拟结果，顺序与传入的参数组相同
+     */
+    List<SimulationResult> finish(long endTime) {
+        List<SimulationResult> results = new ArrayList<>();
+        if (startTime < 0) {
+            return results;
+        }
+        advanceTo(endTime);
+        for (Run run : runs) {
+            results.add(run.finish(endTime));
+        }
+        return results;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * 执行所有早于指定时间的检查
+     */
+    private void advanceTo(long time) {
+        for (Run run : runs) {
+            while (run.nextCheck < time) {
+                run.check(run.nextCheck);
+                run.nextCheck += run.checkInterval;
+            }
+        }
+    }
+
+    /**
+     * 一组参数的模拟过程
+     */
+    private final class Run {
+
+        private final SimulationPolicy policy;
+        private final AutoChangePolicy autoChangePolicy;
+        private final ProxyGroupRuntimeState state;
+        private final ToDoubleFunction<String> score;
+        private final long checkInterval;
+
+        private String currentProxy;
+        private long nextCheck;
+        private long lastCheck;
+        private long checks;
+
+        /**
+         * 上次检查后当前节点是否不可用或超过最大延迟
+         */
+        private boolean bad;
+        private long badSince;
+        private long badTime;
+        private long outages;
+        private long recoveries;
+        private long totalRecoveryTime;
+
+        private Run(SimulationPolicy policy) {
+            this.policy = policy;
+            this.autoChangePolicy = new AutoChangePolicy(policy.getMinDwell(), policy.getMargin(),
+                    policy.getMaxSwitchesPerHour());
+            this.state = new ProxyGroupRuntimeState(null, groupName, 0);
+            this.checkInterval = Math.max(1000, policy.getCheckInterval());
+            if (policy.isScoreSelection()) {
+                this.score = proxy -> {
+                    LatencyWindow window = windows.get(proxy);
+                    int fallbackDelay = delays.getOrDefault(proxy, Integer.MAX_VALUE);
+                    return window != null ? windowScore.applyAsDouble(window, fallbackDelay) : fallbackDelay;
+                };
+            } else {
+                this.score = proxy -> delays.getOrDefault(proxy, Integer.MAX_VALUE);
+            }
+        }
+
+        private void start(long time) {
+            nextCheck = time;
+            lastCheck = time;
+        }
+
+        private void check(long now) {
+            if (currentProxy == null) {
+                // 模拟从优先节点开始，没有优先节点的记录时从第一个出现的节点开始
+                currentProxy = preferredProxy != null && members.contains(preferredProxy)
+                        ? preferredProxy : members.iterator().next();
+            }
+            if (bad) {
+                badTime += now - lastCheck;
+            }
+            lastCheck = now;
+            checks++;
+
+            // 回放时每个出现过的节点都有最近一次测试结果
+            AutoChangePolicy.Observation observation = new AutoChangePolicy.Observation(currentProxy,
+                    preferredProxy, delays, members, true, policy.getMaxDelay(), policy.getMaxTimeoutCount(), members,
+                    score, Map.of());
+            AutoChangePolicy.Decision decision = autoChangePolicy.evaluate(observation, state, now);
+            switch (decision.getAction()) {
+                case KEEP:
+                    state.recordHealthy(currentProxy, decision.getDelay(), now);
+                    break;
+                case SWITCH:
+                case FAILOVER:
+                    currentProxy = decision.getTarget();
+                    state.recordSwitch(currentProxy, decision.getDelay(), decision.isFailover(), now);
+                    break;
+                default:
+                    state.recordCheck(currentProxy, null, now);
+                    break;
+            }
+
+            Integer currentDelay = delays.get(currentProxy);
+            boolean nowBad = currentDelay == null || currentDelay > policy.getMaxDelay();
+            if (nowBad && !bad) {
+                outages++;
+                badSince = now;
+            } else if (!nowBad && bad) {
+                recoveries++;
+                totalRecoveryTime += now - badSince;
+            }
+            bad = nowBad;
+        }
+
+        private SimulationResult finish(long endTime) {
+            if (bad && endTime > lastCheck) {
+                badTime += endTime - lastCheck;
+            }
+            long span = endTime - startTime;
+
+            SimulationResult result = new SimulationResult();
+            result.setName(policy.getName());
+            result.setChecks(checks);
+            result.setSwitches(state.getSwitchCount());
+            result.setFailovers(state.getFailoverCount());
+            result.setSuppressedSwitches(state.getSuppressedSwitchCount());
+            result.setBadTime(badTime);
+            result.setBadRatio(span > 0 ? Math.round((double) badTime / span * 10000) / 10000.0 : 0);
+            result.setOutages(outages);
+            result.setRecoveries(recoveries);
+            result.setMeanTimeToRecover(recoveries > 0 ? totalRecoveryTime / recoveries : 0);
+            result.setFinalProxy(currentProxy);
+            return result;
+        }
+    }
+}
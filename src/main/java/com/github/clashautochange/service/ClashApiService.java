@@ -1,9 +1,12 @@
 package com.github.clashautochange.service;
 
 import com.github.clashautochange.config.ClashApiConfig;
-import com.github.clashautochange.model.ClashDelayRequest;
+import com.github.clashautochange.model.ClashConnection;
 import com.github.clashautochange.model.ClashDelayResponse;
+import com.github.clashautochange.model.ClashEndpoint;
 import com.github.clashautochange.model.ClashProxiesResponse;
+import com.github.clashautochange.model.ClashProxy;
+import com.github.clashautochange.model.ClashProxySnapshot;
 import com.github.clashautochange.model.ClashSelectProxyRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +15,9 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -19,6 +25,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Clash API 服务
@@ -30,38 +38,53 @@ public class ClashApiService {
 
     private final RestTemplate restTemplate;
     private final ClashApiConfig clashApiConfig;
+    private final ClashResponseParser clashResponseParser;
+    private final ClashCircuitBreakerRegistry circuitBreakerRegistry;
 
     @Autowired
-    public ClashApiService(RestTemplate restTemplate, ClashApiConfig clashApiConfig) {
+    public ClashApiService(RestTemplate restTemplate, ClashApiConfig clashApiConfig,
+                           ClashResponseParser clashResponseParser,
+                           ClashCircuitBreakerRegistry circuitBreakerRegistry) {
         this.restTemplate = restTemplate;
         this.clashApiConfig = clashApiConfig;
+        this.clashResponseParser = clashResponseParser;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
     }
 
     /**
      * 获取请求头
      *
+     * @param endpoint Clash API端点
      * @return HTTP请求头
      */
-    private HttpHeaders getHeaders() {
+    private HttpHeaders getHeaders(ClashEndpoint endpoint) {
         HttpHeaders headers = new HttpHeaders();
-        String secret = clashApiConfig.getSecret();
-        if (secret != null && !secret.isEmpty()) {
-            headers.set("Authorization", "Bearer " + secret);
+        if (endpoint.getAuthorization() != null) {
+            headers.set(HttpHeaders.AUTHORIZATION, endpoint.getAuthorization());
         }
         return headers;
     }
 
+    /**
+     * 获取Clash版本信息（默认端点）
+     */
+    public Map<String, Object> getVersion() {
+        return getVersion(clashApiConfig.getEndpoint());
+    }
+
     /**
      * 获取Clash版本信息
      * 
+     * @param endpoint Clash API端点
      * @return 版本信息Map
      */
-    public Map<String, Object> getVersion() {
-        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
-        log.info("获取Clash版本信息，请求URL: {}/version", clashApiConfig.getBaseUrl());
+    public Map<String, Object> getVersion(ClashEndpoint endpoint) {
+        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders(endpoint));
+        log.info("获取Clash版本信息，请求URL: {}/version", endpoint.getBaseUrl());
         
-        ResponseEntity<Map> response = restTemplate.exchange(
-                clashApiConfig.getBaseUrl() + "/version",
+        ResponseEntity<Map> response = exchange(
+                endpoint,
+                endpoint.getBaseUrl() + "/version",
                 HttpMethod.GET,
                 requestEntity,
                 Map.class
@@ -76,46 +99,67 @@ public class ClashApiService {
         }
     }
 
+    /**
+     * 获取所有代理（默认端点）
+     */
+    public ClashProxiesResponse getAllProxies() {
+        return getAllProxies(clashApiConfig.getEndpoint());
+    }
+
     /**
      * 获取所有代理
      *
+     * @param endpoint Clash API端点
      * @return 代理响应
      */
-    public ClashProxiesResponse getAllProxies() {
-        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
-        ResponseEntity<ClashProxiesResponse> response = restTemplate.exchange(
-                clashApiConfig.getBaseUrl() + "/proxies",
-                HttpMethod.GET,
-                requestEntity,
-                ClashProxiesResponse.class
-        );
-        return response.getBody();
+    public ClashProxiesResponse getAllProxies(ClashEndpoint endpoint) {
+        ClashProxiesResponse response = new ClashProxiesResponse();
+        response.setProxies(getAndParse(endpoint, endpoint.getBaseUrl() + "/proxies",
+                clientResponse -> clashResponseParser.parseProxies(clientResponse.getBody())));
+        return response;
+    }
+
+    /**
+     * 获取所有代理的快照（默认端点）
+     */
+    public ClashProxySnapshot getProxySnapshot() {
+        return getProxySnapshot(clashApiConfig.getEndpoint());
+    }
+
+    /**
+     * 获取所有代理的快照
+     *
+     * @param endpoint Clash API端点
+     * @return 代理快照
+     */
+    public ClashProxySnapshot getProxySnapshot(ClashEndpoint endpoint) {
+        Map<String, ClashProxy> proxies = getAndParse(endpoint, endpoint.getBaseUrl() + "/proxies",
+                clientResponse -> clashResponseParser.parseProxies(clientResponse.getBody()));
+        return new ClashProxySnapshot(endpoint, proxies, System.currentTimeMillis());
+    }
+
+    /**
+     * 获取所有代理组（默认端点）
+     */
+    public Map<String, List<String>> getAllGroups() {
+        return getAllGroups(clashApiConfig.getEndpoint());
     }
 
     /**
      * 获取所有代理组
      *
+     * @param endpoint Clash API端点
      * @return 代理组名称和其代理节点的映射
      */
-    public Map<String, List<String>> getAllGroups() {
-        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
-        ResponseEntity<Map> response = restTemplate.exchange(
-                clashApiConfig.getBaseUrl() + "/group",
-                HttpMethod.GET,
-                requestEntity,
-                Map.class
-        );
+    public Map<String, List<String>> getAllGroups(ClashEndpoint endpoint) {
+        List<ClashProxy> groups = getAndParse(endpoint, endpoint.getBaseUrl() + "/group",
+                clientResponse -> clashResponseParser.parseGroups(clientResponse.getBody()));
         
         Map<String, List<String>> result = new HashMap<>();
-        if (response.getBody() != null && response.getBody().containsKey("proxies")) {
-            List<Map<String, Object>> proxies = (List<Map<String, Object>>) response.getBody().get("proxies");
-            for (Map<String, Object> proxy : proxies) {
-                String name = (String) proxy.get("name");
-                String type = (String) proxy.get("type");
-                
-                if ("Selector".equals(type) && proxy.containsKey("all")) {
-                    List<String> all = (List<String>) proxy.get("all");
-                    result.put(name, all);
+        if (groups != null) {
+            for (ClashProxy group : groups) {
+                if ("Selector".equals(group.getType()) && group.getAll() != null) {
+                    result.put(group.getName(), group.getAll());
                 }
             }
         }
@@ -123,78 +167,57 @@ public class ClashApiService {
         return result;
     }
 
+    /**
+     * 获取特定策略组的代理节点（默认端点）
+     */
+    public List<String> getGroupProxies(String groupName) {
+        return getGroupProxies(clashApiConfig.getEndpoint(), groupName);
+    }
+
     /**
      * 获取特定策略组的代理节点
      *
+     * @param endpoint Clash API端点
      * @param groupName 策略组名称
      * @return 代理节点列表
      */
-    public List<String> getGroupProxies(String groupName) {
+    public List<String> getGroupProxies(ClashEndpoint endpoint, String groupName) {
         try {
-            HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
-            String url = clashApiConfig.getBaseUrl() + "/proxies/" + groupName;
-            
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    requestEntity,
-                    Map.class
-            );
-            
-            List<String> result = new ArrayList<>();
-            if (response.getBody() != null) {
-                if (response.getBody().containsKey("all")) {
-                    result = (List<String>) response.getBody().get("all");
-                } 
-                else if (response.getBody().containsKey("proxies")) {
-                    List<Map<String, Object>> proxies = (List<Map<String, Object>>) response.getBody().get("proxies");
-                    if (proxies != null && !proxies.isEmpty()) {
-                        for (Map<String, Object> proxy : proxies) {
-                            if (proxy.containsKey("name")) {
-                                result.add((String) proxy.get("name"));
-                            }
-                        }
-                    }
-                } 
-                else if (response.getBody().containsKey("now") && response.getBody().containsKey("all")) {
-                    result = (List<String>) response.getBody().get("all");
-                }
-                else {
-                    for (Object entryObj : response.getBody().entrySet()) {
-                        if (entryObj instanceof Map.Entry) {
-                            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) entryObj;
-                            if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
-                                result.add((String) entry.getKey());
-                            }
-                        }
-                    }
-                }
-            }
-            
-            return result;
+            List<String> members = getAndParse(endpoint, endpoint.getBaseUrl() + "/proxies/" + groupName,
+                    clientResponse -> clashResponseParser.parseGroupMembers(clientResponse.getBody()));
+            return members != null ? members : new ArrayList<>();
         } catch (Exception e) {
             log.error("获取策略组代理节点时出错: {}", e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * 测试代理延迟（默认端点）
+     */
+    public ClashDelayResponse testProxyDelay(String proxyName, String url, Integer timeout) {
+        return testProxyDelay(clashApiConfig.getEndpoint(), proxyName, url, timeout);
+    }
+
     /**
      * 测试代理延迟
      *
+     * @param endpoint Clash API端点
      * @param proxyName 代理名称
      * @param url 测试URL
      * @param timeout 超时时间
      * @return 延迟响应
      */
-    public ClashDelayResponse testProxyDelay(String proxyName, String url, Integer timeout) {
-        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
+    public ClashDelayResponse testProxyDelay(ClashEndpoint endpoint, String proxyName, String url, Integer timeout) {
+        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders(endpoint));
 
         UriComponentsBuilder builder = UriComponentsBuilder
-                .fromHttpUrl(clashApiConfig.getBaseUrl() + "/proxies/" + proxyName + "/delay")
+                .fromHttpUrl(endpoint.getBaseUrl() + "/proxies/" + proxyName + "/delay")
                 .queryParam("url", url)
                 .queryParam("timeout", timeout);
 
-        ResponseEntity<ClashDelayResponse> response = restTemplate.exchange(
+        ResponseEntity<ClashDelayResponse> response = exchange(
+                endpoint,
                 builder.toUriString(),
                 HttpMethod.GET,
                 requestEntity,
@@ -203,22 +226,31 @@ public class ClashApiService {
         return response.getBody();
     }
 
+    /**
+     * 选择代理（默认端点）
+     */
+    public void selectProxy(String proxyGroup, String proxyName) {
+        selectProxy(clashApiConfig.getEndpoint(), proxyGroup, proxyName);
+    }
+
     /**
      * 选择代理
      *
+     * @param endpoint Clash API端点
      * @param proxyGroup 代理组
      * @param proxyName 代理名称
      */
-    public void selectProxy(String proxyGroup, String proxyName) {
+    public void selectProxy(ClashEndpoint endpoint, String proxyGroup, String proxyName) {
         HttpEntity<ClashSelectProxyRequest> requestEntity = new HttpEntity<>(
                 new ClashSelectProxyRequest(proxyName),
-                getHeaders()
+                getHeaders(endpoint)
         );
 
         try {
-            String url = clashApiConfig.getBaseUrl() + "/proxies/" + proxyGroup;
+            String url = endpoint.getBaseUrl() + "/proxies/" + proxyGroup;
             
-            ResponseEntity<Void> response = restTemplate.exchange(
+            ResponseEntity<Void> response = exchange(
+                    endpoint,
                     url,
                     HttpMethod.PUT,
                     requestEntity,
@@ -230,79 +262,191 @@ public class ClashApiService {
         }
     }
 
+    /**
+     * 获取当前所有连接
+     *
+     * @param endpoint Clash API端点
+     * @return 连接列表
+     */
+    public List<ClashConnection> getConnections(ClashEndpoint endpoint) {
+        List<ClashConnection> result = getAndParse(endpoint, endpoint.getBaseUrl() + "/connections",
+                clientResponse -> clashResponseParser.parseConnections(clientResponse.getBody()));
+        return result != null ? result : new ArrayList<>();
+    }
+
+    /**
+     * 关闭指定连接
+     *
+     * @param endpoint Clash API端点
+     * @param connectionId 连接ID
+     */
+    public void closeConnection(ClashEndpoint endpoint, String connectionId) {
+        exchange(
+                endpoint,
+                endpoint.getBaseUrl() + "/connections/" + connectionId,
+                HttpMethod.DELETE,
+                new HttpEntity<>(getHeaders(endpoint)),
+                Void.class
+        );
+    }
+
+    /**
+     * 测试策略组中所有代理的延迟（默认端点）
+     */
+    public Map<String, Integer> testGroupDelay(String groupName, String url, Integer timeout) {
+        return testGroupDelay(clashApiConfig.getEndpoint(), groupName, url, timeout);
+    }
+
     /**
      * 测试策略组中所有代理的延迟
      *
+     * @param endpoint Clash API端点
      * @param groupName 策略组名称
      * @param url 测试URL
      * @param timeout 超时时间
      * @return 代理名称和延迟的映射
      */
-    public Map<String, Integer> testGroupDelay(String groupName, String url, Integer timeout) {
-        HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
-
+    public Map<String, Integer> testGroupDelay(ClashEndpoint endpoint, String groupName, String url, Integer timeout) {
         UriComponentsBuilder builder = UriComponentsBuilder
-                .fromHttpUrl(clashApiConfig.getBaseUrl() + "/group/" + groupName + "/delay")
+                .fromHttpUrl(endpoint.getBaseUrl() + "/group/" + groupName + "/delay")
                 .queryParam("url", url)
                 .queryParam("timeout", timeout);
                 
         String requestUrl = builder.toUriString();
 
         try {
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    requestUrl,
-                    HttpMethod.GET,
-                    requestEntity,
-                    Map.class
-            );
-            
-            Map<String, Integer> result = new HashMap<>();
-            if (response.getBody() != null) {
-                // 解析响应，提取每个代理的延迟
-                Map<String, Object> responseBody = response.getBody();
-                for (Map.Entry<String, Object> entry : responseBody.entrySet()) {
-                    if (entry.getValue() instanceof Integer) {
-                        result.put(entry.getKey(), (Integer) entry.getValue());
-                    } else if (entry.getValue() instanceof Number) {
-                        result.put(entry.getKey(), ((Number) entry.getValue()).intValue());
-                    }
-                }
-            }
-
-            return result;
+            Map<String, Integer> result = getAndParse(endpoint, requestUrl,
+                    clientResponse -> clashResponseParser.parseDelays(clientResponse.getBody()));
+            return result != null ? result : new HashMap<>();
         } catch (Exception e) {
             log.error("测试策略组代理延迟时出错: {}", e.getMessage());
             return new HashMap<>();
         }
     }
 
+    /**
+     * 获取特定策略组的信息（默认端点）
+     */
+    public Optional<ClashProxy> getGroupInfo(String groupName) {
+        return getGroupInfo(clashApiConfig.getEndpoint(), groupName);
+    }
+
     /**
      * 获取特定策略组的信息
      *
+     * @param endpoint Clash API端点
      * @param groupName 策略组名称
      * @return 策略组信息
      */
-    public Map<String, Object> getGroupInfo(String groupName) {
+    public Optional<ClashProxy> getGroupInfo(ClashEndpoint endpoint, String groupName) {
         try {
-            HttpEntity<Void> requestEntity = new HttpEntity<>(getHeaders());
-            String url = clashApiConfig.getBaseUrl() + "/proxies/" + groupName;
-            
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
+            ClashProxy group = getAndParse(endpoint, endpoint.getBaseUrl() + "/proxies/" + groupName,
+                    clientResponse -> clashResponseParser.parseProxy(clientResponse.getBody()));
+            return Optional.ofNullable(group);
+        } catch (Exception e) {
+            log.error("获取策略组 '{}' 的信息时出错: {}", groupName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 检查Clash API是否可用（默认端点）
+     */
+    public boolean isAvailable() {
+        return isAvailable(clashApiConfig.getEndpoint());
+    }
+
+    /**
+     * 获取所有熔断器的状态
+     *
+     * @return 熔断器状态列表
+     */
+    public List<Map<String, Object>> getCircuitBreakerStates() {
+        return circuitBreakerRegistry.snapshot();
+    }
+
+    /**
+     * 检查Clash API是否可用
+     * 熔断器打开且退避时间已到时，通过 /version 进行一次半开探测
+     *
+     * @param endpoint Clash API端点
+     * @return 是否可以发送请求
+     */
+    public boolean isAvailable(ClashEndpoint endpoint) {
+        ClashCircuitBreaker breaker = circuitBreakerRegistry.get(endpoint);
+        if (breaker.allowRequest()) {
+            return true;
+        }
+        if (!breaker.tryAcquireProbe()) {
+            return false;
+        }
+        try {
+            restTemplate.exchange(
+                    endpoint.getBaseUrl() + "/version",
                     HttpMethod.GET,
-                    requestEntity,
+                    new HttpEntity<>(getHeaders(endpoint)),
                     Map.class
             );
-            
-            if (response.getBody() != null) {
-                Map<String, Object> groupInfo = response.getBody();
-                return groupInfo;
-            } else {
-                return new HashMap<>();
-            }
+        } catch (HttpStatusCodeException e) {
+            // 返回了HTTP状态码说明Clash API可以连接
         } catch (Exception e) {
-            log.error("获取策略组 '{}' 的信息时出错: {}", groupName, e.getMessage());
-            return new HashMap<>();
+            breaker.recordFailure();
+            log.warn("Clash API {} 仍不可用: {}", endpoint.getBaseUrl(), e.getMessage());
+            return false;
+        }
+        breaker.recordSuccess();
+        log.info("Clash API {} 已恢复连接", endpoint.getBaseUrl());
+        return true;
+    }
+
+    /**
+     * 在熔断器保护下执行请求
+     * 只有连接失败和读取超时计入熔断器，HTTP错误状态码说明Clash API可以连接
+     *
+     * @param endpoint Clash API端点
+     * @param request 请求
+     * @return 请求结果
+     */
+    private <T> T guarded(ClashEndpoint endpoint, Supplier<T> request) {
+        if (!isAvailable(endpoint)) {
+            throw new ClashCircuitOpenException(endpoint.getBaseUrl());
+        }
+        ClashCircuitBreaker breaker = circuitBreakerRegistry.get(endpoint);
+        try {
+            T result = request.get();
+            breaker.recordSuccess();
+            return result;
+        } catch (HttpStatusCodeException e) {
+            breaker.recordSuccess();
+            throw e;
+        } catch (ResourceAccessException e) {
+            if (breaker.recordFailure()) {
+                log.warn("Clash API {} 连续连接失败，暂停请求 (熔断)", endpoint.getBaseUrl());
+            }
+            throw e;
         }
     }
-}
\ No newline at end of file
+
+    private <T> ResponseEntity<T> exchange(ClashEndpoint endpoint, String url, HttpMethod method,
+                                           HttpEntity<?> requestEntity, Class<T> responseType) {
+        return guarded(endpoint, () -> restTemplate.exchange(url, method, requestEntity, responseType));
+    }
+
+    /**
+     * 发送GET请求并使用流式解析器处理响应体
+     *
+     * @param endpoint Clash API端点
+     * @param url 请求URL
+     * @param extractor 响应解析器
+     * @return 解析结果
+     */
+    private <T> T getAndParse(ClashEndpoint endpoint, String url, ResponseExtractor<T> extractor) {
+        HttpHeaders headers = getHeaders(endpoint);
+        return guarded(endpoint, () -> restTemplate.execute(
+                url,
+                HttpMethod.GET,
+                request -> request.getHeaders().putAll(headers),
+                extractor
+        ));
+    }
+}
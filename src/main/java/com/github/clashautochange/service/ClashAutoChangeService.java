@@ -1,9 +1,14 @@
 package com.github.clashautochange.service;
 
+import com.github.clashautochange.entity.ClashInstance;
 import com.github.clashautochange.entity.ProxyGroupConfig;
 import com.github.clashautochange.model.ClashDelayResponse;
+import com.github.clashautochange.model.ClashEndpoint;
 import com.github.clashautochange.model.ClashProxy;
 import com.github.clashautochange.model.ClashProxiesResponse;
+import com.github.clashautochange.model.ClashProxySnapshot;
+import com.github.clashautochange.model.ProxyGroupRuntimeState;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +17,9 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -23,130 +31,729 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ClashAutoChangeService {
 
+    /**
+     * 在 ClashFleetExecutor 中提交的任务名称前缀，后接策略组名称
+     */
+    private static final String AUTO_CHANGE_TASK = "auto-change:";
+    private static final String STANDBY_TASK = "standby:";
+
     private final ClashApiService clashApiService;
+    private final ClashDelayTestService clashDelayTestService;
+    private final ClashProxySnapshotService clashProxySnapshotService;
+    private final ProxyDelayProbeService proxyDelayProbeService;
+    private final ProxyLatencyStatsService proxyLatencyStatsService;
     private final ProxyGroupConfigService proxyGroupConfigService;
+    private final ProxyGroupRuntimeService proxyGroupRuntimeService;
+    private final ClashInstanceService clashInstanceService;
+    private final ClashFleetExecutor clashFleetExecutor;
+    private final ClashConnectionService clashConnectionService;
 
     @Value("${clash.auto-change.test-url:https://www.gstatic.com/generate_204}")
     private String testUrl;
 
+    /**
+     * 策略组未单独设置检查间隔时使用的默认值
+     */
+    @Value("${clash.auto-change.check-interval:5000}")
+    private long checkInterval;
+
+    /**
+     * 自适应检查间隔
+     */
+    @Value("${clash.auto-change.adaptive.enabled:true}")
+    private boolean adaptiveEnabled;
+
+    @Value("${clash.auto-change.adaptive.min-interval:2000}")
+    private long adaptiveMinInterval;
+
+    @Value("${clash.auto-change.adaptive.max-interval:60000}")
+    private long adaptiveMaxInterval;
+
+    /**
+     * 延迟不超过 maxDelay 的该比例时放宽间隔
+     */
+    @Value("${clash.auto-change.adaptive.relax-ratio:0.5}")
+    private double adaptiveRelaxRatio;
+
+    /**
+     * 延迟超过 maxDelay 的该比例时收紧间隔
+     */
+    @Value("${clash.auto-change.adaptive.tighten-ratio:0.8}")
+    private double adaptiveTightenRatio;
+
+    /**
+     * 延迟超过上次的该倍数时视为上升趋势
+     */
+    @Value("${clash.auto-change.adaptive.trend-ratio:1.5}")
+    private double adaptiveTrendRatio;
+
+    @Value("${clash.auto-change.adaptive.backoff-factor:1.5}")
+    private double adaptiveBackoffFactor;
+
+    /**
+     * 切换后的最短停留时间，期间不会从工作正常的节点主动切走
+     */
+    @Value("${clash.auto-change.hysteresis.min-dwell:60000}")
+    private long minDwell;
+
+    /**
+     * 主动切换时目标节点得分需要比当前节点得分低的比例余量
+     */
+    @Value("${clash.auto-change.hysteresis.margin:0.2}")
+    private double switchMargin;
+
+    /**
+     * 每个策略组每小时最多主动切换次数，0表示不限制
+     */
+    @Value("${clash.auto-change.hysteresis.max-switches-per-hour:6}")
+    private int maxSwitchesPerHour;
+
+    private AutoChangePolicy autoChangePolicy;
+
+    /**
+     * 备用节点列表：后台定期测试整个策略组并按得分排名，当前节点连续超时时直接切换到排名最高的健康节点
+     */
+    @Value("${clash.auto-change.standby.enabled:true}")
+    private boolean standbyEnabled;
+
+    @Value("${clash.auto-change.standby.size:5}")
+    private int standbySize;
+
+    @Value("${clash.auto-change.standby.refresh-interval:60000}")
+    private long standbyRefreshInterval;
+
+    /**
+     * 备用节点列表超过该时长未刷新时不再使用
+     */
+    @Value("${clash.auto-change.standby.max-age:180000}")
+    private long standbyMaxAge;
+
+    private final Map<Long, GroupSchedule> schedules = new ConcurrentHashMap<>();
+
+    /**
+     * 延迟测试方式：group 使用 Clash 的策略组测试接口，node 逐个节点并发测试
+     */
+    @Value("${clash.probe.mode:group}")
+    private String probeMode;
+
+    /**
+     * 增量探测：常规检查只测试当前节点和优先节点，超时次数达到上限需要切换时才测试整个策略组
+     */
+    @Value("${clash.probe.incremental:true}")
+    private boolean incrementalProbe;
+
+    /**
+     * 可接受的延迟测试缓存结果最大时长
+     */
+    @Value("${clash.delay-cache.auto-change-max-age:2000}")
+    private long delayMaxAge;
+
+    /**
+     * 切换节点时按延迟统计得分选择，关闭时按本次测试的延迟选择
+     */
+    @Value("${clash.latency-stats.score-selection:true}")
+    private boolean scoreSelection;
+
     @Autowired
-    public ClashAutoChangeService(ClashApiService clashApiService, ProxyGroupConfigService proxyGroupConfigService) {
+    public ClashAutoChangeService(ClashApiService clashApiService,
+                                  ClashDelayTestService clashDelayTestService,
+                                  ClashProxySnapshotService clashProxySnapshotService,
+                                  ProxyDelayProbeService proxyDelayProbeService,
+                                  ProxyLatencyStatsService proxyLatencyStatsService,
+                                  ProxyGroupConfigService proxyGroupConfigService,
+                                  ProxyGroupRuntimeService proxyGroupRuntimeService,
+                                  ClashInstanceService clashInstanceService,
+                                  ClashFleetExecutor clashFleetExecutor,
+                                  ClashConnectionService clashConnectionService) {
         this.clashApiService = clashApiService;
+        this.clashDelayTestService = clashDelayTestService;
+        this.clashProxySnapshotService = clashProxySnapshotService;
+        this.proxyDelayProbeService = proxyDelayProbeService;
+        this.proxyLatencyStatsService = proxyLatencyStatsService;
         this.proxyGroupConfigService = proxyGroupConfigService;
+        this.proxyGroupRuntimeService = proxyGroupRuntimeService;
+        this.clashInstanceService = clashInstanceService;
+        this.clashFleetExecutor = clashFleetExecutor;
+        this.clashConnectionService = clashConnectionService;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.autoChangePolicy = new AutoChangePolicy(minDwell, switchMargin, maxSwitchesPerHour);
     }
 
     /**
-     * 定时任务，自动切换代理
-     * 根据数据库中的配置，检查每个策略组的代理延迟并进行切换
+     * 定时任务，调度各策略组的自动切换检查
+     * 每个策略组按自己的检查间隔独立运行在所属控制器的线程池中，
+     * 一个策略组的延迟测试等待超时不会推迟其他策略组的检查
      */
-    @Scheduled(fixedDelayString = "${clash.auto-change.check-interval:5000}")
+    @Scheduled(fixedDelayString = "${clash.auto-change.dispatch-interval:1000}")
     public void autoChangeProxy() {
         // 获取所有已启用的策略组配置
         List<ProxyGroupConfig> enabledConfigs = proxyGroupConfigService.getAllEnabledConfigs();
-        if (enabledConfigs.isEmpty()) {
-            return;
-        }
+        Set<Long> activeIds = new HashSet<>();
+        Set<String> activeTasks = new HashSet<>();
+        long now = System.currentTimeMillis();
 
-        // 处理每个已启用的策略组配置
         for (ProxyGroupConfig config : enabledConfigs) {
-            processProxyGroup(config);
+            // 跳过已禁用的控制器
+            ClashInstance instance = config.getInstance();
+            if (instance != null && !Boolean.TRUE.equals(instance.getEnabled())) {
+                continue;
+            }
+            activeIds.add(config.getId());
+
+            ClashEndpoint endpoint = clashInstanceService.resolveEndpoint(instance);
+            activeTasks.add(ClashFleetExecutor.taskKey(endpoint, AUTO_CHANGE_TASK + config.getGroupName()));
+            activeTasks.add(ClashFleetExecutor.taskKey(endpoint, STANDBY_TASK + config.getGroupName()));
+            activeTasks.add(ClashFleetExecutor.taskKey(endpoint,
+                    ClashConnectionService.CLOSE_CONNECTIONS_TASK + config.getGroupName()));
+            // 修改策略组名称或控制器后重建调度状态，旧名称的检查仍在运行时等它结束
+            GroupSchedule schedule = schedules.compute(config.getId(), (id, existing) ->
+                    existing == null || existing.isStale(config.getGroupName(), endpoint.getName())
+                            ? new GroupSchedule(config.getGroupName(), endpoint.getName(), now) : existing);
+            long scheduledAt = schedule.tryStart(now);
+            if (scheduledAt < 0) {
+                continue;
+            }
+
+            boolean submitted = clashFleetExecutor.submit(endpoint, AUTO_CHANGE_TASK + config.getGroupName(),
+                    () -> runGroup(endpoint, config, schedule, scheduledAt));
+            if (!submitted) {
+                schedule.release();
+            }
+        }
+
+        if (standbyEnabled) {
+            for (ProxyGroupConfig config : enabledConfigs) {
+                if (!activeIds.contains(config.getId())) {
+                    continue;
+                }
+                ProxyGroupRuntimeState state = proxyGroupRuntimeService.getState(config);
+                if (!state.tryStartStandbyRefresh(now, standbyRefreshInterval)) {
+                    continue;
+                }
+                ClashEndpoint endpoint = clashInstanceService.resolveEndpoint(config.getInstance());
+                boolean submitted = clashFleetExecutor.submit(endpoint, STANDBY_TASK + config.getGroupName(),
+                        () -> refreshStandby(endpoint, config, state));
+                if (!submitted) {
+                    state.finishStandbyRefresh(null, now);
+                }
+            }
+        }
+
+        // 移除已删除或已禁用的策略组
+        schedules.keySet().retainAll(activeIds);
+        proxyGroupRuntimeService.retainAll(activeIds);
+        clashFleetExecutor.retainTasks(List.of(AUTO_CHANGE_TASK, STANDBY_TASK,
+                ClashConnectionService.CLOSE_CONNECTIONS_TASK), activeTasks);
+    }
+
+    /**
+     * 获取各策略组的调度状态
+     *
+     * @return 调度状态列表
+     */
+    public List<Map<String, Object>> getGroupSchedules() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (GroupSchedule schedule : schedules.values()) {
+            result.add(schedule.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 执行一次策略组检查，完成后安排下一次检查
+     *
+     * @param endpoint Clash API端点
+     * @param config 策略组配置
+     * @param schedule 策略组调度状态
+     * @param scheduledAt 本次检查的计划时间
+     */
+    private void runGroup(ClashEndpoint endpoint, ProxyGroupConfig config, GroupSchedule schedule, long scheduledAt) {
+        long start = System.currentTimeMillis();
+        long lag = start - scheduledAt;
+        if (lag > getCheckInterval(config)) {
+            log.warn("策略组 {} 的检查延迟了 {}ms", config.getGroupName(), lag);
         }
+        CheckResult result = null;
+        try {
+            // Clash API 熔断期间直接跳过本次检查
+            if (!clashApiService.isAvailable(endpoint)) {
+                log.debug("控制器 {} 不可用，跳过策略组 {} 的检查", endpoint.getName(), config.getGroupName());
+                return;
+            }
+            // 同一控制器上的策略组在快照TTL内共享一次 /proxies 请求
+            ClashProxySnapshot snapshot = clashProxySnapshotService.getSnapshot(endpoint);
+            result = processProxyGroup(endpoint, config, snapshot);
+        } catch (Exception e) {
+            log.error("检查策略组 {} 时出错: {}", config.getGroupName(), e.getMessage());
+        } finally {
+            long end = System.currentTimeMillis();
+            long interval = nextInterval(config, schedule, result);
+            schedule.finish(end + interval, interval, result, lag, end - start);
+        }
+    }
+
+    /**
+     * 根据本次检查结果计算下一次检查间隔
+     * 当前节点延迟远低于最大延迟时逐步放宽到最大间隔；延迟上升、接近最大延迟、超时或刚切换过节点时收紧到最小间隔
+     *
+     * @param config 策略组配置
+     * @param schedule 策略组调度状态
+     * @param result 本次检查结果，无法判断时为null
+     * @return 下一次检查间隔（毫秒）
+     */
+    private long nextInterval(ProxyGroupConfig config, GroupSchedule schedule, CheckResult result) {
+        long baseInterval = getCheckInterval(config);
+        if (!adaptiveEnabled || result == null) {
+            return baseInterval;
+        }
+        long minInterval = Math.min(adaptiveMinInterval, baseInterval);
+        long maxInterval = Math.max(adaptiveMaxInterval, baseInterval);
+        long currentInterval = schedule.getInterval() > 0 ? schedule.getInterval() : baseInterval;
+
+        // 超时或刚切换过节点，尽快再次确认
+        if (result.delay == null || result.switched) {
+            return minInterval;
+        }
+
+        int maxDelay = config.getMaxDelay();
+        if (result.delay <= maxDelay * adaptiveRelaxRatio) {
+            // 延迟远低于最大延迟，逐步放宽
+            return Math.min(maxInterval, (long) (currentInterval * adaptiveBackoffFactor));
+        }
+        Integer lastDelay = schedule.getLastDelay();
+        boolean trendingUp = lastDelay != null && result.delay > lastDelay * adaptiveTrendRatio;
+        if (result.delay > maxDelay * adaptiveTightenRatio || trendingUp) {
+            // 延迟上升或接近最大延迟，间隔减半
+            return Math.max(minInterval, currentInterval / 2);
+        }
+        // 延迟处于中间区间，回到不超过基础间隔的节奏
+        return Math.min(Math.max(currentInterval, minInterval), baseInterval);
+    }
+
+    /**
+     * 获取策略组的检查间隔
+     *
+     * @param config 策略组配置
+     * @return 检查间隔（毫秒）
+     */
+    private long getCheckInterval(ProxyGroupConfig config) {
+        Integer interval = config.getCheckInterval();
+        return interval != null && interval > 0 ? interval : checkInterval;
     }
 
     /**
      * 处理单个策略组
+     * 测试延迟后交给 AutoChangePolicy 做出决定，本方法只负责测试延迟和执行切换
      *
+     * @param endpoint Clash API端点
      * @param config 策略组配置
+     * @param snapshot 本次检查的代理快照
+     * @return 检查结果，无法判断时为null
      */
-    private void processProxyGroup(ProxyGroupConfig config) {
+    private CheckResult processProxyGroup(ClashEndpoint endpoint, ProxyGroupConfig config, ClashProxySnapshot snapshot) {
         String groupName = config.getGroupName();
         String preferredProxy = config.getPreferredProxy();
         Integer timeout = config.getTimeout();
         Integer maxDelay = config.getMaxDelay();
         Integer maxTimeoutCount = config.getMaxTimeoutCount();
         String testUrlToUse = config.getTestUrl() != null ? config.getTestUrl() : this.testUrl;
+        // 超时次数等运行时状态只在内存中修改，由 ProxyGroupRuntimeService 批量写回
+        ProxyGroupRuntimeState state = proxyGroupRuntimeService.getState(config);
 
         try {
-            // 获取策略组信息
-            Map<String, Object> groupInfo = clashApiService.getGroupInfo(groupName);
-            if (groupInfo.isEmpty()) {
-                return;
-            }
-
             // 获取当前选中的代理
-            String currentProxy = (String) groupInfo.get("now");
+            String currentProxy = snapshot.getCurrentProxy(groupName);
             if (currentProxy == null) {
-                return;
+                return null;
             }
 
-            // 一次性测试所有节点的延迟
-            Map<String, Integer> delayResults = clashApiService.testGroupDelay(groupName, testUrlToUse, timeout);
+            List<String> members = snapshot.getGroupMembers(groupName);
+            // 增量探测只需要当前节点和优先节点的延迟，节点数不多于两个时与全量测试等价
+            boolean incremental = incrementalProbe && members.size() > 2;
+            Set<String> tested = new HashSet<>();
+            Map<String, Integer> delayResults = incremental
+                    ? testKeyProxies(endpoint, members, currentProxy, preferredProxy, testUrlToUse, timeout, tested)
+                    : testAllProxies(endpoint, groupName, members, currentProxy, preferredProxy, testUrlToUse, timeout,
+                            maxDelay, tested);
 
-            if (delayResults.isEmpty()) {
-                return;
+            // 全量测试结果为空通常是请求失败；增量探测的两个节点都失败则按超时计数
+            if (delayResults.isEmpty() && !incremental) {
+                state.recordCheck(currentProxy, null, System.currentTimeMillis());
+                return CheckResult.failing();
             }
 
-            // 检查优先节点是否可用
+            // node 模式在优先节点可用时提前返回，可能还没有当前节点的结果，而决策需要知道当前节点是否正常
             Integer preferredDelay = delayResults.get(preferredProxy);
-            if (preferredDelay != null && preferredDelay <= maxDelay) {
-                // 优先节点可用且延迟在可接受范围内，直接切换，忽略超时次数
-                if (!preferredProxy.equals(currentProxy)) {
-                    log.info("优先节点可用，直接切换: {} -> {}, 延迟: {}ms", currentProxy, preferredProxy, preferredDelay);
-                    clashApiService.selectProxy(groupName, preferredProxy);
+            if (preferredDelay != null && preferredDelay <= maxDelay && !preferredProxy.equals(currentProxy)
+                    && !tested.contains(currentProxy)) {
+                Integer currentDelay = clashDelayTestService.testProxyDelay(endpoint, currentProxy, testUrlToUse,
+                        timeout, delayMaxAge);
+                tested.add(currentProxy);
+                if (currentDelay != null) {
+                    // 测试结果可能来自缓存，复制后再补充
+                    delayResults = new HashMap<>(delayResults);
+                    delayResults.put(currentProxy, currentDelay);
                 }
-                // 重置超时计数
-                if (config.getCurrentTimeoutCount() > 0) {
-                    config.setCurrentTimeoutCount(0);
-                    proxyGroupConfigService.saveConfig(config);
+            }
+
+            Map<String, Integer> standby = standbyEnabled
+                    ? state.getStandby(System.currentTimeMillis() - standbyMaxAge) : Map.of();
+            AutoChangePolicy.Observation observation = new AutoChangePolicy.Observation(currentProxy, preferredProxy,
+                    delayResults, tested, !incremental, maxDelay, maxTimeoutCount, members,
+                    scoreFunction(endpoint, delayResults, standby), standby);
+            AutoChangePolicy.Decision decision = autoChangePolicy.evaluate(observation, state, System.currentTimeMillis());
+
+            if (decision.getAction() == AutoChangePolicy.Action.SCAN) {
+                log.info("节点 {} 连续超时 {} 次，开始寻找可用节点", currentProxy, state.getTimeoutCount());
+                // 增量探测只有两个节点的结果，升级为全量测试
+                Set<String> fullTested = new HashSet<>();
+                Map<String, Integer> fullResults = testAllProxies(endpoint, groupName, members, currentProxy,
+                        preferredProxy, testUrlToUse, timeout, maxDelay, fullTested);
+                state.recordFullScan();
+                if (standbyEnabled) {
+                    updateStandby(endpoint, state, fullResults, maxDelay);
                 }
-                return;
+                observation = new AutoChangePolicy.Observation(currentProxy, preferredProxy, fullResults, fullTested,
+                        true, maxDelay, maxTimeoutCount, members, scoreFunction(endpoint, fullResults, Map.of()),
+                        Map.of());
+                decision = autoChangePolicy.selectFailover(observation, state);
             }
 
-            // 检查当前节点是否可用
-            Integer currentDelay = delayResults.get(currentProxy);
-            boolean isCurrentProxyAvailable = currentDelay != null && currentDelay <= maxDelay;
+            return apply(endpoint, groupName, currentProxy, maxTimeoutCount, state, decision);
+        } catch (Exception e) {
+            log.error("处理策略组 {} 时出错: {}", groupName, e.getMessage());
+            return null;
+        }
+    }
 
-            if (isCurrentProxyAvailable) {
-                // 当前节点可用，重置超时计数并保持不变
-                if (config.getCurrentTimeoutCount() > 0) {
-                    config.setCurrentTimeoutCount(0);
-                    proxyGroupConfigService.saveConfig(config);
+    /**
+     * 执行决定
+     *
+     * @param endpoint Clash API端点
+     * @param groupName 策略组名称
+     * @param currentProxy 当前节点
+     * @param maxTimeoutCount 最大超时次数
+     * @param state 策略组运行时状态
+     * @param decision 决定
+     * @return 检查结果
+     */
+    private CheckResult apply(ClashEndpoint endpoint, String groupName, String currentProxy, int maxTimeoutCount,
+                              ProxyGroupRuntimeState state, AutoChangePolicy.Decision decision) {
+        long now = System.currentTimeMillis();
+        switch (decision.getAction()) {
+            case KEEP:
+                state.recordHealthy(currentProxy, decision.getDelay(), now);
+                return CheckResult.healthy(decision.getDelay());
+            case WAIT:
+                log.info("节点 {} 超时，当前超时计数: {}/{}", currentProxy, decision.getTimeoutCount(), maxTimeoutCount);
+                state.recordCheck(currentProxy, null, now);
+                return CheckResult.failing();
+            case SWITCH:
+            case FAILOVER:
+                boolean failover = decision.isFailover();
+                String target = decision.getTarget();
+                // 当前节点不可用时的故障切换不受切换频率限制，超出时只记录警告
+                if (failover && autoChangePolicy.isOverBudget(state, now)) {
+                    log.warn("策略组 {} 最近一小时切换次数已达上限，当前节点不可用仍执行故障切换", groupName);
                 }
-                // 保持当前节点稳定，不寻找更低延迟的节点
-                return;
-            } else {
-                // 当前节点不可用，增加超时计数
-                config.setCurrentTimeoutCount(config.getCurrentTimeoutCount() + 1);
-                proxyGroupConfigService.saveConfig(config);
-                
-                // 检查是否超过最大超时次数
-                if (config.getCurrentTimeoutCount() < maxTimeoutCount) {
-                    log.info("节点 {} 超时，当前超时计数: {}/{}", currentProxy, config.getCurrentTimeoutCount(), maxTimeoutCount);
-                    return; // 未达到最大超时次数，不切换
+                if (decision.getAction() == AutoChangePolicy.Action.FAILOVER) {
+                    log.info("切换{}: {} -> {}, 延迟: {}ms", decision.isFromStandby() ? "备用节点" : "代理",
+                            currentProxy, target, decision.getDelay());
+                } else {
+                    log.info("{}: {} -> {}, 延迟: {}ms", failover ? "当前节点不可用，切换到优先节点" : "优先节点可用，直接切换",
+                            currentProxy, target, decision.getDelay());
+                }
+                clashApiService.selectProxy(endpoint, groupName, target);
+                clashProxySnapshotService.invalidate(endpoint);
+                if (decision.isFromStandby()) {
+                    // 备用节点已被使用，尽快在后台重新排名
+                    state.expireStandby();
                 }
-                
-                log.info("节点 {} 连续超时 {} 次，开始寻找可用节点", currentProxy, config.getCurrentTimeoutCount());
+                state.recordSwitch(target, decision.getDelay(), failover, System.currentTimeMillis());
+                clashConnectionService.afterSwitch(endpoint, groupName, currentProxy, state);
+                return CheckResult.switched(decision.getDelay());
+            default:
+                state.recordCheck(currentProxy, null, now);
+                return CheckResult.failing();
+        }
+    }
+
+    /**
+     * 节点得分函数
+     * 关闭按统计得分选择时直接使用本次延迟；本次没有测到的备用节点使用排名时的延迟
+     *
+     * @param endpoint Clash API端点
+     * @param delays 本次测试的延迟
+     * @param standby 备用节点和排名时的延迟
+     * @return 得分函数
+     */
+    private ToDoubleFunction<String> scoreFunction(ClashEndpoint endpoint, Map<String, Integer> delays,
+                                                   Map<String, Integer> standby) {
+        return proxy -> {
+            Integer delay = delays.get(proxy);
+            if (delay == null) {
+                delay = standby.getOrDefault(proxy, Integer.MAX_VALUE);
+            }
+            return scoreSelection ? proxyLatencyStatsService.score(endpoint, proxy, delay) : delay;
+        };
+    }
+
+    /**
+     * 在后台测试整个策略组并重新排名备用节点
+     *
+     * @param endpoint Clash API端点
+     * @param config 策略组配置
+     * @param state 策略组运行时状态
+     */
+    private void refreshStandby(ClashEndpoint endpoint, ProxyGroupConfig config, ProxyGroupRuntimeState state) {
+        Map<String, Integer> ranked = null;
+        try {
+            if (!clashApiService.isAvailable(endpoint)) {
+                return;
+            }
+            String groupName = config.getGroupName();
+            String url = config.getTestUrl() != null ? config.getTestUrl() : this.testUrl;
+            List<String> members = clashProxySnapshotService.getSnapshot(endpoint).getGroupMembers(groupName);
+            // standbyMaxAge 是排名结果的有效期，不能作为测试缓存的时长，否则排名会复用早于上次刷新的延迟
+            long maxAge = Math.min(delayMaxAge, standbyRefreshInterval);
+            Map<String, Integer> delays = "node".equals(probeMode) && !members.isEmpty()
+                    ? proxyDelayProbeService.probe(endpoint, members, url, config.getTimeout(), maxAge, null).join()
+                    : clashDelayTestService.testGroupDelay(endpoint, groupName, url, config.getTimeout(), maxAge);
+            ranked = rankStandby(endpoint, delays, config.getMaxDelay());
+        } catch (Exception e) {
+            log.warn("刷新策略组 {} 的备用节点失败: {}", config.getGroupName(), e.getMessage());
+        } finally {
+            state.finishStandbyRefresh(ranked, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 用一次全量测试的结果更新备用节点
+     */
+    private void updateStandby(ClashEndpoint endpoint, ProxyGroupRuntimeState state, Map<String, Integer> delays,
+                               int maxDelay) {
+        state.finishStandbyRefresh(rankStandby(endpoint, delays, maxDelay), System.currentTimeMillis());
+    }
+
+    /**
+     * 按得分对延迟不超过最大延迟的节点排名
+     *
+     * @param endpoint Clash API端点
+     * @param delays 节点和延迟的映射
+     * @param maxDelay 最大可接受延迟
+     * @return 排名靠前的节点和延迟，按得分从低到高排列
+     */
+    private Map<String, Integer> rankStandby(ClashEndpoint endpoint, Map<String, Integer> delays, int maxDelay) {
+        Map<String, Integer> ranked = new LinkedHashMap<>();
+        delays.entrySet().stream()
+                .filter(entry -> entry.getValue() <= maxDelay)
+                .sorted(Comparator.comparingDouble(
+                        entry -> proxyLatencyStatsService.score(endpoint, entry.getKey(), entry.getValue())))
+                .limit(standbySize)
+                .forEach(entry -> ranked.put(entry.getKey(), entry.getValue()));
+        return ranked;
+    }
+
+    /**
+     * 并发测试当前节点和优先节点的延迟
+     *
+     * @param endpoint Clash API端点
+     * @param members 策略组中的节点
+     * @param currentProxy 当前节点
+     * @param preferredProxy 优先节点
+     * @param url 测试URL
+     * @param timeout 超时时间
+     * @param tested 收集测试过的节点，包含测试失败的节点
+     * @return 测试成功的节点和延迟的映射
+     */
+    private Map<String, Integer> testKeyProxies(ClashEndpoint endpoint, List<String> members, String currentProxy,
+                                                String preferredProxy, String url, Integer timeout,
+                                                Set<String> tested) {
+        List<String> proxies = new ArrayList<>(2);
+        proxies.add(currentProxy);
+        if (preferredProxy != null && !preferredProxy.equals(currentProxy) && members.contains(preferredProxy)) {
+            proxies.add(preferredProxy);
+        }
+        Map<String, Integer> results = proxyDelayProbeService.probe(endpoint, proxies, url, timeout, delayMaxAge, null)
+                .join();
+        tested.addAll(proxies);
+        return results;
+    }
+
+    /**
+     * 测试策略组中所有节点的延迟
+     * node 模式下优先节点或当前节点的结果足以做出决定时立即返回，其余节点的探测在后台继续
+     *
+     * @param endpoint Clash API端点
+     * @param groupName 策略组名称
+     * @param members 策略组中的节点
+     * @param currentProxy 当前节点
+     * @param preferredProxy 优先节点
+     * @param url 测试URL
+     * @param timeout 超时时间
+     * @param maxDelay 最大可接受延迟
+     * @param tested 收集已有结果的节点，包含测试失败的节点
+     * @return 代理名称和延迟的映射
+     */
+    private Map<String, Integer> testAllProxies(ClashEndpoint endpoint, String groupName, List<String> members, String currentProxy,
+                                                String preferredProxy, String url, Integer timeout, Integer maxDelay,
+                                                Set<String> tested) {
+        if (!"node".equals(probeMode) || members.isEmpty()) {
+            Map<String, Integer> results = clashDelayTestService.testGroupDelay(endpoint, groupName, url, timeout,
+                    delayMaxAge);
+            // 策略组测试只返回成功的节点，结果为空时无法区分请求失败和全部超时
+            if (!results.isEmpty()) {
+                tested.addAll(members);
             }
+            return results;
+        }
 
-            // 找出延迟最低且小于最大延迟的代理
-            Optional<Map.Entry<String, Integer>> bestProxy = delayResults.entrySet().stream()
-                    .filter(entry -> entry.getValue() <= maxDelay)
-                    .min(Map.Entry.comparingByValue());
+        Map<String, Integer> results = new ConcurrentHashMap<>();
+        Set<String> reported = ConcurrentHashMap.newKeySet();
+        boolean preferredIsMember = members.contains(preferredProxy);
+        CompletableFuture<Void> decided = new CompletableFuture<>();
 
-            if (bestProxy.isPresent()) {
-                String bestProxyName = bestProxy.get().getKey();
-                Integer bestDelay = bestProxy.get().getValue();
+        CompletableFuture<Map<String, Integer>> all = proxyDelayProbeService.probe(endpoint, members, url, timeout,
+                delayMaxAge, (proxy, delay) -> {
+            if (delay != ProxyDelayProbeService.FAILED) {
+                results.put(proxy, delay);
+            }
+            reported.add(proxy);
 
-                // 切换到最佳代理
-                log.info("切换代理: {} -> {}, 延迟: {}ms", currentProxy, bestProxyName, bestDelay);
-                clashApiService.selectProxy(groupName, bestProxyName);
-                
-                // 切换后重置超时计数
-                config.setCurrentTimeoutCount(0);
-                proxyGroupConfigService.saveConfig(config);
+            Integer preferredDelay = results.get(preferredProxy);
+            Integer currentDelay = results.get(currentProxy);
+            boolean preferredAvailable = preferredDelay != null && preferredDelay <= maxDelay;
+            boolean preferredKnown = !preferredIsMember || reported.contains(preferredProxy);
+            boolean currentAvailable = currentDelay != null && currentDelay <= maxDelay;
+            if (preferredAvailable || (preferredKnown && currentAvailable)) {
+                decided.complete(null);
             }
-        } catch (Exception e) {
-            log.error("处理策略组 {} 时出错: {}", groupName, e.getMessage());
+        });
+
+        CompletableFuture.anyOf(decided, all).join();
+        // 先记录已报告的节点再复制结果，复制中途到达的成功结果只会让 tested 偏少
+        tested.addAll(reported);
+        return new HashMap<>(results);
+    }
+
+    /**
+     * 单个策略组的调度状态
+     */
+    private static final class GroupSchedule {
+
+        private final String groupName;
+        private final String controller;
+        private long nextRunAt;
+        private long interval;
+        private Integer lastDelay;
+        private boolean running;
+        private long runs;
+        private long lastLag;
+        private long maxLag;
+        private long lastDuration;
+
+        private GroupSchedule(String groupName, String controller, long nextRunAt) {
+            this.groupName = groupName;
+            this.controller = controller;
+            this.nextRunAt = nextRunAt;
+        }
+
+        /**
+         * 到达计划时间且未在运行时标记为运行中
+         *
+         * @param now 当前时间
+         * @return 本次检查的计划时间，不需要运行时为-1
+         */
+        private synchronized long tryStart(long now) {
+            if (running || now < nextRunAt) {
+                return -1;
+            }
+            running = true;
+            return nextRunAt;
+        }
+
+        private synchronized void finish(long nextRunAt, long interval, CheckResult result, long lag, long duration) {
+            this.running = false;
+            this.nextRunAt = nextRunAt;
+            this.interval = interval;
+            if (result != null) {
+                this.lastDelay = result.delay;
+            }
+            this.runs++;
+            this.lastLag = lag;
+            this.maxLag = Math.max(maxLag, lag);
+            this.lastDuration = duration;
+        }
+
+        private synchronized long getInterval() {
+            return interval;
+        }
+
+        private synchronized Integer getLastDelay() {
+            return lastDelay;
+        }
+
+        private synchronized void release() {
+            running = false;
+        }
+
+        /**
+         * 策略组名称或控制器已修改且没有正在运行的检查
+         */
+        private synchronized boolean isStale(String groupName, String controller) {
+            return !running
+                    && !(Objects.equals(this.groupName, groupName) && Objects.equals(this.controller, controller));
+        }
+
+        private synchronized Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("groupName", groupName);
+            result.put("controller", controller);
+            result.put("running", running);
+            result.put("interval", interval);
+            result.put("lastDelay", lastDelay);
+            result.put("runs", runs);
+            result.put("lastLag", lastLag);
+            result.put("maxLag", maxLag);
+            result.put("lastDuration", lastDuration);
+            result.put("nextRunIn", Math.max(0, nextRunAt - System.currentTimeMillis()));
+            return result;
+        }
+    }
+
+    /**
+     * 单次策略组检查的结果
+     */
+    private static final class CheckResult {
+
+        /**
+         * 检查后当前节点的延迟，超时或没有可用节点时为null
+         */
+        private final Integer delay;
+
+        /**
+         * 本次检查是否切换了节点
+         */
+        private final boolean switched;
+
+        private CheckResult(Integer delay, boolean switched) {
+            this.delay = delay;
+            this.switched = switched;
+        }
+
+        private static CheckResult healthy(Integer delay) {
+            return new CheckResult(delay, false);
+        }
+
+        private static CheckResult switched(Integer delay) {
+            return new CheckResult(delay, true);
+        }
+
+        private static CheckResult failing() {
+            return new CheckResult(null, false);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package com.github.clashautochange.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Clash API 熔断器
+ * 连续连接失败达到阈值后打开，打开期间直接拒绝请求；
+ * 退避时间到达后允许一次半开探测，探测失败则退避时间加倍
+ */
+public class ClashCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long backoff;
+    private long nextAttemptAt;
+    private long openCount;
+
+    public ClashCircuitBreaker(String name, int failureThreshold, long initialBackoff, long maxBackoff) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * 是否允许普通请求通过
+     *
+     * @return 熔断器关闭时返回true
+     */
+    public synchronized boolean allowRequest() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 尝试进入半开状态进行探测，同一时间只有一个调用者能获得探测机会
+     *
+     * @return 是否获得探测机会
+     */
+    public synchronized boolean tryAcquireProbe() {
+        if (state == State.OPEN && System.currentTimeMillis() >= nextAttemptAt) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次成功调用
+     */
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        backoff = 0;
+    }
+
+    /**
+     * 记录一次连接失败
+     *
+     * @return 熔断器是否因此次失败而打开
+     */
+    public synchronized boolean recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            backoff = Math.min(backoff * 2, maxBackoff);
+            open();
+            return true;
+        }
+        if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            backoff = initialBackoff;
+            open();
+            openCount++;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取熔断器状态快照
+     *
+     * @return 状态名称和值的映射
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("state", state.name());
+        result.put("consecutiveFailures", consecutiveFailures);
+        result.put("backoff", backoff);
+        result.put("nextAttemptIn", state == State.CLOSED ? 0 : Math.max(0, nextAttemptAt - System.currentTimeMillis()));
+        result.put("openCount", openCount);
+        return result;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        nextAttemptAt = System.currentTimeMillis() + backoff;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ClashEndpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clash API 熔断器注册表
+ * 每个Clash API基础URL对应一个熔断器
+ */
+@Component
+public class ClashCircuitBreakerRegistry {
+
+    @Value("${clash.circuit.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${clash.circuit.initial-backoff:5000}")
+    private long initialBackoff;
+
+    @Value("${clash.circuit.max-backoff:300000}")
+    private long maxBackoff;
+
+    private final Map<String, ClashCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 获取端点对应的熔断器
+     *
+     * @param endpoint Clash API端点
+     * @return 熔断器
+     */
+    public ClashCircuitBreaker get(ClashEndpoint endpoint) {
+        return breakers.computeIfAbsent(endpoint.getBaseUrl(),
+                baseUrl -> new ClashCircuitBreaker(baseUrl, failureThreshold, initialBackoff, maxBackoff));
+    }
+
+    /**
+     * 移除已删除或已修改地址的控制器的熔断器
+     *
+     * @param activeBaseUrls 现有控制器的基础URL
+     */
+    public void retain(Set<String> activeBaseUrls) {
+        breakers.keySet().retainAll(activeBaseUrls);
+    }
+
+    /**
+     * 获取所有熔断器的状态
+     *
+     * @return 熔断器状态列表
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ClashCircuitBreaker breaker : breakers.values()) {
+            result.add(breaker.snapshot());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.clashautochange.service;
+
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * 熔断器打开时抛出的异常
+ * 继承 ResourceAccessException，调用方按无法连接到Clash API处理
+ */
+public class ClashCircuitOpenException extends ResourceAccessException {
+
+    public ClashCircuitOpenException(String baseUrl) {
+        super("Clash API 熔断中，暂停请求: " + baseUrl);
+    }
+}
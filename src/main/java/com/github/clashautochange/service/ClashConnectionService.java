@@ -0,0 +1,86 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ClashConnection;
+import com.github.clashautochange.model.ClashEndpoint;
+import com.github.clashautochange.model.ProxyGroupRuntimeState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Clash 连接服务
+ * 切换节点后关闭仍经由旧节点的连接，让客户端立即重连到新节点，
+ * 而不是等到应用自己的读取超时
+ */
+@Service
+@Slf4j
+public class ClashConnectionService {
+
+    /**
+     * 在 ClashFleetExecutor 中提交的任务名称前缀，后接策略组名称
+     */
+    static final String CLOSE_CONNECTIONS_TASK = "close-connections:";
+
+    private final ClashApiService clashApiService;
+    private final ClashFleetExecutor clashFleetExecutor;
+
+    @Value("${clash.connections.close-on-switch:false}")
+    private boolean closeOnSwitch;
+
+    @Autowired
+    public ClashConnectionService(ClashApiService clashApiService, ClashFleetExecutor clashFleetExecutor) {
+        this.clashApiService = clashApiService;
+        this.clashFleetExecutor = clashFleetExecutor;
+    }
+
+    /**
+     * 切换节点后在后台关闭经由旧节点的连接，未开启时不做任何事
+     *
+     * @param endpoint Clash API端点
+     * @param groupName 策略组名称
+     * @param oldProxy 切换前的节点
+     * @param state 策略组运行时状态
+     */
+    public void afterSwitch(ClashEndpoint endpoint, String groupName, String oldProxy, ProxyGroupRuntimeState state) {
+        if (!closeOnSwitch) {
+            return;
+        }
+        clashFleetExecutor.submit(endpoint, CLOSE_CONNECTIONS_TASK + groupName, () -> {
+            long start = System.currentTimeMillis();
+            int closed = closeStaleConnections(endpoint, groupName, oldProxy);
+            state.recordClosedConnections(closed, System.currentTimeMillis() - start);
+        });
+    }
+
+    /**
+     * 关闭经由策略组中指定节点的连接
+     *
+     * @param endpoint Clash API端点
+     * @param groupName 策略组名称
+     * @param proxyName 节点名称
+     * @return 关闭的连接数
+     */
+    public int closeStaleConnections(ClashEndpoint endpoint, String groupName, String proxyName) {
+        List<ClashConnection> connections = clashApiService.getConnections(endpoint);
+        int closed = 0;
+        for (ClashConnection connection : connections) {
+            if (!connection.isRoutedThrough(groupName, proxyName)) {
+                continue;
+            }
+            try {
+                clashApiService.closeConnection(endpoint, connection.getId());
+                closed++;
+            } catch (Exception e) {
+                // 连接可能已经自行关闭
+                log.debug("关闭连接 {} 失败: {}", connection.getId(), e.getMessage());
+            }
+        }
+        if (closed > 0) {
+            log.info("已关闭策略组 {} 中经由节点 {} 的 {} 个连接", groupName, proxyName, closed);
+        }
+        return closed;
+    }
+}
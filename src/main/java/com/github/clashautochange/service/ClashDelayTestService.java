@@ -0,0 +1,272 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.config.ClashApiConfig;
+import com.github.clashautochange.model.ClashDelayResponse;
+import com.github.clashautochange.model.ClashEndpoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Clash 延迟测试服务
+ * 合并相同的并发延迟测试：同一端点上策略组（或节点）、测试URL和超时时间都相同的测试正在进行时，
+ * 后来的调用者等待并共享这一次测试的结果，不再向Clash重复发起请求。
+ * 测试结果按策略组、节点和测试URL缓存，调用者通过 maxAge 指定自己能接受的结果新鲜度
+ */
+@Service
+@Slf4j
+public class ClashDelayTestService {
+
+    private final ClashApiService clashApiService;
+    private final ClashApiConfig clashApiConfig;
+    private final ProxyLatencyStatsService proxyLatencyStatsService;
+
+    private final Map<String, CompletableFuture<Map<String, Integer>>> groupTests = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Integer>> proxyTests = new ConcurrentHashMap<>();
+
+    private final Map<String, CachedDelays> groupResults = new ConcurrentHashMap<>();
+    private final Map<String, CachedDelays> proxyResults = new ConcurrentHashMap<>();
+
+    @Value("${clash.delay-cache.max-age:60000}")
+    private long maxCacheAge;
+
+    private final AtomicLong totalTests = new AtomicLong();
+    private final AtomicLong coalescedTests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    @Autowired
+    public ClashDelayTestService(ClashApiService clashApiService, ClashApiConfig clashApiConfig,
+                                 ProxyLatencyStatsService proxyLatencyStatsService) {
+        this.clashApiService = clashApiService;
+        this.clashApiConfig = clashApiConfig;
+        this.proxyLatencyStatsService = proxyLatencyStatsService;
+    }
+
+    /**
+     * 测试策略组中所有代理的延迟（默认端点）
+     */
+    public Map<String, Integer> testGroupDelay(String groupName, String url, Integer timeout, long maxAge) {
+        return testGroupDelay(clashApiConfig.getEndpoint(), groupName, url, timeout, maxAge);
+    }
+
+    /**
+     * 测试策略组中所有代理的延迟，合并相同的并发测试
+     *
+     * @param endpoint Clash API端点
+     * @param groupName 策略组名称
+     * @param url 测试URL
+     * @param timeout 超时时间
+     * @param maxAge 可接受的缓存结果最大时长（毫秒），为0时总是重新测试
+     * @return 代理名称和延迟的映射
+     */
+    public Map<String, Integer> testGroupDelay(ClashEndpoint endpoint, String groupName, String url, Integer timeout,
+                                               long maxAge) {
+        String cacheKey = endpoint.getBaseUrl() + "|" + groupName + "|" + url;
+        CachedDelays cached = lookup(groupResults, cacheKey, timeout, maxAge);
+        if (cached != null) {
+            return cached.delaysWithin(timeout);
+        }
+
+        String key = cacheKey + "|" + timeout;
+        Map<String, Integer> result = singleFlight(groupTests, key, () -> {
+            Map<String, Integer> delays = clashApiService.testGroupDelay(endpoint, groupName, url, timeout);
+            if (delays.isEmpty()) {
+                // 空结果通常是请求失败，不缓存
+                return delays;
+            }
+            proxyLatencyStatsService.recordGroup(endpoint, groupName, delays);
+            long testedAt = System.currentTimeMillis();
+            groupResults.put(cacheKey, new CachedDelays(delays, timeout, testedAt));
+            // 策略组测试只返回成功的节点，成功结果同时供逐节点测试复用
+            delays.forEach((proxy, delay) -> proxyResults.put(endpoint.getBaseUrl() + "|" + proxy + "|" + url,
+                    new CachedDelays(Map.of(proxy, delay), timeout, testedAt)));
+            return delays;
+        });
+        // 每个调用者拿到独立的副本，避免互相修改
+        return new HashMap<>(result);
+    }
+
+    /**
+     * 测试单个代理的延迟，合并相同的并发测试
+     *
+     * @param endpoint Clash API端点
+     * @param proxyName 代理名称
+     * @param url 测试URL
+     * @param timeout 超时时间
+     * @param maxAge 可接受的缓存结果最大时长（毫秒），为0时总是重新测试
+     * @return 延迟，测试失败时为null
+     */
+    public Integer testProxyDelay(ClashEndpoint endpoint, String proxyName, String url, Integer timeout, long maxAge) {
+        String cacheKey = endpoint.getBaseUrl() + "|" + proxyName + "|" + url;
+        CachedDelays cached = lookup(proxyResults, cacheKey, timeout, maxAge);
+        if (cached != null) {
+            return cached.delaysWithin(timeout).get(proxyName);
+        }
+
+        String key = cacheKey + "|" + timeout;
+        return singleFlight(proxyTests, key, () -> {
+            Integer delay = null;
+            try {
+                ClashDelayResponse response = clashApiService.testProxyDelay(endpoint, proxyName, url, timeout);
+                if (response != null && response.getDelay() != null && response.getDelay() > 0) {
+                    delay = response.getDelay();
+                }
+            } catch (HttpStatusCodeException e) {
+                // Clash 对超时和不可达的节点返回错误状态码，按测试失败缓存
+                log.debug("节点 {} 延迟测试失败: {}", proxyName, e.getMessage());
+            }
+            proxyLatencyStatsService.record(endpoint, proxyName, delay);
+            Map<String, Integer> delays = new HashMap<>();
+            if (delay != null) {
+                delays.put(proxyName, delay);
+            }
+            proxyResults.put(cacheKey, new CachedDelays(delays, timeout, System.currentTimeMillis()));
+            return delay;
+        });
+    }
+
+    /**
+     * 获取合并和缓存统计
+     *
+     * @return 统计名称和值的映射
+     */
+    public Map<String, Object> getStats() {
+        long total = totalTests.get();
+        long coalesced = coalescedTests.get();
+
+        long hits = cacheHits.get();
+        long lookups = hits + cacheMisses.get();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalTests", total);
+        result.put("coalescedTests", coalesced);
+        result.put("inFlight", groupTests.size() + proxyTests.size());
+        result.put("coalesceRate", total > 0 ? Math.round((double) coalesced / total * 100) : 0);
+        result.put("cacheHits", hits);
+        result.put("cacheMisses", lookups - hits);
+        result.put("cacheHitRate", lookups > 0 ? Math.round((double) hits / lookups * 100) : 0);
+        result.put("cachedGroups", groupResults.size());
+        result.put("cachedProxies", proxyResults.size());
+        return result;
+    }
+
+    /**
+     * 定期清理过期的缓存结果
+     */
+    @Scheduled(fixedDelayString = "${clash.delay-cache.max-age:60000}")
+    public void evictExpired() {
+        long expireBefore = System.currentTimeMillis() - maxCacheAge;
+        groupResults.values().removeIf(cached -> cached.testedAt < expireBefore);
+        proxyResults.values().removeIf(cached -> cached.testedAt < expireBefore);
+    }
+
+    /**
+     * 查找满足新鲜度和超时要求的缓存结果
+     * 以更短超时测得的结果可能漏掉较慢但可用的节点，因此不能用于更长超时的请求
+     *
+     * @param cache 缓存
+     * @param key 缓存key
+     * @param timeout 本次请求的超时时间
+     * @param maxAge 可接受的最大时长
+     * @return 缓存结果，不满足要求时为null
+     */
+    private CachedDelays lookup(Map<String, CachedDelays> cache, String key, Integer timeout, long maxAge) {
+        if (maxAge <= 0) {
+            return null;
+        }
+        CachedDelays cached = cache.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.testedAt <= maxAge
+                && (timeout == null || (cached.timeout != null && cached.timeout >= timeout))) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        cacheMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 相同key的请求正在进行时等待其结果，否则由当前线程发起请求
+     *
+     * @param inFlight 进行中的请求
+     * @param key 请求key
+     * @param request 请求
+     * @return 请求结果
+     */
+    private <T> T singleFlight(Map<String, CompletableFuture<T>> inFlight, String key, Supplier<T> request) {
+        totalTests.incrementAndGet();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedTests.incrementAndGet();
+            log.debug("合并进行中的延迟测试: {}", key);
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            T result = request.get();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // 包括 Error，否则等待同一请求的线程会一直阻塞
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 一次测试得到的延迟结果
+     */
+    private static final class CachedDelays {
+
+        private final Map<String, Integer> delays;
+        private final Integer timeout;
+        private final long testedAt;
+
+        private CachedDelays(Map<String, Integer> delays, Integer timeout, long testedAt) {
+            this.delays = delays;
+            this.timeout = timeout;
+            this.testedAt = testedAt;
+        }
+
+        /**
+         * 获取在指定超时内完成的结果
+         *
+         * @param timeout 超时时间
+         * @return 代理名称和延迟的映射
+         */
+        private Map<String, Integer> delaysWithin(Integer timeout) {
+            Map<String, Integer> result = new HashMap<>();
+            delays.forEach((proxy, delay) -> {
+                if (timeout == null || delay <= timeout) {
+                    result.put(proxy, delay);
+                }
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ClashEndpoint;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clash 控制器分片执行器
+ * 每个控制器使用独立的任务线程池和节点探测线程池，一个控制器响应缓慢或不可用时不会拖慢其他控制器
+ */
+@Component
+@Slf4j
+public class ClashFleetExecutor {
+
+    @Value("${clash.fleet.threads-per-controller:8}")
+    private int threadsPerController;
+
+    /**
+     * 每个控制器同时进行的节点延迟探测数
+     */
+    @Value("${clash.probe.max-concurrency:16}")
+    private int probeConcurrency;
+
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> probeExecutors = new ConcurrentHashMap<>();
+    private final Map<String, TaskStats> taskStats = new ConcurrentHashMap<>();
+
+    /**
+     * 在控制器专属的线程池中执行任务，同一控制器的同名任务上次尚未完成时跳过本次执行
+     *
+     * @param endpoint Clash API端点
+     * @param taskName 任务名称
+     * @param task 任务
+     * @return 是否已提交
+     */
+    public boolean submit(ClashEndpoint endpoint, String taskName, Runnable task) {
+        String key = taskKey(endpoint, taskName);
+        TaskStats stats = taskStats.computeIfAbsent(key, k -> new TaskStats(endpoint.getName(), taskName));
+        if (!stats.tryStart()) {
+            log.warn("控制器 {} 的任务 {} 上次尚未完成，跳过本次执行", endpoint.getName(), taskName);
+            return false;
+        }
+        try {
+            executorFor(endpoint).execute(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("控制器 {} 的任务 {} 执行出错: {}", endpoint.getName(), taskName, e.getMessage());
+                } finally {
+                    stats.finish(System.currentTimeMillis() - start);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            stats.finish(0);
+            log.warn("控制器 {} 的任务 {} 提交失败: {}", endpoint.getName(), taskName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 任务统计的key
+     *
+     * @param endpoint Clash API端点
+     * @param taskName 任务名称
+     * @return 任务key
+     */
+    public static String taskKey(ClashEndpoint endpoint, String taskName) {
+        return taskName + "@" + endpoint.getBaseUrl();
+    }
+
+    /**
+     * 移除名称以指定前缀开头、但已不再调度的任务的统计，例如已删除的策略组；正在执行的任务留到下次再移除
+     *
+     * @param taskPrefixes 任务名称前缀
+     * @param activeKeys 仍在调度的任务，见 {@link #taskKey}
+     */
+    public void retainTasks(Collection<String> taskPrefixes, Set<String> activeKeys) {
+        taskStats.entrySet().removeIf(entry -> !activeKeys.contains(entry.getKey())
+                && taskPrefixes.stream().anyMatch(entry.getKey()::startsWith)
+                && !entry.getValue().isRunning());
+    }
+
+    /**
+     * 关闭已删除或已修改地址的控制器的线程池并移除其任务统计
+     * 线程池不再接受新任务，已提交的任务执行完后线程退出；正在执行的任务的统计留到下次再移除
+     *
+     * @param activeBaseUrls 现有控制器的基础URL
+     */
+    public void retainControllers(Set<String> activeBaseUrls) {
+        evict(executors, activeBaseUrls);
+        evict(probeExecutors, activeBaseUrls);
+        taskStats.entrySet().removeIf(entry -> activeBaseUrls.stream()
+                .noneMatch(baseUrl -> entry.getKey().endsWith("@" + baseUrl))
+                && !entry.getValue().isRunning());
+    }
+
+    /**
+     * 获取所有任务的执行统计
+     *
+     * @return 任务统计列表
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (TaskStats stats : taskStats.values()) {
+            result.add(stats.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 获取控制器专属的节点探测线程池
+     * 与任务线程池分开，任务在等待探测结果时不会占用探测线程；不可用的控制器最多占满自己的探测线程
+     *
+     * @param endpoint Clash API端点
+     * @return 探测线程池
+     */
+    public Executor probeExecutor(ClashEndpoint endpoint) {
+        return probeExecutors.computeIfAbsent(endpoint.getBaseUrl(),
+                baseUrl -> newPool("clash-probe-" + endpoint.getName() + "-", probeConcurrency));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ExecutorService::shutdownNow);
+        probeExecutors.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    private ExecutorService executorFor(ClashEndpoint endpoint) {
+        return executors.computeIfAbsent(endpoint.getBaseUrl(),
+                baseUrl -> newPool("clash-" + endpoint.getName() + "-", threadsPerController));
+    }
+
+    private static void evict(Map<String, ExecutorService> pools, Set<String> activeBaseUrls) {
+        for (String baseUrl : new ArrayList<>(pools.keySet())) {
+            if (activeBaseUrls.contains(baseUrl)) {
+                continue;
+            }
+            ExecutorService pool = pools.remove(baseUrl);
+            if (pool != null) {
+                pool.shutdown();
+                log.info("控制器 {} 已删除或地址已修改，关闭其线程池", baseUrl);
+            }
+        }
+    }
+
+    private static ExecutorService newPool(String threadNamePrefix, int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 单个控制器上单个任务的执行统计
+     */
+    private static final class TaskStats {
+
+        private final String controller;
+        private final String taskName;
+        private boolean running;
+        private long runs;
+        private long skipped;
+        private long lastDuration;
+        private long maxDuration;
+
+        private TaskStats(String controller, String taskName) {
+            this.controller = controller;
+            this.taskName = taskName;
+        }
+
+        private synchronized boolean isRunning() {
+            return running;
+        }
+
+        private synchronized boolean tryStart() {
+            if (running) {
+                skipped++;
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        private synchronized void finish(long duration) {
+            running = false;
+            runs++;
+            lastDuration = duration;
+            maxDuration = Math.max(maxDuration, duration);
+        }
+
+        private synchronized Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("controller", controller);
+            result.put("task", taskName);
+            result.put("running", running);
+            result.put("runs", runs);
+            result.put("skipped", skipped);
+            result.put("lastDuration", lastDuration);
+            result.put("maxDuration", maxDuration);
+            return result;
+        }
+    }
+}
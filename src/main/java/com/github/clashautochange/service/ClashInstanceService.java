@@ -0,0 +1,131 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.config.ClashApiConfig;
+import com.github.clashautochange.config.ClashApiConfigChangedEvent;
+import com.github.clashautochange.config.ProxyGroupConfigChangedEvent;
+import com.github.clashautochange.entity.ClashInstance;
+import com.github.clashautochange.model.ClashEndpoint;
+import com.github.clashautochange.repository.ClashInstanceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Clash 控制器服务
+ */
+@Service
+public class ClashInstanceService {
+
+    private final ClashInstanceRepository clashInstanceRepository;
+    private final ClashApiConfig clashApiConfig;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ClashFleetExecutor clashFleetExecutor;
+    private final ClashCircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    public ClashInstanceService(ClashInstanceRepository clashInstanceRepository, ClashApiConfig clashApiConfig,
+                                ApplicationEventPublisher eventPublisher, ClashFleetExecutor clashFleetExecutor,
+                                ClashCircuitBreakerRegistry circuitBreakerRegistry) {
+        this.clashInstanceRepository = clashInstanceRepository;
+        this.clashApiConfig = clashApiConfig;
+        this.eventPublisher = eventPublisher;
+        this.clashFleetExecutor = clashFleetExecutor;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+    }
+
+    /**
+     * 获取控制器对应的API端点
+     *
+     * @param instance Clash 控制器，为null时使用默认端点
+     * @return Clash API端点
+     */
+    public ClashEndpoint resolveEndpoint(ClashInstance instance) {
+        if (instance == null) {
+            return clashApiConfig.getEndpoint();
+        }
+        return new ClashEndpoint(instance.getName(), instance.getBaseUrl(), instance.getSecret());
+    }
+
+    /**
+     * 保存控制器
+     * 密钥不会返回给客户端，更新时未提供密钥则保留原来的密钥
+     *
+     * @param instance Clash 控制器
+     * @return 保存后的控制器
+     */
+    public ClashInstance saveInstance(ClashInstance instance) {
+        if (instance.getId() != null && instance.getSecret() == null) {
+            clashInstanceRepository.findById(instance.getId())
+                    .ifPresent(existing -> instance.setSecret(existing.getSecret()));
+        }
+        ClashInstance saved = clashInstanceRepository.save(instance);
+        // 策略组配置中缓存了控制器的地址和启用状态
+        eventPublisher.publishEvent(new ProxyGroupConfigChangedEvent());
+        return saved;
+    }
+
+    /**
+     * 获取所有控制器
+     *
+     * @return 所有控制器
+     */
+    public List<ClashInstance> getAllInstances() {
+        return clashInstanceRepository.findAll();
+    }
+
+    /**
+     * 根据ID获取控制器
+     *
+     * @param id 控制器ID
+     * @return Clash 控制器
+     */
+    public Optional<ClashInstance> getInstanceById(Long id) {
+        return clashInstanceRepository.findById(id);
+    }
+
+    /**
+     * 删除控制器
+     *
+     * @param id 控制器ID
+     */
+    public void deleteInstance(Long id) {
+        clashInstanceRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProxyGroupConfigChangedEvent());
+    }
+
+    /**
+     * 控制器保存或删除并提交后，释放已删除或已修改地址的控制器的线程池和熔断器
+     *
+     * @param event 配置变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProxyGroupConfigChanged(ProxyGroupConfigChangedEvent event) {
+        retainControllers();
+    }
+
+    /**
+     * 默认端点地址修改后释放旧地址的线程池和熔断器
+     *
+     * @param event 配置变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onClashApiConfigChanged(ClashApiConfigChangedEvent event) {
+        retainControllers();
+    }
+
+    private void retainControllers() {
+        Set<String> activeBaseUrls = new HashSet<>();
+        activeBaseUrls.add(resolveEndpoint(null).getBaseUrl());
+        for (ClashInstance instance : clashInstanceRepository.findAll()) {
+            activeBaseUrls.add(resolveEndpoint(instance).getBaseUrl());
+        }
+        clashFleetExecutor.retainControllers(activeBaseUrls);
+        circuitBreakerRegistry.retain(activeBaseUrls);
+    }
+}
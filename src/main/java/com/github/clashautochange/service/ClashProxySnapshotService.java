@@ -0,0 +1,119 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.config.ClashApiConfig;
+import com.github.clashautochange.model.ClashEndpoint;
+import com.github.clashautochange.model.ClashProxySnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clash 代理快照服务
+ * 在TTL窗口内共享一次 GET /proxies 的结果，代替逐个策略组的查询，每个端点独立缓存
+ */
+@Service
+public class ClashProxySnapshotService {
+
+    private final ClashApiService clashApiService;
+    private final ClashApiConfig clashApiConfig;
+
+    @Value("${clash.snapshot.ttl:2000}")
+    private long ttl;
+
+    private final Map<ClashEndpoint, Holder> holders = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ClashProxySnapshotService(ClashApiService clashApiService, ClashApiConfig clashApiConfig) {
+        this.clashApiService = clashApiService;
+        this.clashApiConfig = clashApiConfig;
+    }
+
+    /**
+     * 获取默认端点的快照
+     */
+    public ClashProxySnapshot getSnapshot() {
+        return getSnapshot(clashApiConfig.getEndpoint());
+    }
+
+    /**
+     * 获取快照，TTL内直接返回缓存结果
+     *
+     * @param endpoint Clash API端点
+     * @return 代理快照
+     */
+    public ClashProxySnapshot getSnapshot(ClashEndpoint endpoint) {
+        Holder holder = holderFor(endpoint);
+        ClashProxySnapshot snapshot = holder.current;
+        if (isFresh(snapshot)) {
+            return snapshot;
+        }
+        synchronized (holder) {
+            // 并发调用者只发起一次请求
+            snapshot = holder.current;
+            if (isFresh(snapshot)) {
+                return snapshot;
+            }
+            return fetch(endpoint, holder);
+        }
+    }
+
+    /**
+     * 强制重新获取默认端点的快照
+     */
+    public ClashProxySnapshot refresh() {
+        return refresh(clashApiConfig.getEndpoint());
+    }
+
+    /**
+     * 强制重新获取快照
+     *
+     * @param endpoint Clash API端点
+     * @return 代理快照
+     */
+    public ClashProxySnapshot refresh(ClashEndpoint endpoint) {
+        Holder holder = holderFor(endpoint);
+        synchronized (holder) {
+            return fetch(endpoint, holder);
+        }
+    }
+
+    /**
+     * 使默认端点的快照失效
+     */
+    public void invalidate() {
+        invalidate(clashApiConfig.getEndpoint());
+    }
+
+    /**
+     * 使当前快照失效，例如切换节点之后
+     *
+     * @param endpoint Clash API端点
+     */
+    public void invalidate(ClashEndpoint endpoint) {
+        Holder holder = holders.get(endpoint);
+        if (holder != null) {
+            holder.current = null;
+        }
+    }
+
+    private Holder holderFor(ClashEndpoint endpoint) {
+        return holders.computeIfAbsent(endpoint, key -> new Holder());
+    }
+
+    private boolean isFresh(ClashProxySnapshot snapshot) {
+        return snapshot != null && System.currentTimeMillis() - snapshot.getFetchedAt() < ttl;
+    }
+
+    private ClashProxySnapshot fetch(ClashEndpoint endpoint, Holder holder) {
+        ClashProxySnapshot snapshot = clashApiService.getProxySnapshot(endpoint);
+        holder.current = snapshot;
+        return snapshot;
+    }
+
+    private static final class Holder {
+        private volatile ClashProxySnapshot current;
+    }
+}
@@ -0,0 +1,332 @@
+package com.github.clashautochange.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.clashautochange.model.ClashConnection;
+import com.github.clashautochange.model.ClashProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clash API 响应解析器
+ * 使用Jackson流式API直接解析为类型化结构，只提取 name/type/now/all/history，
+ * 跳过其余字段，避免为大型订阅构建完整的 Map 树
+ */
+@Component
+public class ClashResponseParser {
+
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public ClashResponseParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * 解析 GET /proxies 响应
+     *
+     * @param in 响应流
+     * @return 代理名称和代理的映射
+     * @throws IOException 解析失败时抛出
+     */
+    public Map<String, ClashProxy> parseProxies(InputStream in) throws IOException {
+        Map<String, ClashProxy> result = new LinkedHashMap<>();
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("proxies".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        parser.nextToken();
+                        ClashProxy proxy = readProxy(parser);
+                        if (proxy.getName() == null) {
+                            proxy.setName(name);
+                        }
+                        result.put(name, proxy);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析 GET /group 响应
+     *
+     * @param in 响应流
+     * @return 策略组列表
+     * @throws IOException 解析失败时抛出
+     */
+    public List<ClashProxy> parseGroups(InputStream in) throws IOException {
+        List<ClashProxy> result = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("proxies".equals(field) && token == JsonToken.START_ARRAY) {
+                    JsonToken element;
+                    while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (element == JsonToken.START_OBJECT) {
+                            result.add(readProxy(parser));
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析 GET /proxies/{name} 响应
+     *
+     * @param in 响应流
+     * @return 代理信息，响应为空时返回null
+     * @throws IOException 解析失败时抛出
+     */
+    public ClashProxy parseProxy(InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            return readProxy(parser);
+        }
+    }
+
+    /**
+     * 解析 GET /proxies/{name} 响应中的策略组节点
+     * 优先使用 all 数组；没有 all 时使用 proxies 数组中各对象的 name；
+     * 两者都没有时，把值为字符串的字段名作为节点名称
+     *
+     * @param in 响应流
+     * @return 节点名称列表
+     * @throws IOException 解析失败时抛出
+     */
+    public List<String> parseGroupMembers(InputStream in) throws IOException {
+        List<String> all = null;
+        List<String> proxies = null;
+        List<String> stringFields = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return stringFields;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("all".equals(field)) {
+                    all = readNames(parser, token);
+                } else if ("proxies".equals(field)) {
+                    proxies = readObjectNames(parser, token);
+                } else if (token == JsonToken.VALUE_STRING) {
+                    stringFields.add(field);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (all != null) {
+            return all;
+        }
+        return proxies != null ? proxies : stringFields;
+    }
+
+    /**
+     * 解析 GET /group/{name}/delay 响应
+     *
+     * @param in 响应流
+     * @return 代理名称和延迟的映射
+     * @throws IOException 解析失败时抛出
+     */
+    public Map<String, Integer> parseDelays(InputStream in) throws IOException {
+        Map<String, Integer> result = new HashMap<>();
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    result.put(name, parser.getIntValue());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析 GET /connections 响应，只提取连接ID和代理链
+     *
+     * @param in 响应流
+     * @return 连接列表
+     * @throws IOException 解析失败时抛出
+     */
+    public List<ClashConnection> parseConnections(InputStream in) throws IOException {
+        List<ClashConnection> result = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("connections".equals(field) && token == JsonToken.START_ARRAY) {
+                    JsonToken element;
+                    while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (element == JsonToken.START_OBJECT) {
+                            result.add(readConnection(parser));
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 读取一个连接对象，调用时解析器位于 START_OBJECT
+     */
+    private ClashConnection readConnection(JsonParser parser) throws IOException {
+        ClashConnection connection = new ClashConnection();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id" -> connection.setId(readText(parser, token));
+                case "chains" -> connection.setChains(readNames(parser, token));
+                default -> parser.skipChildren();
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * 读取一个代理对象，调用时解析器位于 START_OBJECT
+     */
+    private ClashProxy readProxy(JsonParser parser) throws IOException {
+        ClashProxy proxy = new ClashProxy();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "name" -> proxy.setName(readText(parser, token));
+                case "type" -> proxy.setType(readText(parser, token));
+                case "now" -> proxy.setNow(readText(parser, token));
+                case "all" -> proxy.setAll(readNames(parser, token));
+                case "history" -> proxy.setDelay(readLastDelay(parser, token));
+                default -> parser.skipChildren();
+            }
+        }
+        return proxy;
+    }
+
+    private String readText(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private List<String> readNames(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (element == JsonToken.VALUE_STRING) {
+                names.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return names.isEmpty() ? Collections.emptyList() : names;
+    }
+
+    /**
+     * 读取对象数组中各对象的 name 字段
+     */
+    private List<String> readObjectNames(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (element != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                    names.add(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 读取history数组中最后一条记录的延迟
+     */
+    private Integer readLastDelay(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        Integer lastDelay = null;
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (element != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("delay".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    lastDelay = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return lastDelay;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.clashautochange.service;
+
+/**
+ * 一个节点在一个时间桶内的延迟汇总
+ * 原始记录逐条加入，细粒度的汇总可以合并为粗粒度的汇总
+ */
+final class DelayBucket {
+
+    private long count;
+    private long loss;
+    private int min = Integer.MAX_VALUE;
+    private int max = -1;
+    private long sum;
+    private final DelaySketch sketch;
+
+    DelayBucket() {
+        this.sketch = new DelaySketch();
+    }
+
+    DelayBucket(long count, long loss, int min, int max, long sum, DelaySketch sketch) {
+        this.count = count;
+        this.loss = loss;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.sketch = sketch;
+    }
+
+    /**
+     * 加入一条原始记录
+     *
+     * @param delay 延迟（毫秒），小于0为未连通
+     */
+    void add(int delay) {
+        count++;
+        if (delay < 0) {
+            loss++;
+            return;
+        }
+        min = Math.min(min, delay);
+        max = Math.max(max, delay);
+        sum += delay;
+        sketch.add(delay);
+    }
+
+    void merge(DelayBucket other) {
+        count += other.count;
+        loss += other.loss;
+        if (other.count > other.loss) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        sum += other.sum;
+        sketch.merge(other.sketch);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getLoss() {
+        return loss;
+    }
+
+    long getConnected() {
+        return count - loss;
+    }
+
+    /**
+     * 最小延迟，没有成功记录时为-1
+     */
+    int getMin() {
+        return getConnected() > 0 ? min : -1;
+    }
+
+    /**
+     * 最大延迟，没有成功记录时为-1
+     */
+    int getMax() {
+        return getConnected() > 0 ? max : -1;
+    }
+
+    long getSum() {
+        return sum;
+    }
+
+    DelaySketch getSketch() {
+        return sketch;
+    }
+
+    /**
+     * 平均延迟，全部未连通时为-1，与原始记录的未连通表示一致
+     */
+    int average() {
+        long connected = getConnected();
+        return connected > 0 ? (int) Math.round((double) sum / connected) : -1;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.clashautochange.service;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 延迟分布的对数直方图
+ * 第 i 个桶覆盖 (GAMMA^(i-1), GAMMA^i] 毫秒，分位数的相对误差不超过约5%；
+ * 桶的边界固定，同一节点不同时间段的直方图可以直接相加，用于由细粒度汇总合并出粗粒度汇总
+ */
+final class DelaySketch {
+
+    /**
+     * 相邻桶边界的比例
+     */
+    static final double GAMMA = 1.1;
+
+    /**
+     * 桶的数量，最后一个桶的上界约为 1.1^127 毫秒
+     */
+    static final int BUCKETS = 128;
+
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+
+    /**
+     * 记录一次成功的延迟
+     *
+     * @param delay 延迟（毫秒）
+     */
+    void add(int delay) {
+        counts[index(delay)]++;
+        total++;
+    }
+
+    /**
+     * 合并另一个直方图
+     *
+     * @param other 另一个直方图
+     */
+    void merge(DelaySketch other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * 估计分位数
+     *
+     * @param q 分位 (0, 1]
+     * @return 延迟（毫秒），没有记录时为-1
+     */
+    int quantile(double q) {
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return value(i);
+            }
+        }
+        return value(BUCKETS - 1);
+    }
+
+    /**
+     * 编码为字节数组，只保存非空的桶：桶序号一个字节，计数为变长整数
+     */
+    byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts[i];
+            if (count == 0) {
+                continue;
+            }
+            out.write(i);
+            while ((count & ~0x7FL) != 0) {
+                out.write((int) ((count & 0x7F) | 0x80));
+                count >>>= 7;
+            }
+            out.write((int) count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果解码
+     *
+     * @param bytes 编码后的直方图，为null时返回空直方图
+     * @return 直方图
+     */
+    static DelaySketch fromBytes(byte[] bytes) {
+        DelaySketch sketch = new DelaySketch();
+        if (bytes == null) {
+            return sketch;
+        }
+        int pos = 0;
+        while (pos < bytes.length) {
+            int index = bytes[pos++] & 0xFF;
+            long count = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++];
+                count |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            sketch.counts[index] += count;
+            sketch.total += count;
+        }
+        return sketch;
+    }
+
+    private static int index(int delay) {
+        if (delay <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, (int) Math.ceil(Math.log(delay) / LOG_GAMMA));
+    }
+
+    /**
+     * 桶的代表值，取使相对误差最小的点
+     */
+    private static int value(int index) {
+        if (index == 0) {
+            return 1;
+        }
+        return (int) Math.round(2 * Math.pow(GAMMA, index) / (1 + GAMMA));
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.clashautochange.service;
+
+import java.util.Arrays;
+
+/**
+ * 单个节点最近N次探测结果的滑动窗口
+ * 基于基本类型数组实现的环形缓冲区，记录结果时不分配对象；
+ * 百分位数在读取时通过预先分配的数组排序得到
+ */
+final class LatencyWindow {
+
+    /**
+     * 探测失败或超时
+     */
+    static final int LOST = -1;
+
+    private final int[] samples;
+    private final int[] scratch;
+    private final double alpha;
+
+    /**
+     * 下一个写入位置
+     */
+    private int next;
+    private int count;
+    private double ewma = Double.NaN;
+    private long lastRecordedAt;
+
+    LatencyWindow(int size, double alpha) {
+        this.samples = new int[size];
+        this.scratch = new int[size];
+        this.alpha = alpha;
+    }
+
+    /**
+     * 记录一次探测结果
+     *
+     * @param delay 延迟（毫秒），失败时为 {@link #LOST}
+     * @param now 当前时间
+     */
+    synchronized void record(int delay, long now) {
+        int value = delay > 0 ? delay : LOST;
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (value != LOST) {
+            ewma = Double.isNaN(ewma) ? value : alpha * value + (1 - alpha) * ewma;
+        }
+        lastRecordedAt = now;
+    }
+
+    synchronized int sampleCount() {
+        return count;
+    }
+
+    synchronized long getLastRecordedAt() {
+        return lastRecordedAt;
+    }
+
+    /**
+     * 成功探测延迟的指数加权移动平均，没有成功结果时为NaN
+     */
+    synchronized double ewma() {
+        return ewma;
+    }
+
+    /**
+     * 窗口内探测失败的比例
+     */
+    synchronized double lossRatio() {
+        if (count == 0) {
+            return 0;
+        }
+        int lost = 0;
+        for (int i = 0; i < count; i++) {
+            if (samples[i] == LOST) {
+                lost++;
+            }
+        }
+        return (double) lost / count;
+    }
+
+    /**
+     * 窗口内成功探测延迟的百分位数（最近秩法）
+     *
+     * @param p 百分位 (0, 1]
+     * @return 延迟（毫秒），没有成功结果时为 {@link #LOST}
+     */
+    synchronized int percentile(double p) {
+        int n = copySuccesses();
+        if (n == 0) {
+            return LOST;
+        }
+        Arrays.sort(scratch, 0, n);
+        int rank = (int) Math.ceil(p * n);
+        return scratch[Math.min(n, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * 按时间顺序相邻两次成功探测延迟差的平均绝对值
+     */
+    synchronized double jitter() {
+        int start = count < samples.length ? 0 : next;
+        int previous = LOST;
+        long total = 0;
+        int pairs = 0;
+        for (int i = 0; i < count; i++) {
+            int value = samples[(start + i) % samples.length];
+            if (value == LOST) {
+                continue;
+            }
+            if (previous != LOST) {
+                total += Math.abs(value - previous);
+                pairs++;
+            }
+            previous = value;
+        }
+        return pairs > 0 ? (double) total / pairs : 0;
+    }
+
+    /**
+     * 计算节点得分，越低越好
+     *
+     * @param ewmaWeight EWMA权重
+     * @param p95Weight P95权重
+     * @param jitterWeight 抖动权重
+     * @param lossPenalty 全部失败时增加的分数（毫秒），按失败比例折算
+     * @return 得分，没有成功结果时为 {@link Double#MAX_VALUE}
+     */
+    synchronized double score(double ewmaWeight, double p95Weight, double jitterWeight, double lossPenalty) {
+        if (Double.isNaN(ewma)) {
+            return Double.MAX_VALUE;
+        }
+        return ewmaWeight * ewma + p95Weight * percentile(0.95) + jitterWeight * jitter() + lossPenalty * lossRatio();
+    }
+
+    private int copySuccesses() {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (samples[i] != LOST) {
+                scratch[n++] = samples[i];
+            }
+        }
+        return n;
+    }
+}
@@ -60,13 +60,15 @@ public class MonitoredProxyGroupService {
     }
 
     /**
-     * 根据代理组名称获取配置
+     * 根据控制器和代理组名称获取配置
      *
+     * @param instanceKey 控制器ID，为null或0时为默认 Clash API
      * @param groupName 代理组名称
      * @return 监控代理组配置
      */
-    public Optional<MonitoredProxyGroup> getConfigByGroupName(String groupName) {
-        return monitoredProxyGroupRepository.findByGroupName(groupName);
+    public Optional<MonitoredProxyGroup> getConfig(Long instanceKey, String groupName) {
+        return monitoredProxyGroupRepository.findByInstanceKeyAndGroupName(
+                instanceKey != null ? instanceKey : 0L, groupName);
     }
 
     /**
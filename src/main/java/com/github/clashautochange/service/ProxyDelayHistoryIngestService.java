@@ -0,0 +1,107 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.entity.ProxyDelayHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 延迟历史写入服务
+ * ProxyDelayHistory 的主键使用 IDENTITY 生成，Hibernate 无法对其批量插入，saveAll 每行都是一次往返；
+ * 这里绕过 JPA，用 JDBC 批量插入在一个事务中写入一次监控的全部记录，并统计写入吞吐量。
+ * 代理组和节点名称在写入前转换为 proxy_name_registry 中的ID
+ */
+@Service
+@Slf4j
+public class ProxyDelayHistoryIngestService {
+
+    static final String INSERT_SQL =
+            "INSERT INTO proxy_delay_history (group_id, proxy_id, delay, test_time) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProxyNameRegistryService proxyNameRegistryService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 每个JDBC批次的行数
+     */
+    @Value("${proxy.history.batch-size:500}")
+    private int batchSize = 500;
+
+    private final AtomicLong totalRows = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong cycles = new AtomicLong();
+    private volatile int lastRows;
+    private volatile long lastDuration;
+
+    @Autowired
+    public ProxyDelayHistoryIngestService(JdbcTemplate jdbcTemplate,
+                                          ProxyNameRegistryService proxyNameRegistryService,
+                                          PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.proxyNameRegistryService = proxyNameRegistryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 在一个事务中批量写入延迟历史记录
+     * 新名称在写入事务之外先登记到字典中，写入失败回滚时不会留下缓存中已有、表中却没有的ID
+     *
+     * @param histories 延迟历史记录
+     * @return 写入的行数
+     */
+    public int ingest(List<ProxyDelayHistory> histories) {
+        if (histories.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        for (ProxyDelayHistory history : histories) {
+            history.setGroupId(proxyNameRegistryService.intern(history.getGroupName()));
+            history.setProxyId(proxyNameRegistryService.intern(history.getProxyName()));
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, histories, batchSize, (ps, history) -> {
+                    ps.setInt(1, history.getGroupId());
+                    ps.setInt(2, history.getProxyId());
+                    ps.setInt(3, history.getDelay());
+                    ps.setTimestamp(4, Timestamp.valueOf(history.getTestTime()));
+                }));
+        long elapsed = System.nanoTime() - start;
+
+        totalRows.addAndGet(histories.size());
+        totalNanos.addAndGet(elapsed);
+        cycles.incrementAndGet();
+        lastRows = histories.size();
+        lastDuration = elapsed / 1000000;
+        log.debug("批量写入 {} 条延迟历史记录，耗时 {}ms", histories.size(), lastDuration);
+        return histories.size();
+    }
+
+    /**
+     * 获取写入统计
+     *
+     * @return 累计行数、次数、最近一次的行数和耗时以及平均吞吐量（行/秒）
+     */
+    public Map<String, Object> getStats() {
+        long rows = totalRows.get();
+        long nanos = totalNanos.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchSize", batchSize);
+        stats.put("cycles", cycles.get());
+        stats.put("totalRows", rows);
+        stats.put("lastRows", lastRows);
+        stats.put("lastDuration", lastDuration);
+        stats.put("rowsPerSecond", nanos > 0 ? Math.round(rows * 1e9 / nanos) : 0);
+        return stats;
+    }
+}
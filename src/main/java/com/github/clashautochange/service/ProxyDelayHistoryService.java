@@ -1,32 +1,50 @@
 package com.github.clashautochange.service;
 
 import com.github.clashautochange.entity.ProxyDelayHistory;
+import com.github.clashautochange.model.ProxyDelayPoint;
 import com.github.clashautochange.repository.ProxyDelayHistoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * 代理延迟历史记录服务
+ * 表中只保存代理组和代理节点的ID，查询时把名称转换为ID，并为结果填充名称
  */
 @Service
 public class ProxyDelayHistoryService {
 
     private final ProxyDelayHistoryRepository proxyDelayHistoryRepository;
+    private final ProxyNameRegistryService proxyNameRegistryService;
     
     // 中国时区常量
     private static final ZoneId CHINA_ZONE = ZoneId.of("Asia/Shanghai");
 
     @Autowired
-    public ProxyDelayHistoryService(ProxyDelayHistoryRepository proxyDelayHistoryRepository) {
+    public ProxyDelayHistoryService(ProxyDelayHistoryRepository proxyDelayHistoryRepository,
+                                    ProxyNameRegistryService proxyNameRegistryService) {
         this.proxyDelayHistoryRepository = proxyDelayHistoryRepository;
+        this.proxyNameRegistryService = proxyNameRegistryService;
+    }
+
+    /**
+     * 延迟历史中代理组的名称
+     * 默认 Clash API 的代理组直接使用代理组名称，其他控制器的代理组在名称后加上 "@控制器ID"，
+     * 不同控制器上的同名代理组分别记录
+     *
+     * @param instanceKey 控制器ID，为null或0时为默认 Clash API
+     * @param groupName 代理组名称
+     * @return 延迟历史中的代理组名称
+     */
+    public static String historyGroupName(Long instanceKey, String groupName) {
+        return instanceKey == null || instanceKey == 0 ? groupName : groupName + "@" + instanceKey;
     }
 
     /**
@@ -36,16 +54,18 @@ public class ProxyDelayHistoryService {
      * @return 保存后的记录
      */
     public ProxyDelayHistory saveHistory(ProxyDelayHistory history) {
-        return proxyDelayHistoryRepository.save(history);
+        return proxyDelayHistoryRepository.save(encode(history));
     }
 
     /**
      * 批量保存代理延迟历史记录
+     * 定时监控通过 ProxyDelayHistoryIngestService 批量写入，这里用于少量记录
      *
      * @param histories 代理延迟历史记录列表
      * @return 保存后的记录列表
      */
     public List<ProxyDelayHistory> saveAllHistories(List<ProxyDelayHistory> histories) {
+        histories.forEach(this::encode);
         return proxyDelayHistoryRepository.saveAll(histories);
     }
 
@@ -56,7 +76,11 @@ public class ProxyDelayHistoryService {
      * @return 历史记录列表
      */
     public List<ProxyDelayHistory> getHistoriesByGroupName(String groupName) {
-        return proxyDelayHistoryRepository.findByGroupNameOrderByTestTimeDesc(groupName);
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        if (groupId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return decode(proxyDelayHistoryRepository.findByGroupIdOrderByTestTimeDesc(groupId.get()));
     }
 
     /**
@@ -67,7 +91,13 @@ public class ProxyDelayHistoryService {
      * @return 历史记录列表
      */
     public List<ProxyDelayHistory> getHistoriesByGroupNameAndProxyName(String groupName, String proxyName) {
-        return proxyDelayHistoryRepository.findByGroupNameAndProxyNameOrderByTestTimeDesc(groupName, proxyName);
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        Optional<Integer> proxyId = proxyNameRegistryService.findId(proxyName);
+        if (groupId.isEmpty() || proxyId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return decode(proxyDelayHistoryRepository.findByGroupIdAndProxyIdOrderByTestTimeDesc(groupId.get(),
+                proxyId.get()));
     }
 
     /**
@@ -79,7 +109,13 @@ public class ProxyDelayHistoryService {
      * @return 历史记录列表
      */
     public List<ProxyDelayHistory> getHistoriesByTimeRange(String groupName, LocalDateTime startTime, LocalDateTime endTime) {
-        return proxyDelayHistoryRepository.findByGroupNameAndTestTimeBetweenOrderByTestTimeAsc(groupName, startTime, endTime);
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        if (groupId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ProxyDelayPoint> points = proxyDelayHistoryRepository.findPointsByGroupIdAndTestTimeBetween(
+                groupId.get(), startTime, endTime);
+        return toHistories(groupName, groupId.get(), points);
     }
 
     /**
@@ -93,8 +129,7 @@ public class ProxyDelayHistoryService {
      */
     public List<ProxyDelayHistory> getHistoriesByProxyNameAndTimeRange(
             String groupName, String proxyName, LocalDateTime startTime, LocalDateTime endTime) {
-        return proxyDelayHistoryRepository.findByGroupNameAndProxyNameAndTestTimeBetweenOrderByTestTimeDesc(
-                groupName, proxyName, startTime, endTime);
+        return findByGroupNameAndProxyNameAndTimeRange(groupName, proxyName, startTime, endTime);
     }
 
     /**
@@ -116,7 +151,13 @@ public class ProxyDelayHistoryService {
      * @return 代理节点名称列表
      */
     public List<String> getDistinctProxyNamesByGroupName(String groupName) {
-        return proxyDelayHistoryRepository.findDistinctProxyNamesByGroupName(groupName);
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        if (groupId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return proxyDelayHistoryRepository.findDistinctProxyIdsByGroupId(groupId.get()).stream()
+                .map(proxyNameRegistryService::getName)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -155,21 +196,59 @@ public class ProxyDelayHistoryService {
         );
     }
 
+    public List<ProxyDelayHistory> findByGroupNameAndTimeRange(String groupName, LocalDateTime startTime, LocalDateTime endTime) {
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        if (groupId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ProxyDelayPoint> points = proxyDelayHistoryRepository.findPointsByGroupIdAndTestTimeBetween(
+                groupId.get(), startTime, endTime);
+        return toHistories(groupName, groupId.get(), points);
+    }
+
+    public List<ProxyDelayHistory> findByGroupNameAndProxyNameAndTimeRange(String groupName, String proxyName, LocalDateTime startTime, LocalDateTime endTime) {
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        Optional<Integer> proxyId = proxyNameRegistryService.findId(proxyName);
+        if (groupId.isEmpty() || proxyId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ProxyDelayPoint> points = proxyDelayHistoryRepository.findPointsByGroupIdAndProxyIdAndTestTimeBetween(
+                groupId.get(), proxyId.get(), startTime, endTime);
+        return toHistories(groupName, groupId.get(), points);
+    }
+
     /**
-     * 定时任务：清理旧的历史记录（保留30天内的数据）
+     * 把记录中的名称转换为ID
      */
-    @Scheduled(cron = "0 0 0 * * ?") // 每天零点执行
-    @Transactional
-    public void cleanupOldHistories() {
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now(CHINA_ZONE).minusDays(30);
-        long deletedCount = proxyDelayHistoryRepository.deleteByTestTimeBefore(thirtyDaysAgo);
+    private ProxyDelayHistory encode(ProxyDelayHistory history) {
+        history.setGroupId(proxyNameRegistryService.intern(history.getGroupName()));
+        history.setProxyId(proxyNameRegistryService.intern(history.getProxyName()));
+        return history;
     }
 
-    public List<ProxyDelayHistory> findByGroupNameAndTimeRange(String groupName, LocalDateTime startTime, LocalDateTime endTime) {
-        return proxyDelayHistoryRepository.findByGroupNameAndTestTimeBetween(groupName, startTime, endTime);
+    /**
+     * 把索引投影查询的结果转换为历史记录并填充名称，不经过持久化上下文
+     */
+    private List<ProxyDelayHistory> toHistories(String groupName, Integer groupId, List<ProxyDelayPoint> points) {
+        List<ProxyDelayHistory> histories = new ArrayList<>(points.size());
+        for (ProxyDelayPoint point : points) {
+            ProxyDelayHistory history = ProxyDelayHistory.create(groupName,
+                    proxyNameRegistryService.getName(point.getProxyId()), point.getDelay(), point.getTestTime());
+            history.setGroupId(groupId);
+            history.setProxyId(point.getProxyId());
+            histories.add(history);
+        }
+        return histories;
     }
 
-    public List<ProxyDelayHistory> findByGroupNameAndProxyNameAndTimeRange(String groupName, String proxyName, LocalDateTime startTime, LocalDateTime endTime) {
-        return proxyDelayHistoryRepository.findByGroupNameAndProxyNameAndTestTimeBetweenOrderByTestTimeDesc(groupName, proxyName, startTime, endTime);
+    /**
+     * 由ID为查询结果填充名称
+     */
+    private List<ProxyDelayHistory> decode(List<ProxyDelayHistory> histories) {
+        for (ProxyDelayHistory history : histories) {
+            history.setGroupName(proxyNameRegistryService.getName(history.getGroupId()));
+            history.setProxyName(proxyNameRegistryService.getName(history.getProxyId()));
+        }
+        return histories;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ClashEndpoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * 节点延迟探测服务
+ * 基于 testProxyDelay 对每个节点单独发起探测，每个控制器的并发数单独受限（见 {@link ClashFleetExecutor#probeExecutor}），
+ * 每个结果到达时立即回调，不必等待最慢的节点超时
+ */
+@Service
+@Slf4j
+public class ProxyDelayProbeService {
+
+    /**
+     * 探测失败或超时时回调的延迟值
+     */
+    public static final int FAILED = -1;
+
+    private final ClashDelayTestService clashDelayTestService;
+    private final ClashFleetExecutor clashFleetExecutor;
+
+    @Autowired
+    public ProxyDelayProbeService(ClashDelayTestService clashDelayTestService,
+                                  ClashFleetExecutor clashFleetExecutor) {
+        this.clashDelayTestService = clashDelayTestService;
+        this.clashFleetExecutor = clashFleetExecutor;
+    }
+
+    /**
+     * 并发测试多个节点的延迟
+     *
+     * @param endpoint Clash API端点
+     * @param proxies 节点名称列表
+     * @param url 测试URL
+     * @param timeout 超时时间
+     * @param maxAge 可接受的缓存结果最大时长（毫秒）
+     * @param onResult 每个节点结果到达时的回调，失败时延迟为 {@link #FAILED}，可为null
+     * @return 全部探测完成后得到的成功节点和延迟的映射
+     */
+    public CompletableFuture<Map<String, Integer>> probe(ClashEndpoint endpoint, List<String> proxies, String url,
+                                                         Integer timeout, long maxAge,
+                                                         BiConsumer<String, Integer> onResult) {
+        Map<String, Integer> results = new ConcurrentHashMap<>();
+        Executor executor = clashFleetExecutor.probeExecutor(endpoint);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[proxies.size()];
+        for (int i = 0; i < proxies.size(); i++) {
+            String proxy = proxies.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> {
+                int delay = probeOne(endpoint, proxy, url, timeout, maxAge);
+                if (delay != FAILED) {
+                    results.put(proxy, delay);
+                }
+                if (onResult != null) {
+                    try {
+                        onResult.accept(proxy, delay);
+                    } catch (Exception e) {
+                        log.warn("处理节点 {} 延迟结果时出错: {}", proxy, e.getMessage());
+                    }
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(futures).thenApply(ignored -> results);
+    }
+
+    /**
+     * 测试单个节点的延迟
+     *
+     * @param endpoint Clash API端点
+     * @param proxy 节点名称
+     * @param url 测试URL
+     * @param timeout 超时时间
+     * @param maxAge 可接受的缓存结果最大时长（毫秒）
+     * @return 延迟（毫秒），失败时为 {@link #FAILED}
+     */
+    private int probeOne(ClashEndpoint endpoint, String proxy, String url, Integer timeout, long maxAge) {
+        try {
+            Integer delay = clashDelayTestService.testProxyDelay(endpoint, proxy, url, timeout, maxAge);
+            if (delay != null) {
+                return delay;
+            }
+        } catch (Exception e) {
+            log.debug("节点 {} 延迟测试失败: {}", proxy, e.getMessage());
+        }
+        return FAILED;
+    }
+}
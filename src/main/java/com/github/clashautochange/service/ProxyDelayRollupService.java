@@ -0,0 +1,545 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.entity.ProxyDelayHistory;
+import com.github.clashautochange.model.ProxyDelayPoint;
+import com.github.clashautochange.repository.ProxyDelayHistoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 延迟历史汇总服务
+ * 后台定期把 proxy_delay_history 汇总为5分钟的时间桶，再由5分钟汇总合并出1小时和1天的时间桶，
+ * 每个桶保存测试次数、未连通次数、最小/最大/总延迟和延迟直方图。
+ * 图表和统计按时间范围选择分辨率，范围内完整的桶读取汇总，两端不完整的部分和尚未汇总的最新数据读取原始记录。
+ * 每种分辨率的汇总按各自的保留天数删除，细分辨率只删除已经合并到更粗分辨率的桶
+ */
+@Service
+@Slf4j
+public class ProxyDelayRollupService {
+
+    /**
+     * 汇总分辨率
+     */
+    public enum Resolution {
+        FIVE_MINUTES(5, "5m"),
+        HOUR(60, "1h"),
+        DAY(1440, "1d");
+
+        private final int minutes;
+        private final String label;
+
+        Resolution(int minutes, String label) {
+            this.minutes = minutes;
+            this.label = label;
+        }
+
+        public int getMinutes() {
+            return minutes;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * 时间所在桶的开始时间
+         */
+        LocalDateTime truncate(LocalDateTime time) {
+            switch (this) {
+                case DAY:
+                    return time.truncatedTo(ChronoUnit.DAYS);
+                case HOUR:
+                    return time.truncatedTo(ChronoUnit.HOURS);
+                default:
+                    LocalDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+                    return minute.minusMinutes(minute.getMinute() % minutes);
+            }
+        }
+
+        /**
+         * 不早于指定时间的第一个桶的开始时间
+         */
+        LocalDateTime ceil(LocalDateTime time) {
+            LocalDateTime start = truncate(time);
+            return start.equals(time) ? start : start.plusMinutes(minutes);
+        }
+    }
+
+    private static final String RAW_SQL = "SELECT group_id, proxy_id, delay, test_time FROM proxy_delay_history "
+            + "WHERE test_time >= ? AND test_time < ?";
+
+    private static final String ROLLUP_COLUMNS = "SELECT group_id, proxy_id, bucket_start, sample_count, loss_count, "
+            + "min_delay, max_delay, sum_delay, sketch FROM proxy_delay_rollup ";
+
+    private static final String ROLLUP_SQL = ROLLUP_COLUMNS
+            + "WHERE resolution = ? AND bucket_start >= ? AND bucket_start < ?";
+
+    private static final String GROUP_ROLLUP_SQL = ROLLUP_COLUMNS
+            + "WHERE resolution = ? AND group_id = ? AND bucket_start >= ? AND bucket_start < ?";
+
+    private static final String NODE_ROLLUP_SQL = ROLLUP_COLUMNS
+            + "WHERE resolution = ? AND group_id = ? AND proxy_id = ? AND bucket_start >= ? AND bucket_start < ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM proxy_delay_rollup WHERE resolution = ? AND bucket_start >= ? AND bucket_start < ?";
+
+    private static final String INSERT_SQL = "INSERT INTO proxy_delay_rollup (resolution, group_id, proxy_id, "
+            + "bucket_start, sample_count, loss_count, min_delay, max_delay, sum_delay, sketch) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String LAST_BUCKET_SQL = "SELECT MAX(bucket_start) FROM proxy_delay_rollup WHERE resolution = ?";
+    private static final String FIRST_BUCKET_SQL = "SELECT MIN(bucket_start) FROM proxy_delay_rollup WHERE resolution = ?";
+    private static final String FIRST_RAW_SQL = "SELECT MIN(test_time) FROM proxy_delay_history";
+
+    // 中国时区常量
+    private static final ZoneId CHINA_ZONE = ZoneId.of("Asia/Shanghai");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProxyDelayHistoryRepository proxyDelayHistoryRepository;
+    private final ProxyNameRegistryService proxyNameRegistryService;
+    private final ProxyHistorySchemaMigrator schemaMigrator;
+
+    /**
+     * 汇总滞后的时间，等待同一时间桶内的监控结果全部写入
+     */
+    @Value("${proxy.history.rollup.delay:120000}")
+    private long rollupDelay;
+
+    /**
+     * 每次汇总最多处理的时间窗口数，首次启动时分多次补齐历史数据
+     */
+    @Value("${proxy.history.rollup.max-windows-per-run:24}")
+    private int maxWindowsPerRun;
+
+    /**
+     * 图表每个节点最多的数据点数，超过时改用更粗的分辨率
+     */
+    @Value("${proxy.history.chart-max-points:2500}")
+    private int chartMaxPoints;
+
+    @Value("${proxy.monitor.check-interval:60000}")
+    private long monitorInterval;
+
+    /**
+     * 各分辨率汇总保留的天数，0表示不删除；5分钟汇总默认与原始记录保留相同的天数
+     */
+    @Value("${proxy.history.rollup.retention-days.5m:${proxy.history.retention-days:30}}")
+    private int fiveMinuteRetentionDays;
+
+    @Value("${proxy.history.rollup.retention-days.1h:180}")
+    private int hourRetentionDays;
+
+    @Value("${proxy.history.rollup.retention-days.1d:730}")
+    private int dayRetentionDays;
+
+    /**
+     * 各分辨率已完成汇总的时间，此前的时间桶都已写入
+     */
+    private final Map<Resolution, LocalDateTime> watermarks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProxyDelayRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   ProxyDelayHistoryRepository proxyDelayHistoryRepository,
+                                   ProxyNameRegistryService proxyNameRegistryService,
+                                   ProxyHistorySchemaMigrator schemaMigrator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.proxyDelayHistoryRepository = proxyDelayHistoryRepository;
+        this.proxyNameRegistryService = proxyNameRegistryService;
+        this.schemaMigrator = schemaMigrator;
+    }
+
+    /**
+     * 定时汇总新的延迟记录
+     */
+    @Scheduled(fixedDelayString = "${proxy.history.rollup.interval:300000}")
+    public void rollup() {
+        if (!schemaMigrator.isMigrated()) {
+            // 旧记录还没有填充ID，现在汇总会把它们写入ID为0的桶并越过这段时间
+            return;
+        }
+        try {
+            LocalDateTime until = Resolution.FIVE_MINUTES.truncate(
+                    LocalDateTime.now(CHINA_ZONE).minus(Duration.ofMillis(rollupDelay)));
+            rollUp(Resolution.FIVE_MINUTES, null, until, Duration.ofHours(1));
+            LocalDateTime fiveMinutes = completedUntil(Resolution.FIVE_MINUTES);
+            if (fiveMinutes != null) {
+                rollUp(Resolution.HOUR, Resolution.FIVE_MINUTES, Resolution.HOUR.truncate(fiveMinutes),
+                        Duration.ofDays(1));
+            }
+            LocalDateTime hour = completedUntil(Resolution.HOUR);
+            if (hour != null) {
+                rollUp(Resolution.DAY, Resolution.HOUR, Resolution.DAY.truncate(hour), Duration.ofDays(7));
+            }
+
+            LocalDateTime now = LocalDateTime.now(CHINA_ZONE);
+            deleteExpired(Resolution.FIVE_MINUTES, Resolution.HOUR, now);
+            deleteExpired(Resolution.HOUR, Resolution.DAY, now);
+            deleteExpired(Resolution.DAY, null, now);
+        } catch (Exception e) {
+            log.error("汇总延迟历史失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 选择图表的分辨率，原始记录的点数不超过上限时不使用汇总；
+     * 开始时间早于某个分辨率的保留期时改用更粗的分辨率
+     *
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @return 分辨率，使用原始记录时为null
+     */
+    public Resolution chooseResolution(LocalDateTime startTime, LocalDateTime endTime) {
+        long minutes = Duration.between(startTime, endTime).toMinutes();
+        if (minutes / Math.max(1, monitorInterval / 60000) <= chartMaxPoints) {
+            return null;
+        }
+        for (Resolution resolution : Resolution.values()) {
+            if (minutes / resolution.minutes <= chartMaxPoints && !isExpired(resolution, startTime)) {
+                return resolution;
+            }
+        }
+        return Resolution.DAY;
+    }
+
+    /**
+     * 按分辨率获取图表数据，每个时间桶为一条记录，延迟为桶内成功测试的平均延迟，全部未连通时为-1
+     *
+     * @param groupName 代理组名称
+     * @param proxyName 代理节点名称，为null时获取整个代理组
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param resolution 分辨率
+     * @return 延迟历史记录
+     */
+    public List<ProxyDelayHistory> getChartHistories(String groupName, String proxyName, LocalDateTime startTime,
+                                                     LocalDateTime endTime, Resolution resolution) {
+        List<ProxyDelayHistory> histories = new ArrayList<>();
+        getBuckets(groupName, proxyName, startTime, endTime, resolution).forEach((proxyId, buckets) -> {
+            String name = proxyNameRegistryService.getName(proxyId);
+            buckets.forEach((bucketStart, bucket) ->
+                    histories.add(ProxyDelayHistory.create(groupName, name, bucket.average(), bucketStart)));
+        });
+        return histories;
+    }
+
+    /**
+     * 按代理节点计算连通率、延迟统计和分位数，完整的小时读取汇总
+     *
+     * @param groupName 代理组名称
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @return 代理节点名称和统计信息的映射
+     */
+    public Map<String, Map<String, Object>> getProxyStats(String groupName, LocalDateTime startTime,
+                                                          LocalDateTime endTime) {
+        Map<String, Map<String, Object>> proxyStats = new HashMap<>();
+        getBuckets(groupName, null, startTime, endTime, Resolution.HOUR).forEach((proxyId, buckets) ->
+                proxyStats.put(proxyNameRegistryService.getName(proxyId), bucketStats(buckets.values())));
+        return proxyStats;
+    }
+
+    /**
+     * 合并一个节点的时间桶并计算统计信息
+     *
+     * @param buckets 节点的时间桶
+     * @return 统计信息
+     */
+    static Map<String, Object> bucketStats(Collection<DelayBucket> buckets) {
+        DelayBucket total = new DelayBucket();
+        buckets.forEach(total::merge);
+
+        long totalCount = total.getCount();
+        long connectedCount = total.getConnected();
+        double connectivityRate = totalCount > 0 ? (double) connectedCount / totalCount * 100 : 0;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connectivityRate", Math.round(connectivityRate));
+        stats.put("totalTests", totalCount);
+        stats.put("connectedTests", connectedCount);
+        if (connectedCount > 0) {
+            stats.put("avgDelay", (double) total.getSum() / connectedCount);
+            stats.put("minDelay", total.getMin());
+            stats.put("maxDelay", total.getMax());
+            stats.put("p50Delay", total.getSketch().quantile(0.5));
+            stats.put("p95Delay", total.getSketch().quantile(0.95));
+        } else {
+            stats.put("avgDelay", null);
+            stats.put("minDelay", null);
+            stats.put("maxDelay", null);
+            stats.put("p50Delay", null);
+            stats.put("p95Delay", null);
+        }
+        return stats;
+    }
+
+    /**
+     * 获取时间范围内各节点按分辨率划分的时间桶
+     * 范围内完整且已汇总的桶读取汇总表，开头不完整的桶和尚未汇总的部分由原始记录现场汇总
+     */
+    private Map<Integer, TreeMap<LocalDateTime, DelayBucket>> getBuckets(String groupName, String proxyName,
+                                                                         LocalDateTime startTime,
+                                                                         LocalDateTime endTime,
+                                                                         Resolution resolution) {
+        Map<Integer, TreeMap<LocalDateTime, DelayBucket>> result = new HashMap<>();
+        Optional<Integer> groupId = proxyNameRegistryService.findId(groupName);
+        Optional<Integer> proxyId = proxyName != null ? proxyNameRegistryService.findId(proxyName) : Optional.empty();
+        if (groupId.isEmpty() || (proxyName != null && proxyId.isEmpty())) {
+            return result;
+        }
+
+        LocalDateTime rollupStart = resolution.ceil(startTime);
+        LocalDateTime rollupEnd = resolution.truncate(endTime);
+        LocalDateTime completed = completedUntil(resolution);
+        if (completed == null) {
+            rollupEnd = rollupStart;
+        } else if (completed.isBefore(rollupEnd)) {
+            rollupEnd = completed;
+        }
+
+        if (!rollupEnd.isAfter(rollupStart)) {
+            addRaw(result, groupId.get(), proxyId.orElse(null), startTime, endTime, resolution);
+            return result;
+        }
+        if (startTime.isBefore(rollupStart)) {
+            addRaw(result, groupId.get(), proxyId.orElse(null), startTime, rollupStart.minusNanos(1), resolution);
+        }
+        RollupRowHandler handler = (group, proxy, bucketStart, bucket) ->
+                result.computeIfAbsent(proxy, key -> new TreeMap<>()).put(bucketStart, bucket);
+        if (proxyId.isPresent()) {
+            queryRollups(handler, NODE_ROLLUP_SQL, resolution.minutes, groupId.get(), proxyId.get(),
+                    Timestamp.valueOf(rollupStart), Timestamp.valueOf(rollupEnd));
+        } else {
+            queryRollups(handler, GROUP_ROLLUP_SQL, resolution.minutes, groupId.get(),
+                    Timestamp.valueOf(rollupStart), Timestamp.valueOf(rollupEnd));
+        }
+        addRaw(result, groupId.get(), proxyId.orElse(null), rollupEnd, endTime, resolution);
+        return result;
+    }
+
+    /**
+     * 读取原始记录并按分辨率现场汇总，时间范围包含两端
+     */
+    private void addRaw(Map<Integer, TreeMap<LocalDateTime, DelayBucket>> result, Integer groupId, Integer proxyId,
+                        LocalDateTime startTime, LocalDateTime endTime, Resolution resolution) {
+        List<ProxyDelayPoint> points = proxyId != null
+                ? proxyDelayHistoryRepository.findPointsByGroupIdAndProxyIdAndTestTimeBetween(groupId, proxyId,
+                        startTime, endTime)
+                : proxyDelayHistoryRepository.findPointsByGroupIdAndTestTimeBetween(groupId, startTime, endTime);
+        for (ProxyDelayPoint point : points) {
+            result.computeIfAbsent(point.getProxyId(), key -> new TreeMap<>())
+                    .computeIfAbsent(resolution.truncate(point.getTestTime()), key -> new DelayBucket())
+                    .add(point.getDelay());
+        }
+    }
+
+    /**
+     * 汇总一个分辨率在指定时间之前尚未汇总的时间桶
+     *
+     * @param target 目标分辨率
+     * @param source 来源分辨率，为null时从原始记录汇总
+     * @param until 汇总截止时间
+     * @param window 每个事务处理的时间窗口
+     */
+    private void rollUp(Resolution target, Resolution source, LocalDateTime until, Duration window) {
+        LocalDateTime from = completedUntil(target);
+        if (from == null) {
+            from = firstTime(source);
+            if (from == null) {
+                return;
+            }
+            from = target.truncate(from);
+        }
+
+        int windows = 0;
+        while (from.isBefore(until) && windows < maxWindowsPerRun) {
+            LocalDateTime to = from.plus(window);
+            if (to.isAfter(until)) {
+                to = until;
+            }
+            Map<Long, TreeMap<LocalDateTime, DelayBucket>> buckets = source == null
+                    ? aggregateRaw(target, from, to)
+                    : aggregateRollups(target, source, from, to);
+            write(target, from, to, buckets);
+            watermarks.put(target, to);
+            from = to;
+            windows++;
+        }
+        if (windows > 0) {
+            log.debug("{} 汇总完成到 {}", target.label, from);
+        }
+    }
+
+    private Map<Long, TreeMap<LocalDateTime, DelayBucket>> aggregateRaw(Resolution target, LocalDateTime from,
+                                                                        LocalDateTime to) {
+        Map<Long, TreeMap<LocalDateTime, DelayBucket>> buckets = new HashMap<>();
+        jdbcTemplate.query(RAW_SQL, rs -> {
+            buckets.computeIfAbsent(key(rs.getInt(1), rs.getInt(2)), key -> new TreeMap<>())
+                    .computeIfAbsent(target.truncate(rs.getTimestamp(4).toLocalDateTime()), key -> new DelayBucket())
+                    .add(rs.getInt(3));
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return buckets;
+    }
+
+    private Map<Long, TreeMap<LocalDateTime, DelayBucket>> aggregateRollups(Resolution target, Resolution source,
+                                                                            LocalDateTime from, LocalDateTime to) {
+        Map<Long, TreeMap<LocalDateTime, DelayBucket>> buckets = new HashMap<>();
+        queryRollups((group, proxy, bucketStart, bucket) ->
+                        buckets.computeIfAbsent(key(group, proxy), key -> new TreeMap<>())
+                                .computeIfAbsent(target.truncate(bucketStart), key -> new DelayBucket())
+                                .merge(bucket),
+                ROLLUP_SQL, source.minutes, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return buckets;
+    }
+
+    /**
+     * 在一个事务中替换时间窗口内的汇总，重复汇总同一窗口时结果不变
+     */
+    private void write(Resolution target, LocalDateTime from, LocalDateTime to,
+                       Map<Long, TreeMap<LocalDateTime, DelayBucket>> buckets) {
+        List<Object[]> rows = new ArrayList<>();
+        buckets.forEach((key, proxyBuckets) -> proxyBuckets.forEach((bucketStart, bucket) -> rows.add(new Object[]{
+                target.minutes, (int) (key >>> 32), (int) (long) key, Timestamp.valueOf(bucketStart),
+                bucket.getCount(), bucket.getLoss(), bucket.getMin(), bucket.getMax(), bucket.getSum(),
+                bucket.getSketch().toBytes()})));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_SQL, target.minutes, Timestamp.valueOf(from), Timestamp.valueOf(to));
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            }
+        });
+    }
+
+    /**
+     * 删除超过保留天数的汇总，每天一个语句
+     * 细分辨率的桶只在已经合并到更粗分辨率之后删除
+     *
+     * @param resolution 分辨率
+     * @param coarser 由该分辨率合并出的更粗分辨率，没有时为null
+     * @param now 当前时间
+     */
+    private void deleteExpired(Resolution resolution, Resolution coarser, LocalDateTime now) {
+        int days = retentionDays(resolution);
+        if (days <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = resolution.truncate(now.minusDays(days));
+        if (coarser != null) {
+            LocalDateTime merged = completedUntil(coarser);
+            if (merged == null) {
+                return;
+            }
+            if (merged.isBefore(cutoff)) {
+                cutoff = merged;
+            }
+        }
+        LocalDateTime from = firstTime(resolution);
+        if (from == null || !from.isBefore(cutoff)) {
+            return;
+        }
+
+        long deleted = 0;
+        while (from.isBefore(cutoff)) {
+            LocalDateTime to = from.plusDays(1);
+            if (to.isAfter(cutoff)) {
+                to = cutoff;
+            }
+            deleted += jdbcTemplate.update(DELETE_SQL, resolution.minutes, Timestamp.valueOf(from),
+                    Timestamp.valueOf(to));
+            from = to;
+        }
+        log.info("已删除 {} 之前的 {} 汇总: {} 条", cutoff, resolution.label, deleted);
+    }
+
+    private int retentionDays(Resolution resolution) {
+        switch (resolution) {
+            case DAY:
+                return dayRetentionDays;
+            case HOUR:
+                return hourRetentionDays;
+            default:
+                return fiveMinuteRetentionDays;
+        }
+    }
+
+    /**
+     * 时间是否早于分辨率的保留期
+     */
+    private boolean isExpired(Resolution resolution, LocalDateTime time) {
+        int days = retentionDays(resolution);
+        return days > 0 && time.isBefore(LocalDateTime.now(CHINA_ZONE).minusDays(days));
+    }
+
+    /**
+     * 已完成汇总的时间，首次调用时由汇总表中最后一个桶推算
+     *
+     * @return 完成时间，尚未汇总过时为null
+     */
+    private LocalDateTime completedUntil(Resolution resolution) {
+        LocalDateTime watermark = watermarks.get(resolution);
+        if (watermark == null) {
+            Timestamp last = jdbcTemplate.queryForObject(LAST_BUCKET_SQL, Timestamp.class, resolution.minutes);
+            if (last == null) {
+                return null;
+            }
+            watermark = last.toLocalDateTime().plusMinutes(resolution.minutes);
+            watermarks.putIfAbsent(resolution, watermark);
+        }
+        return watermark;
+    }
+
+    /**
+     * 来源数据中最早的时间
+     */
+    private LocalDateTime firstTime(Resolution source) {
+        Timestamp first = source == null
+                ? jdbcTemplate.queryForObject(FIRST_RAW_SQL, Timestamp.class)
+                : jdbcTemplate.queryForObject(FIRST_BUCKET_SQL, Timestamp.class, source.minutes);
+        return first != null ? first.toLocalDateTime() : null;
+    }
+
+    private void queryRollups(RollupRowHandler handler, String sql, Object... args) {
+        jdbcTemplate.query(sql, rs -> {
+            handler.accept(rs.getInt(1), rs.getInt(2), rs.getTimestamp(3).toLocalDateTime(), readBucket(rs));
+        }, args);
+    }
+
+    private static DelayBucket readBucket(ResultSet rs) throws SQLException {
+        return new DelayBucket(rs.getLong(4), rs.getLong(5), rs.getInt(6), rs.getInt(7), rs.getLong(8),
+                DelaySketch.fromBytes(rs.getBytes(9)));
+    }
+
+    private static long key(int groupId, int proxyId) {
+        return ((long) groupId << 32) | (proxyId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 汇总表一行的处理
+     */
+    private interface RollupRowHandler {
+        void accept(int groupId, int proxyId, LocalDateTime bucketStart, DelayBucket bucket);
+    }
+}
@@ -1,12 +1,16 @@
 package com.github.clashautochange.service;
 
+import com.github.clashautochange.config.ProxyGroupConfigChangedEvent;
 import com.github.clashautochange.entity.ProxyGroupConfig;
 import com.github.clashautochange.repository.ProxyGroupConfigRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 策略组配置服务
@@ -15,10 +19,18 @@ import java.util.Optional;
 public class ProxyGroupConfigService {
 
     private final ProxyGroupConfigRepository proxyGroupConfigRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 已启用配置的缓存，自动切换调度每秒读取一次，配置保存或删除后失效
+     */
+    private final AtomicReference<EnabledConfigs> enabledConfigs = new AtomicReference<>(new EnabledConfigs(null));
 
     @Autowired
-    public ProxyGroupConfigService(ProxyGroupConfigRepository proxyGroupConfigRepository) {
+    public ProxyGroupConfigService(ProxyGroupConfigRepository proxyGroupConfigRepository,
+                                   ApplicationEventPublisher eventPublisher) {
         this.proxyGroupConfigRepository = proxyGroupConfigRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -28,7 +40,9 @@ public class ProxyGroupConfigService {
      * @return 保存后的配置
      */
     public ProxyGroupConfig saveConfig(ProxyGroupConfig config) {
-        return proxyGroupConfigRepository.save(config);
+        ProxyGroupConfig saved = proxyGroupConfigRepository.save(config);
+        eventPublisher.publishEvent(new ProxyGroupConfigChangedEvent());
+        return saved;
     }
 
     /**
@@ -42,11 +56,29 @@ public class ProxyGroupConfigService {
 
     /**
      * 获取所有已启用的策略组配置
+     * 返回缓存的只读列表，配置变更后重新查询
      *
      * @return 所有已启用的策略组配置
      */
     public List<ProxyGroupConfig> getAllEnabledConfigs() {
-        return proxyGroupConfigRepository.findByEnabledTrue();
+        EnabledConfigs cached = enabledConfigs.get();
+        if (cached.configs != null) {
+            return cached.configs;
+        }
+        List<ProxyGroupConfig> configs = List.copyOf(proxyGroupConfigRepository.findByEnabledTrue());
+        // 查询期间配置又发生变更时不写入缓存，避免缓存旧的结果
+        enabledConfigs.compareAndSet(cached, new EnabledConfigs(configs));
+        return configs;
+    }
+
+    /**
+     * 配置变更并提交后清除缓存
+     *
+     * @param event 配置变更事件
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProxyGroupConfigChanged(ProxyGroupConfigChangedEvent event) {
+        enabledConfigs.set(new EnabledConfigs(null));
     }
 
     /**
@@ -60,13 +92,15 @@ public class ProxyGroupConfigService {
     }
 
     /**
-     * 根据策略组名称获取配置
+     * 根据控制器和策略组名称获取配置
      *
+     * @param instanceKey 控制器ID，为null或0时为默认 Clash API
      * @param groupName 策略组名称
      * @return 策略组配置
      */
-    public Optional<ProxyGroupConfig> getConfigByGroupName(String groupName) {
-        return proxyGroupConfigRepository.findByGroupName(groupName);
+    public Optional<ProxyGroupConfig> getConfig(Long instanceKey, String groupName) {
+        return proxyGroupConfigRepository.findByInstanceKeyAndGroupName(
+                instanceKey != null ? instanceKey : 0L, groupName);
     }
 
     /**
@@ -76,5 +110,18 @@ public class ProxyGroupConfigService {
      */
     public void deleteConfig(Long id) {
         proxyGroupConfigRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProxyGroupConfigChangedEvent());
+    }
+
+    /**
+     * 已启用配置的缓存，configs 为null表示已失效；每次失效使用新的实例，加载时据此判断期间是否发生过变更
+     */
+    private static final class EnabledConfigs {
+
+        private final List<ProxyGroupConfig> configs;
+
+        private EnabledConfigs(List<ProxyGroupConfig> configs) {
+            this.configs = configs;
+        }
     }
-} 
\ No newline at end of file
+}
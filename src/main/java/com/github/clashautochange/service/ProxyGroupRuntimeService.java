@@ -0,0 +1,107 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.entity.ProxyGroupConfig;
+import com.github.clashautochange.model.ProxyGroupRuntimeState;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 策略组运行时状态服务
+ * 自动切换检查只读写内存中的运行时状态，不在检查过程中同步写数据库；
+ * 超时次数的变更定期批量写回 proxy_group_config 表，只更新 current_timeout_count 列，
+ * 不会覆盖用户在界面上对同一行配置的修改
+ */
+@Service
+@Slf4j
+public class ProxyGroupRuntimeService {
+
+    private static final String UPDATE_TIMEOUT_COUNT_SQL =
+            "UPDATE proxy_group_config SET current_timeout_count = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, ProxyGroupRuntimeState> states = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProxyGroupRuntimeService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 获取策略组的运行时状态，首次获取时从配置中恢复上次写回的超时次数
+     *
+     * @param config 策略组配置
+     * @return 运行时状态
+     */
+    public ProxyGroupRuntimeState getState(ProxyGroupConfig config) {
+        return states.computeIfAbsent(config.getId(), id -> new ProxyGroupRuntimeState(id, config.getGroupName(),
+                config.getCurrentTimeoutCount() != null ? config.getCurrentTimeoutCount() : 0));
+    }
+
+    /**
+     * 移除不再检查的策略组的状态，尚未写回的状态保留到写回之后
+     *
+     * @param activeIds 仍在检查的策略组配置ID
+     */
+    public void retainAll(Set<Long> activeIds) {
+        states.entrySet().removeIf(entry -> !activeIds.contains(entry.getKey()) && !entry.getValue().isDirty());
+    }
+
+    /**
+     * 获取所有策略组的运行时状态
+     *
+     * @return 运行时状态列表
+     */
+    public List<Map<String, Object>> getStates() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ProxyGroupRuntimeState state : states.values()) {
+            result.add(state.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 定期将变更的超时次数批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${clash.auto-change.state-flush-interval:10000}")
+    public void flush() {
+        List<ProxyGroupRuntimeState> flushed = new ArrayList<>();
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (ProxyGroupRuntimeState state : states.values()) {
+            int timeoutCount = state.pollDirtyTimeoutCount();
+            if (timeoutCount >= 0) {
+                flushed.add(state);
+                batchArgs.add(new Object[]{timeoutCount, state.getConfigId()});
+            }
+        }
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_TIMEOUT_COUNT_SQL, batchArgs);
+            log.debug("写回 {} 个策略组的运行时状态", batchArgs.size());
+        } catch (Exception e) {
+            log.error("写回策略组运行时状态失败: {}", e.getMessage());
+            flushed.forEach(ProxyGroupRuntimeState::markDirty);
+        }
+    }
+
+    /**
+     * 应用关闭前写回尚未持久化的状态
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
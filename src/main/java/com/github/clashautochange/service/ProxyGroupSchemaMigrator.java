@@ -0,0 +1,82 @@
+package com.github.clashautochange.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 策略组配置表结构迁移
+ * 旧版本的 proxy_group_config 和 monitored_proxy_group 在 group_name 上有单列唯一索引，
+ * 多控制器版本改为 (instance_key, group_name) 唯一。Hibernate 更新表结构时不会删除旧索引，
+ * 这里在启动时填充 instance_key、删除包含 group_name 的旧唯一索引，并确保新的唯一索引存在；
+ * 外键 instance_id 使用实体上单独声明的索引，删除旧索引不影响外键；
+ * 依赖 EntityManagerFactory 保证在表结构更新之后执行
+ */
+@Component
+@Slf4j
+public class ProxyGroupSchemaMigrator {
+
+    private static final List<String> TABLES = List.of("proxy_group_config", "monitored_proxy_group");
+
+    private static final String TABLE_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.tables "
+            + "WHERE table_schema = DATABASE() AND table_name = ?";
+
+    private static final String LEGACY_INDEXES_SQL = "SELECT DISTINCT index_name FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = ? AND non_unique = 0 "
+            + "AND column_name = 'group_name' AND index_name <> ?";
+
+    private static final String INDEX_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ProxyGroupSchemaMigrator(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 迁移两张配置表，每一步都可以重复执行
+     */
+    @PostConstruct
+    public void migrate() {
+        for (String table : TABLES) {
+            try {
+                migrate(table);
+            } catch (Exception e) {
+                log.error("迁移 {} 的唯一索引失败: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    private void migrate(String table) {
+        Integer exists = jdbcTemplate.queryForObject(TABLE_EXISTS_SQL, Integer.class, table);
+        if (exists == null || exists == 0) {
+            return;
+        }
+        String uniqueKey = "uk_" + table + "_instance_group";
+
+        int filled = jdbcTemplate.update("UPDATE " + table + " SET instance_key = COALESCE(instance_id, 0) "
+                + "WHERE instance_key IS NULL OR instance_key <> COALESCE(instance_id, 0)");
+        if (filled > 0) {
+            log.info("{}: 已填充 {} 行的 instance_key", table, filled);
+        }
+
+        for (String index : jdbcTemplate.queryForList(LEGACY_INDEXES_SQL, String.class, table, uniqueKey)) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP INDEX `" + index + "`");
+            log.info("{}: 已删除旧的唯一索引 {}", table, index);
+        }
+
+        Integer created = jdbcTemplate.queryForObject(INDEX_EXISTS_SQL, Integer.class, table, uniqueKey);
+        if (created == null || created == 0) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + uniqueKey
+                    + " UNIQUE (instance_key, group_name)");
+            log.info("{}: 已创建唯一索引 {}", table, uniqueKey);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.github.clashautochange.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 延迟历史保留策略
+ * MariaDB/MySQL 上可以把 proxy_delay_history 按 test_time 划分为每天一个分区，过期时直接删除整个分区，
+ * 不逐行删除也不长时间锁表。分区键必须包含在主键中，转换需要用一条 ALTER 把主键改为 (id, test_time)
+ * 并重建整张表，重建期间阻塞写入，因此只在 proxy.history.partition.enabled 开启时执行，并且在启动完成后由后台线程执行。
+ * 已经分区的表总是按分区维护；未分区的表和其他数据库（如基准测试使用的 H2）按ID分段删除过期记录，每段单独提交
+ */
+@Service
+@Slf4j
+public class ProxyHistoryRetentionService {
+
+    private static final String TABLE = "proxy_delay_history";
+
+    private static final String PARTITIONS_SQL = "SELECT partition_name FROM information_schema.partitions "
+            + "WHERE table_schema = DATABASE() AND table_name = '" + TABLE + "' AND partition_name IS NOT NULL";
+
+    private static final String PARTITION_SQL = "ALTER TABLE " + TABLE
+            + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, test_time) PARTITION BY RANGE COLUMNS(test_time) (";
+
+    private static final String TABLE_ROWS_SQL = "SELECT table_rows FROM information_schema.tables "
+            + "WHERE table_schema = DATABASE() AND table_name = '" + TABLE + "'";
+
+    private static final String FIRST_TIME_SQL = "SELECT MIN(test_time) FROM " + TABLE;
+
+    private static final String EXPIRED_IDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM " + TABLE
+            + " WHERE test_time < ?";
+
+    private static final String DELETE_SEGMENT_SQL = "DELETE FROM " + TABLE
+            + " WHERE id >= ? AND id < ? AND test_time < ?";
+
+    private static final String MAX_PARTITION = "pmax";
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    // 中国时区常量
+    private static final ZoneId CHINA_ZONE = ZoneId.of("Asia/Shanghai");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 延迟历史保留的天数
+     */
+    @Value("${proxy.history.retention-days:30}")
+    private int retentionDays;
+
+    /**
+     * 是否把未分区的 MariaDB/MySQL 表转换为按天分区，转换会重建整张表
+     */
+    @Value("${proxy.history.partition.enabled:false}")
+    private boolean partitionEnabled;
+
+    /**
+     * 提前创建的分区天数
+     */
+    @Value("${proxy.history.partition.precreate-days:3}")
+    private int precreateDays;
+
+    /**
+     * 不使用分区时每段删除的ID范围
+     */
+    @Value("${proxy.history.retention.delete-batch-size:10000}")
+    private int deleteBatchSize;
+
+    private final ProxyHistorySchemaMigrator schemaMigrator;
+
+    private volatile boolean partitioned;
+
+    @Autowired
+    public ProxyHistoryRetentionService(JdbcTemplate jdbcTemplate, ProxyHistorySchemaMigrator schemaMigrator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schemaMigrator = schemaMigrator;
+    }
+
+    /**
+     * 启动完成后在后台线程中检查分区，转换完成前过期记录按ID分段删除
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        Thread thread = new Thread(this::initPartitions, "history-partition");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 已分区的表继续按分区维护；开启分区时未分区的 MariaDB/MySQL 表转换为分区表，只执行一次
+     * 等名称列迁移完成后再调整主键
+     */
+    private void initPartitions() {
+        try {
+            schemaMigrator.whenMigrated().join();
+            if (!supportsPartitioning()) {
+                log.info("数据库不支持分区，过期记录按ID分段删除");
+                return;
+            }
+            if (getPartitionDays().isEmpty()) {
+                if (!partitionEnabled) {
+                    log.info("延迟历史未分区，过期记录按ID分段删除");
+                    return;
+                }
+                createPartitions();
+            }
+            partitioned = true;
+            ensurePartitions();
+        } catch (Exception e) {
+            log.error("延迟历史分区失败，过期记录改为按ID分段删除: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定时任务：清理超过保留天数的历史记录，分区表同时创建之后几天的分区
+     */
+    @Scheduled(cron = "${proxy.history.retention.cron:0 5 0 * * ?}")
+    public void applyRetention() {
+        LocalDateTime cutoff = LocalDateTime.now(CHINA_ZONE).minusDays(retentionDays);
+        try {
+            if (partitioned) {
+                ensurePartitions();
+                dropExpiredPartitions(cutoff);
+            } else {
+                deleteExpiredSegments(cutoff);
+            }
+        } catch (Exception e) {
+            log.error("清理延迟历史失败: {}", e.getMessage());
+        }
+    }
+
+    private boolean supportsPartitioning() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return product != null && (product.contains("MariaDB") || product.contains("MySQL"));
+    }
+
+    /**
+     * 用一条 ALTER 修改主键并把现有表转换为分区表，表只重建一次
+     * 第一个分区从保留期的第一天开始，更早的记录落在第一个分区中，在下一次清理时删除
+     */
+    private void createPartitions() {
+        LocalDate today = LocalDate.now(CHINA_ZONE);
+        LocalDate firstDay = today.minusDays(retentionDays);
+        Timestamp first = jdbcTemplate.queryForObject(FIRST_TIME_SQL, Timestamp.class);
+        if (first == null || first.toLocalDateTime().toLocalDate().isAfter(firstDay)) {
+            firstDay = first != null ? first.toLocalDateTime().toLocalDate() : today;
+        }
+        if (firstDay.isAfter(today)) {
+            firstDay = today;
+        }
+
+        Long rows = jdbcTemplate.queryForObject(TABLE_ROWS_SQL, Long.class);
+        log.info("开始把延迟历史转换为按天分区: 从 {} 开始，重建约 {} 行，期间写入会被阻塞", firstDay, rows);
+        long start = System.currentTimeMillis();
+        jdbcTemplate.execute(PARTITION_SQL + partitionDefinitions(firstDay, today.plusDays(precreateDays)) + ")");
+        log.info("延迟历史分区完成，耗时 {}ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 创建到之后几天为止的分区，从 pmax 中拆分出来；pmax 正常为空，拆分只修改表定义
+     */
+    private void ensurePartitions() {
+        TreeMap<LocalDate, String> days = getPartitionDays();
+        LocalDate today = LocalDate.now(CHINA_ZONE);
+        LocalDate from = days.isEmpty() ? today : days.lastKey().plusDays(1);
+        if (from.isBefore(today)) {
+            from = today;
+        }
+        LocalDate to = today.plusDays(precreateDays);
+        if (from.isAfter(to)) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+                + partitionDefinitions(from, to) + ")");
+        log.info("已创建延迟历史分区: {} 至 {}", from, to);
+    }
+
+    /**
+     * 删除所有记录都早于截止时间的分区
+     */
+    private void dropExpiredPartitions(LocalDateTime cutoff) {
+        List<String> expired = new ArrayList<>();
+        getPartitionDays().forEach((day, name) -> {
+            if (!day.plusDays(1).atStartOfDay().isAfter(cutoff)) {
+                expired.add(name);
+            }
+        });
+        if (expired.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + String.join(", ", expired));
+        log.info("已删除过期的延迟历史分区: {}", expired);
+    }
+
+    /**
+     * 按ID范围分段删除过期记录，每段一个语句单独提交，避免一次删除大量记录
+     * 记录按测试时间顺序写入，过期记录的ID集中在一个连续范围内
+     */
+    private void deleteExpiredSegments(LocalDateTime cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        Map<String, Object> range = jdbcTemplate.queryForMap(EXPIRED_IDS_SQL, before);
+        Number minId = (Number) range.get("min_id");
+        Number maxId = (Number) range.get("max_id");
+        if (minId == null || maxId == null) {
+            return;
+        }
+        long deleted = 0;
+        for (long from = minId.longValue(); from <= maxId.longValue(); from += deleteBatchSize) {
+            deleted += jdbcTemplate.update(DELETE_SEGMENT_SQL, from, from + deleteBatchSize, before);
+        }
+        log.info("已删除 {} 之前的延迟历史: {} 条", cutoff, deleted);
+    }
+
+    /**
+     * 现有的按天分区，不包含 pmax
+     */
+    private TreeMap<LocalDate, String> getPartitionDays() {
+        TreeMap<LocalDate, String> days = new TreeMap<>();
+        for (String name : jdbcTemplate.queryForList(PARTITIONS_SQL, String.class)) {
+            if (!MAX_PARTITION.equals(name)) {
+                days.put(LocalDate.parse(name, PARTITION_NAME), name);
+            }
+        }
+        return days;
+    }
+
+    /**
+     * 生成从 from 到 to（包含）每天一个分区的定义，最后加上 pmax
+     */
+    private static String partitionDefinitions(LocalDate from, LocalDate to) {
+        StringBuilder definitions = new StringBuilder();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            definitions.append("PARTITION ").append(day.format(PARTITION_NAME))
+                    .append(" VALUES LESS THAN ('").append(day.plusDays(1)).append(" 00:00:00'), ");
+        }
+        return definitions.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN (MAXVALUE)")
+                .toString();
+    }
+}
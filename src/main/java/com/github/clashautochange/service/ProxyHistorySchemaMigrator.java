@@ -0,0 +1,174 @@
+package com.github.clashautochange.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 延迟历史表结构迁移
+ * 旧版本的 proxy_delay_history 每行保存代理组和节点名称字符串，新版本改为 proxy_name_registry 中的ID。
+ * Hibernate 更新表结构时只会新增 group_id 和 proxy_id 列（旧记录为0），启动时只给名称列加上默认值，
+ * 让新记录可以不写名称；为旧记录填充ID和删除名称列在启动完成后由后台线程按ID分段执行，不阻塞启动。
+ * 依赖 EntityManagerFactory 保证在表结构更新之后、定时任务开始写入之前执行
+ */
+@Component
+@Slf4j
+public class ProxyHistorySchemaMigrator {
+
+    private static final String LEGACY_COLUMN_SQL = "SELECT COUNT(*) FROM information_schema.columns "
+            + "WHERE table_schema = DATABASE() AND table_name = 'proxy_delay_history' AND column_name = 'group_name'";
+
+    /**
+     * 修改默认值只修改表定义，不重建表
+     */
+    private static final String LEGACY_DEFAULTS_SQL = "ALTER TABLE proxy_delay_history "
+            + "ALTER COLUMN group_name SET DEFAULT '', ALTER COLUMN proxy_name SET DEFAULT ''";
+
+    private static final String PENDING = "(group_id = 0 OR group_id IS NULL)";
+
+    private static final String LEGACY_NAMES_SQL = "SELECT DISTINCT group_name FROM proxy_delay_history WHERE "
+            + PENDING + " UNION SELECT DISTINCT proxy_name FROM proxy_delay_history WHERE " + PENDING;
+
+    private static final String PENDING_IDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id "
+            + "FROM proxy_delay_history WHERE " + PENDING;
+
+    private static final String FILL_RANGE_SQL = "UPDATE proxy_delay_history h "
+            + "JOIN proxy_name_registry g ON g.name = h.group_name "
+            + "JOIN proxy_name_registry p ON p.name = h.proxy_name "
+            + "SET h.group_id = g.id, h.proxy_id = p.id "
+            + "WHERE h.id >= ? AND h.id < ? AND (h.group_id = 0 OR h.group_id IS NULL)";
+
+    private static final String LEGACY_PAIRS_SQL = "SELECT DISTINCT group_name, proxy_name FROM proxy_delay_history "
+            + "WHERE " + PENDING;
+
+    private static final String FILL_PAIR_SQL = "UPDATE proxy_delay_history SET group_id = ?, proxy_id = ? "
+            + "WHERE " + PENDING + " AND group_name = ? AND proxy_name = ?";
+
+    private static final String DROP_LEGACY_COLUMNS_SQL =
+            "ALTER TABLE proxy_delay_history DROP COLUMN group_name, DROP COLUMN proxy_name";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProxyNameRegistryService proxyNameRegistryService;
+
+    /**
+     * 每次 UPDATE 处理的ID范围
+     */
+    @Value("${proxy.history.migration.batch-size:10000}")
+    private int batchSize;
+
+    /**
+     * 旧记录全部有ID后完成；没有需要迁移的记录时启动时即完成，迁移失败时不完成
+     */
+    private final CompletableFuture<Void> migration = new CompletableFuture<>();
+
+    private boolean pending;
+
+    @Autowired
+    public ProxyHistorySchemaMigrator(JdbcTemplate jdbcTemplate, ProxyNameRegistryService proxyNameRegistryService,
+                                      EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.proxyNameRegistryService = proxyNameRegistryService;
+    }
+
+    /**
+     * 检查是否有旧的名称列，有时给名称列加上默认值，新记录只写ID
+     */
+    @PostConstruct
+    public void prepare() {
+        try {
+            Integer legacy = jdbcTemplate.queryForObject(LEGACY_COLUMN_SQL, Integer.class);
+            if (legacy == null || legacy == 0) {
+                migration.complete(null);
+                return;
+            }
+            jdbcTemplate.execute(LEGACY_DEFAULTS_SQL);
+            pending = true;
+        } catch (Exception e) {
+            log.error("检查延迟历史表结构失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动完成后在后台线程中迁移旧记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        if (!pending) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "history-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 旧记录是否都已经填充ID，完成前旧记录在按ID查询和汇总时不可见
+     */
+    public boolean isMigrated() {
+        return migration.isDone() && !migration.isCompletedExceptionally();
+    }
+
+    /**
+     * 旧记录都已经填充ID时完成
+     */
+    public CompletableFuture<Void> whenMigrated() {
+        return migration;
+    }
+
+    /**
+     * 把旧记录中的名称转换为ID，完成后删除名称列
+     * 先登记所有名称，再按ID范围用一条关联字典表的 UPDATE 填充，每段单独提交；
+     * 中途中断时下次启动只处理尚未填充ID的记录
+     */
+    private void migrate() {
+        try {
+            log.info("开始迁移延迟历史：名称列转换为字典ID");
+            long start = System.currentTimeMillis();
+            List<String> names = jdbcTemplate.queryForList(LEGACY_NAMES_SQL, String.class);
+            names.forEach(proxyNameRegistryService::intern);
+
+            long rows = 0;
+            Map<String, Object> range = jdbcTemplate.queryForMap(PENDING_IDS_SQL);
+            Number minId = (Number) range.get("min_id");
+            Number maxId = (Number) range.get("max_id");
+            if (minId != null && maxId != null) {
+                for (long from = minId.longValue(); from <= maxId.longValue(); from += batchSize) {
+                    rows += jdbcTemplate.update(FILL_RANGE_SQL, from, from + batchSize);
+                }
+            }
+            rows += fillRemainingPairs();
+
+            jdbcTemplate.execute(DROP_LEGACY_COLUMNS_SQL);
+            log.info("延迟历史迁移完成: {} 个名称, {} 条记录, 耗时 {}ms", names.size(), rows,
+                    System.currentTimeMillis() - start);
+            migration.complete(null);
+        } catch (Exception e) {
+            log.error("迁移延迟历史失败，下次启动时继续: {}", e.getMessage());
+            migration.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 字典表按二进制比较名称，只有大小写等不同的旧名称去重后可能没有登记，这些记录逐个组合填充
+     */
+    private long fillRemainingPairs() {
+        long rows = 0;
+        for (Map<String, Object> pair : jdbcTemplate.queryForList(LEGACY_PAIRS_SQL)) {
+            String groupName = (String) pair.get("group_name");
+            String proxyName = (String) pair.get("proxy_name");
+            rows += jdbcTemplate.update(FILL_PAIR_SQL, proxyNameRegistryService.intern(groupName),
+                    proxyNameRegistryService.intern(proxyName), groupName, proxyName);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ClashEndpoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 节点延迟统计服务
+ * 为每个端点上的每个节点保存最近N次探测结果，计算EWMA、P50/P95、失败率和抖动，
+ * 切换节点时按综合得分选择，避免单次偶然的低延迟胜过持续稳定的节点
+ */
+@Service
+@Slf4j
+public class ProxyLatencyStatsService {
+
+    @Value("${clash.latency-stats.window-size:20}")
+    private int windowSize;
+
+    @Value("${clash.latency-stats.ewma-alpha:0.3}")
+    private double ewmaAlpha;
+
+    @Value("${clash.latency-stats.score.ewma-weight:0.6}")
+    private double ewmaWeight;
+
+    @Value("${clash.latency-stats.score.p95-weight:0.4}")
+    private double p95Weight;
+
+    @Value("${clash.latency-stats.score.jitter-weight:0.5}")
+    private double jitterWeight;
+
+    /**
+     * 窗口内全部失败时增加的分数（毫秒）
+     */
+    @Value("${clash.latency-stats.score.loss-penalty:1000}")
+    private double lossPenalty;
+
+    /**
+     * 超过该时长没有新结果的节点统计会被清理
+     */
+    @Value("${clash.latency-stats.idle-expiry:3600000}")
+    private long idleExpiry;
+
+    /**
+     * 端点基础URL -> 节点名称 -> 滑动窗口
+     */
+    private final Map<String, Map<String, LatencyWindow>> windows = new ConcurrentHashMap<>();
+
+    /**
+     * 端点基础URL|策略组 -> 在策略组测试中出现过的节点
+     * 策略组测试只返回成功的节点，据此把缺席的节点记为失败
+     */
+    private final Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
+
+    /**
+     * 记录单个节点的探测结果
+     *
+     * @param endpoint Clash API端点
+     * @param proxyName 节点名称
+     * @param delay 延迟（毫秒），失败时为null
+     */
+    public void record(ClashEndpoint endpoint, String proxyName, Integer delay) {
+        window(endpoint.getBaseUrl(), proxyName).record(delay != null ? delay : LatencyWindow.LOST,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次策略组测试的结果
+     *
+     * @param endpoint Clash API端点
+     * @param groupName 策略组名称
+     * @param delays 成功节点和延迟的映射
+     */
+    public void recordGroup(ClashEndpoint endpoint, String groupName, Map<String, Integer> delays) {
+        String baseUrl = endpoint.getBaseUrl();
+        long now = System.currentTimeMillis();
+        Set<String> members = groupMembers.computeIfAbsent(baseUrl + "|" + groupName,
+                key -> ConcurrentHashMap.newKeySet());
+        for (String proxy : members) {
+            if (!delays.containsKey(proxy)) {
+                window(baseUrl, proxy).record(LatencyWindow.LOST, now);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : delays.entrySet()) {
+            window(baseUrl, entry.getKey()).record(entry.getValue(), now);
+        }
+        members.addAll(delays.keySet());
+    }
+
+    /**
+     * 计算节点得分，越低越好
+     *
+     * @param endpoint Clash API端点
+     * @param proxyName 节点名称
+     * @param fallbackDelay 没有统计数据时使用的延迟
+     * @return 得分
+     */
+    public double score(ClashEndpoint endpoint, String proxyName, int fallbackDelay) {
+        Map<String, LatencyWindow> proxies = windows.get(endpoint.getBaseUrl());
+        LatencyWindow window = proxies != null ? proxies.get(proxyName) : null;
+        if (window == null) {
+            return fallbackDelay;
+        }
+        return score(window, fallbackDelay);
+    }
+
+    /**
+     * 按配置的权重计算滑动窗口的得分，窗口内没有成功结果时为回退延迟加失败惩罚
+     */
+    double score(LatencyWindow window, int fallbackDelay) {
+        double score = window.score(ewmaWeight, p95Weight, jitterWeight, lossPenalty);
+        return score == Double.MAX_VALUE ? fallbackDelay + lossPenalty : score;
+    }
+
+    /**
+     * 按配置的窗口大小创建新的滑动窗口
+     */
+    LatencyWindow newWindow() {
+        return new LatencyWindow(windowSize, ewmaAlpha);
+    }
+
+    /**
+     * 获取端点上各节点的统计
+     *
+     * @param endpoint Clash API端点
+     * @return 各节点统计，按得分排序
+     */
+    public List<Map<String, Object>> getStats(ClashEndpoint endpoint) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        Map<String, LatencyWindow> proxies = windows.get(endpoint.getBaseUrl());
+        if (proxies == null) {
+            return result;
+        }
+        proxies.forEach((proxy, window) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            double ewma = window.ewma();
+            double score = window.score(ewmaWeight, p95Weight, jitterWeight, lossPenalty);
+            stats.put("proxy", proxy);
+            stats.put("samples", window.sampleCount());
+            stats.put("ewma", Double.isNaN(ewma) ? null : Math.round(ewma));
+            stats.put("p50", window.percentile(0.5));
+            stats.put("p95", window.percentile(0.95));
+            stats.put("lossRatio", Math.round(window.lossRatio() * 100) / 100.0);
+            stats.put("jitter", Math.round(window.jitter()));
+            stats.put("score", score == Double.MAX_VALUE ? null : Math.round(score));
+            result.add(stats);
+        });
+        result.sort((a, b) -> {
+            Long scoreA = (Long) a.get("score");
+            Long scoreB = (Long) b.get("score");
+            if (scoreA == null || scoreB == null) {
+                return scoreA == null ? (scoreB == null ? 0 : 1) : -1;
+            }
+            return Long.compare(scoreA, scoreB);
+        });
+        return result;
+    }
+
+    /**
+     * 定期清理长时间没有新结果的节点统计
+     */
+    @Scheduled(fixedDelayString = "${clash.latency-stats.idle-expiry:3600000}")
+    public void evictIdle() {
+        long expireBefore = System.currentTimeMillis() - idleExpiry;
+        for (Map<String, LatencyWindow> proxies : windows.values()) {
+            proxies.values().removeIf(window -> window.getLastRecordedAt() < expireBefore);
+        }
+        groupMembers.forEach((key, members) -> {
+            String baseUrl = key.substring(0, key.indexOf('|'));
+            Map<String, LatencyWindow> proxies = windows.get(baseUrl);
+            members.removeIf(proxy -> proxies == null || !proxies.containsKey(proxy));
+        });
+    }
+
+    /**
+     * 获取节点的滑动窗口，已存在时不分配对象
+     */
+    private LatencyWindow window(String baseUrl, String proxyName) {
+        Map<String, LatencyWindow> proxies = windows.get(baseUrl);
+        if (proxies == null) {
+            proxies = windows.computeIfAbsent(baseUrl, key -> new ConcurrentHashMap<>());
+        }
+        LatencyWindow window = proxies.get(proxyName);
+        if (window == null) {
+            window = proxies.computeIfAbsent(proxyName, key -> newWindow());
+        }
+        return window;
+    }
+}
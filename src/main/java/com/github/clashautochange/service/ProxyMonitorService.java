@@ -1,14 +1,20 @@
 package com.github.clashautochange.service;
 
+import com.github.clashautochange.entity.ClashInstance;
 import com.github.clashautochange.entity.MonitoredProxyGroup;
 import com.github.clashautochange.entity.ProxyDelayHistory;
+import com.github.clashautochange.model.ClashEndpoint;
+import com.github.clashautochange.model.ClashProxySnapshot;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,20 +27,44 @@ import java.util.Map;
 public class ProxyMonitorService {
 
     private final ClashApiService clashApiService;
+    private final ClashDelayTestService clashDelayTestService;
+    private final ClashProxySnapshotService clashProxySnapshotService;
+    private final ProxyDelayProbeService proxyDelayProbeService;
     private final MonitoredProxyGroupService monitoredProxyGroupService;
-    private final ProxyDelayHistoryService proxyDelayHistoryService;
+    private final ProxyDelayHistoryIngestService proxyDelayHistoryIngestService;
+    private final ClashInstanceService clashInstanceService;
+    private final ClashFleetExecutor clashFleetExecutor;
+
+    // 中国时区常量
+    private static final ZoneId CHINA_ZONE = ZoneId.of("Asia/Shanghai");
 
     @Value("${proxy.monitor.check-interval:60000}")
     private long checkInterval;
 
+    @Value("${clash.probe.mode:group}")
+    private String probeMode;
+
+    @Value("${clash.delay-cache.monitor-max-age:30000}")
+    private long delayMaxAge;
+
     @Autowired
     public ProxyMonitorService(
             ClashApiService clashApiService,
+            ClashDelayTestService clashDelayTestService,
+            ClashProxySnapshotService clashProxySnapshotService,
+            ProxyDelayProbeService proxyDelayProbeService,
             MonitoredProxyGroupService monitoredProxyGroupService,
-            ProxyDelayHistoryService proxyDelayHistoryService) {
+            ProxyDelayHistoryIngestService proxyDelayHistoryIngestService,
+            ClashInstanceService clashInstanceService,
+            ClashFleetExecutor clashFleetExecutor) {
         this.clashApiService = clashApiService;
+        this.clashDelayTestService = clashDelayTestService;
+        this.clashProxySnapshotService = clashProxySnapshotService;
+        this.proxyDelayProbeService = proxyDelayProbeService;
         this.monitoredProxyGroupService = monitoredProxyGroupService;
-        this.proxyDelayHistoryService = proxyDelayHistoryService;
+        this.proxyDelayHistoryIngestService = proxyDelayHistoryIngestService;
+        this.clashInstanceService = clashInstanceService;
+        this.clashFleetExecutor = clashFleetExecutor;
     }
 
     /**
@@ -51,10 +81,47 @@ public class ProxyMonitorService {
 
         log.debug("开始监控代理组延迟，共 {} 个代理组，检查间隔: {}ms", enabledGroups.size(), checkInterval);
 
-        // 处理每个代理组
+        // 按控制器分组，跳过已禁用的控制器
+        Map<ClashEndpoint, List<MonitoredProxyGroup>> groupsByEndpoint = new LinkedHashMap<>();
         for (MonitoredProxyGroup group : enabledGroups) {
+            ClashInstance instance = group.getInstance();
+            if (instance != null && !Boolean.TRUE.equals(instance.getEnabled())) {
+                continue;
+            }
+            groupsByEndpoint.computeIfAbsent(clashInstanceService.resolveEndpoint(instance), key -> new ArrayList<>())
+                    .add(group);
+        }
+
+        groupsByEndpoint.forEach((endpoint, groups) ->
+                clashFleetExecutor.submit(endpoint, "monitor", () -> monitorController(endpoint, groups)));
+    }
+
+    /**
+     * 监控单个控制器上的所有代理组
+     *
+     * @param endpoint Clash API端点
+     * @param groups 监控代理组列表
+     */
+    private void monitorController(ClashEndpoint endpoint, List<MonitoredProxyGroup> groups) {
+        // Clash API 熔断期间直接跳过本次监控
+        if (!clashApiService.isAvailable(endpoint)) {
+            log.debug("控制器 {} 不可用，跳过本次延迟监控", endpoint.getName());
+            return;
+        }
+
+        // 所有代理组共享一次代理快照
+        ClashProxySnapshot snapshot;
+        try {
+            snapshot = clashProxySnapshotService.getSnapshot(endpoint);
+        } catch (Exception e) {
+            log.error("获取控制器 {} 的代理快照时出错: {}", endpoint.getName(), e.getMessage());
+            return;
+        }
+
+        // 处理每个代理组
+        for (MonitoredProxyGroup group : groups) {
             try {
-                processProxyGroup(group);
+                processProxyGroup(endpoint, group, snapshot);
             } catch (Exception e) {
                 log.error("监控代理组 {} 时出错: {}", group.getGroupName(), e.getMessage());
             }
@@ -64,9 +131,11 @@ public class ProxyMonitorService {
     /**
      * 处理单个代理组
      *
+     * @param endpoint Clash API端点
      * @param group 监控代理组配置
+     * @param snapshot 本次监控的代理快照
      */
-    private void processProxyGroup(MonitoredProxyGroup group) {
+    private void processProxyGroup(ClashEndpoint endpoint, MonitoredProxyGroup group, ClashProxySnapshot snapshot) {
         String groupName = group.getGroupName();
         String testUrl = group.getTestUrl();
         Integer timeout = group.getTimeout();
@@ -75,7 +144,7 @@ public class ProxyMonitorService {
 
         try {
             // 获取代理组中的所有节点
-            List<String> proxies = clashApiService.getGroupProxies(groupName);
+            List<String> proxies = snapshot.getGroupMembers(groupName);
             if (proxies.isEmpty()) {
                 log.warn("代理组 {} 中没有找到代理节点", groupName);
                 return;
@@ -84,14 +153,18 @@ public class ProxyMonitorService {
             log.debug("代理组 {} 中找到 {} 个代理节点", groupName, proxies.size());
 
             // 测试所有节点的延迟
-            Map<String, Integer> delayResults = clashApiService.testGroupDelay(groupName, testUrl, timeout);
+            Map<String, Integer> delayResults = "node".equals(probeMode)
+                    ? proxyDelayProbeService.probe(endpoint, proxies, testUrl, timeout, delayMaxAge, null).join()
+                    : clashDelayTestService.testGroupDelay(endpoint, groupName, testUrl, timeout, delayMaxAge);
             if (delayResults.isEmpty()) {
                 log.warn("代理组 {} 延迟测试结果为空", groupName);
                 return;
             }
 
-            // 保存延迟历史记录
-            List<ProxyDelayHistory> histories = new ArrayList<>();
+            // 保存延迟历史记录，同一次监控的记录使用相同的测试时间，不同控制器的同名代理组分别记录
+            String historyGroupName = ProxyDelayHistoryService.historyGroupName(group.getInstanceKey(), groupName);
+            LocalDateTime testTime = LocalDateTime.now(CHINA_ZONE);
+            List<ProxyDelayHistory> histories = new ArrayList<>(proxies.size());
             for (String proxy : proxies) {
                 Integer delay = delayResults.getOrDefault(proxy, -1); // 默认为-1表示未连通
                 
@@ -101,13 +174,13 @@ public class ProxyMonitorService {
                     log.debug("代理节点: {} 延迟过高 (>4000ms)，记录为离线状态", proxy);
                 }
                 
-                ProxyDelayHistory history = ProxyDelayHistory.create(groupName, proxy, delay);
+                ProxyDelayHistory history = ProxyDelayHistory.create(historyGroupName, proxy, delay, testTime);
                 histories.add(history);
 
                 log.debug("代理节点: {}, 延迟: {}ms", proxy, delay);
             }
 
-            proxyDelayHistoryService.saveAllHistories(histories);
+            proxyDelayHistoryIngestService.ingest(histories);
             log.debug("成功保存代理组 {} 的 {} 条延迟历史记录", groupName, histories.size());
 
         } catch (Exception e) {
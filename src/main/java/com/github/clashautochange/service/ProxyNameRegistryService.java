@@ -0,0 +1,129 @@
+package com.github.clashautochange.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 策略组和节点名称字典服务
+ * 在 proxy_name_registry 表中为每个名称分配一个整数ID，延迟历史只保存ID；
+ * 名称和ID双向缓存在内存中，写入和查询时在边界处转换，常规路径不访问字典表
+ */
+@Service
+@Slf4j
+public class ProxyNameRegistryService {
+
+    private static final String SELECT_ID_SQL = "SELECT id FROM proxy_name_registry WHERE name = ?";
+    private static final String SELECT_NAME_SQL = "SELECT name FROM proxy_name_registry WHERE id = ?";
+    private static final String INSERT_SQL = "INSERT INTO proxy_name_registry (name) VALUES (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProxyNameRegistryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 获取名称的ID，名称不存在时分配新的ID
+     *
+     * @param name 策略组或节点名称
+     * @return ID
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            Optional<Integer> existing = selectId(name);
+            if (existing.isPresent()) {
+                id = existing.get();
+            } else {
+                try {
+                    id = insert(name);
+                } catch (DuplicateKeyException e) {
+                    // 其他连接刚刚插入了同一名称
+                    id = selectId(name).orElseThrow(() -> e);
+                }
+            }
+            cache(id, name);
+            return id;
+        }
+    }
+
+    /**
+     * 查找名称的ID，不分配新的ID
+     *
+     * @param name 策略组或节点名称
+     * @return ID，名称从未写入过时为空
+     */
+    public Optional<Integer> findId(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        Optional<Integer> existing = selectId(name);
+        existing.ifPresent(value -> cache(value, name));
+        return existing;
+    }
+
+    /**
+     * 获取ID对应的名称
+     *
+     * @param id ID
+     * @return 名称，ID不存在时为null
+     */
+    public String getName(int id) {
+        String name = names.get(id);
+        if (name != null) {
+            return name;
+        }
+        List<String> result = jdbcTemplate.queryForList(SELECT_NAME_SQL, String.class, id);
+        if (result.isEmpty()) {
+            return null;
+        }
+        cache(id, result.get(0));
+        return result.get(0);
+    }
+
+    private Optional<Integer> selectId(String name) {
+        List<Integer> result = jdbcTemplate.queryForList(SELECT_ID_SQL, Integer.class, name);
+        return result.isEmpty() ? Optional.empty() : Optional.of(result.get(0));
+    }
+
+    private int insert(String name) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, name);
+            return ps;
+        }, keyHolder);
+        int id = keyHolder.getKey().intValue();
+        log.debug("名称字典新增: {} -> {}", name, id);
+        return id;
+    }
+
+    private void cache(int id, String name) {
+        ids.put(name, id);
+        names.put(id, name);
+    }
+}
@@ -1,10 +1,12 @@
 package com.github.clashautochange.service;
 
+import com.github.clashautochange.config.ClashApiConfigChangedEvent;
 import com.github.clashautochange.entity.SystemConfig;
 import com.github.clashautochange.repository.SystemConfigRepository;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +22,7 @@ import java.util.Optional;
 public class SystemConfigService {
 
     private final SystemConfigRepository systemConfigRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${clash.api.base-url}")
     private String defaultBaseUrl;
@@ -28,8 +31,10 @@ public class SystemConfigService {
     private String defaultSecret;
 
     @Autowired
-    public SystemConfigService(SystemConfigRepository systemConfigRepository) {
+    public SystemConfigService(SystemConfigRepository systemConfigRepository,
+                               ApplicationEventPublisher eventPublisher) {
         this.systemConfigRepository = systemConfigRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -119,7 +124,12 @@ public class SystemConfigService {
      */
     @Transactional
     public SystemConfig saveConfig(SystemConfig config) {
-        return systemConfigRepository.save(config);
+        SystemConfig saved = systemConfigRepository.save(config);
+        if (saved.getConfigKey().startsWith("clash.api.")) {
+            Map<String, String> apiConfig = getClashApiConfig();
+            eventPublisher.publishEvent(new ClashApiConfigChangedEvent(apiConfig.get("baseUrl"), apiConfig.get("secret")));
+        }
+        return saved;
     }
 
     /**
@@ -139,5 +149,8 @@ public class SystemConfigService {
                 .orElse(new SystemConfig("clash.api.secret", secret, "Clash API密钥"));
         secretConfig.setConfigValue(secret);
         systemConfigRepository.save(secretConfig);
+
+        // 事务提交后刷新内存中的Clash API端点
+        eventPublisher.publishEvent(new ClashApiConfigChangedEvent(baseUrl, secret));
     }
 } 
\ No newline at end of file
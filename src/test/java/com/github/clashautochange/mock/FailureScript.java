@@ -0,0 +1,154 @@
+package com.github.clashautochange.mock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * 模拟故障脚本
+ * 按请求路径和请求序号（从1开始，按匹配规则的请求计数）注入故障，例如：
+ * <pre>
+ * script.add(FailureScript.Rule.status("^/version$", 503).from(3).times(2));
+ * script.add(FailureScript.Rule.drop(".*").from(10).times(5));
+ * </pre>
+ */
+public class FailureScript {
+
+    /**
+     * 故障类型
+     */
+    public enum Action {
+        /**
+         * 返回指定HTTP状态码
+         */
+        STATUS,
+        /**
+         * 不返回响应直接关闭连接
+         */
+        DROP,
+        /**
+         * 挂起指定时长后再正常处理，用于触发客户端读取超时
+         */
+        HANG
+    }
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+
+    /**
+     * 添加规则
+     *
+     * @param rule 故障规则
+     * @return 当前脚本
+     */
+    public FailureScript add(Rule rule) {
+        rules.add(rule);
+        return this;
+    }
+
+    /**
+     * 清除所有规则
+     */
+    public void clear() {
+        rules.clear();
+    }
+
+    /**
+     * 查找对本次请求生效的规则
+     *
+     * @param method 请求方法
+     * @param path 请求路径
+     * @return 生效的规则，没有时为null
+     */
+    Rule match(String method, String path) {
+        for (Rule rule : rules) {
+            if (rule.matches(method, path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 单条故障规则
+     */
+    public static final class Rule {
+
+        private final Pattern pathPattern;
+        private final Action action;
+        private final int value;
+        private String method;
+        private long from = 1;
+        private long times = Long.MAX_VALUE;
+        private long seen;
+
+        private Rule(String pathRegex, Action action, int value) {
+            this.pathPattern = Pattern.compile(pathRegex);
+            this.action = action;
+            this.value = value;
+        }
+
+        /**
+         * 返回指定状态码
+         */
+        public static Rule status(String pathRegex, int status) {
+            return new Rule(pathRegex, Action.STATUS, status);
+        }
+
+        /**
+         * 直接关闭连接
+         */
+        public static Rule drop(String pathRegex) {
+            return new Rule(pathRegex, Action.DROP, 0);
+        }
+
+        /**
+         * 挂起指定时长
+         */
+        public static Rule hang(String pathRegex, int millis) {
+            return new Rule(pathRegex, Action.HANG, millis);
+        }
+
+        /**
+         * 只匹配指定请求方法
+         */
+        public Rule method(String method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * 从第几个匹配的请求开始生效
+         */
+        public Rule from(long from) {
+            this.from = from;
+            return this;
+        }
+
+        /**
+         * 连续生效的次数
+         */
+        public Rule times(long times) {
+            this.times = times;
+            return this;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        private synchronized boolean matches(String requestMethod, String path) {
+            if (method != null && !method.equalsIgnoreCase(requestMethod)) {
+                return false;
+            }
+            if (!pathPattern.matcher(path).find()) {
+                return false;
+            }
+            seen++;
+            return seen >= from && seen - from < times;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.clashautochange.mock;
+
+import java.util.Random;
+
+/**
+ * 模拟节点延迟分布
+ * 每次延迟测试从分布中采样一个值，大于等于 {@link #TIMEOUT} 或超过请求超时视为超时
+ */
+@FunctionalInterface
+public interface LatencyModel {
+
+    /**
+     * 采样结果为超时
+     */
+    int TIMEOUT = Integer.MAX_VALUE;
+
+    /**
+     * 采样一次延迟
+     *
+     * @param proxy 节点名称
+     * @param random 随机数生成器
+     * @return 延迟（毫秒）
+     */
+    int sample(String proxy, Random random);
+
+    /**
+     * 固定延迟
+     */
+    static LatencyModel fixed(int delay) {
+        return (proxy, random) -> delay;
+    }
+
+    /**
+     * 均匀分布 [min, max]
+     */
+    static LatencyModel uniform(int min, int max) {
+        return (proxy, random) -> min + random.nextInt(max - min + 1);
+    }
+
+    /**
+     * 正态分布，结果不小于1
+     */
+    static LatencyModel normal(double mean, double stddev) {
+        return (proxy, random) -> Math.max(1, (int) Math.round(mean + random.nextGaussian() * stddev));
+    }
+
+    /**
+     * 对数正态分布，长尾，更接近真实网络延迟
+     *
+     * @param median 中位数（毫秒）
+     * @param sigma 对数标准差，越大尾部越长
+     */
+    static LatencyModel logNormal(double median, double sigma) {
+        double mu = Math.log(median);
+        return (proxy, random) -> Math.max(1, (int) Math.round(Math.exp(mu + random.nextGaussian() * sigma)));
+    }
+
+    /**
+     * 以指定概率超时，否则使用当前分布
+     *
+     * @param rate 超时概率 [0, 1]
+     */
+    default LatencyModel withTimeoutRate(double rate) {
+        return (proxy, random) -> random.nextDouble() < rate ? TIMEOUT : sample(proxy, random);
+    }
+
+    /**
+     * 为每个节点叠加一个稳定的基础延迟，使不同节点之间的排名保持稳定
+     *
+     * @param maxOffset 最大基础延迟（毫秒）
+     */
+    default LatencyModel withNodeOffset(int maxOffset) {
+        return (proxy, random) -> {
+            int base = sample(proxy, random);
+            if (base == TIMEOUT) {
+                return TIMEOUT;
+            }
+            return base + Math.floorMod(proxy.hashCode(), maxOffset + 1);
+        };
+    }
+}
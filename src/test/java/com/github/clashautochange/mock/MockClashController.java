@@ -0,0 +1,424 @@
+package com.github.clashautochange.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 可嵌入的模拟 Clash 控制器
+ * 基于JDK自带的HttpServer实现 Clash RESTful API 的一个子集，不依赖真实的 Clash 内核和网络，
+ * 用于在本机对 ClashApiService 和定时任务进行延迟模拟和压力测试：
+ * <ul>
+ *     <li>GET /version</li>
+ *     <li>GET /proxies, GET /proxies/{name}, PUT /proxies/{name}</li>
+ *     <li>GET /proxies/{name}/delay</li>
+ *     <li>GET /group, GET /group/{name}, GET /group/{name}/delay</li>
+ * </ul>
+ * 每个策略组都是包含全部节点的 Selector，节点延迟由 {@link LatencyModel} 采样，故障由 {@link FailureScript} 注入
+ */
+public class MockClashController implements AutoCloseable {
+
+    private static final Pattern PROXY_DELAY = Pattern.compile("^/proxies/(.+)/delay$");
+    private static final Pattern PROXY = Pattern.compile("^/proxies/(.+)$");
+    private static final Pattern GROUP_DELAY = Pattern.compile("^/group/(.+)/delay$");
+    private static final Pattern GROUP = Pattern.compile("^/group/(.+)$");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> groupNames = new ArrayList<>();
+    private final List<String> nodeNames = new ArrayList<>();
+    private final Set<String> nodeSet = new HashSet<>();
+    private final Map<String, String> selected = new ConcurrentHashMap<>();
+    private final Map<String, Integer> lastDelays = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final FailureScript failureScript = new FailureScript();
+    private final Random random;
+
+    private volatile LatencyModel latencyModel = LatencyModel.logNormal(120, 0.5);
+    private volatile boolean simulateDelay = true;
+    private volatile String secret = "";
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param groupCount 策略组数量
+     * @param nodeCount 节点数量
+     */
+    public MockClashController(int groupCount, int nodeCount) {
+        this(groupCount, nodeCount, 42L);
+    }
+
+    /**
+     * @param groupCount 策略组数量
+     * @param nodeCount 节点数量
+     * @param seed 随机数种子，相同种子得到相同的延迟序列（单线程时）
+     */
+    public MockClashController(int groupCount, int nodeCount, long seed) {
+        for (int i = 0; i < nodeCount; i++) {
+            nodeNames.add("node-" + i);
+            nodeSet.add("node-" + i);
+        }
+        for (int i = 0; i < groupCount; i++) {
+            String groupName = "group-" + i;
+            groupNames.add(groupName);
+            if (!nodeNames.isEmpty()) {
+                selected.put(groupName, nodeNames.get(0));
+            }
+        }
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 在随机端口上启动
+     *
+     * @return 控制器的基础URL，例如 http://127.0.0.1:54321
+     */
+    public String start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * 在指定端口上启动
+     *
+     * @param port 端口，0表示随机端口
+     * @return 控制器的基础URL
+     */
+    public String start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-clash");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return getBaseUrl();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public void setLatencyModel(LatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+    }
+
+    /**
+     * 是否真实等待采样得到的延迟，关闭后延迟测试立即返回
+     */
+    public void setSimulateDelay(boolean simulateDelay) {
+        this.simulateDelay = simulateDelay;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret == null ? "" : secret;
+    }
+
+    public FailureScript getFailureScript() {
+        return failureScript;
+    }
+
+    public List<String> getGroupNames() {
+        return Collections.unmodifiableList(groupNames);
+    }
+
+    public List<String> getNodeNames() {
+        return Collections.unmodifiableList(nodeNames);
+    }
+
+    /**
+     * 获取策略组当前选中的节点
+     */
+    public String getCurrentProxy(String groupName) {
+        return selected.get(groupName);
+    }
+
+    /**
+     * 获取某类请求的次数，例如 "GET /proxies"、"GET /group/{name}/delay"、"PUT /proxies/{name}"
+     */
+    public long getRequestCount(String route) {
+        AtomicLong count = requestCounts.get(route);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * 获取所有请求次数
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        requestCounts.forEach((route, count) -> result.put(route, count.get()));
+        return result;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+
+            FailureScript.Rule rule = failureScript.match(method, path);
+            if (rule != null) {
+                switch (rule.getAction()) {
+                    case STATUS:
+                        count(method, "*failure");
+                        sendJson(exchange, rule.getValue(), Map.of("message", "Injected failure"));
+                        return;
+                    case DROP:
+                        count(method, "*failure");
+                        // 处理器抛出异常时HttpServer直接关闭连接，不返回响应
+                        throw new IOException("Injected connection drop");
+                    case HANG:
+                        sleep(rule.getValue());
+                        break;
+                }
+            }
+
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (!secret.isEmpty() && !("Bearer " + secret).equals(authorization)) {
+                sendJson(exchange, 401, Map.of("message", "Unauthorized"));
+                return;
+            }
+
+            route(exchange, method, path);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, String path) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        Matcher matcher;
+
+        if ("GET".equals(method) && "/version".equals(path)) {
+            count(method, "/version");
+            sendJson(exchange, 200, Map.of("version", "mock", "premium", true, "meta", true));
+        } else if ("GET".equals(method) && "/proxies".equals(path)) {
+            count(method, "/proxies");
+            Map<String, Object> proxies = new LinkedHashMap<>();
+            for (String groupName : groupNames) {
+                proxies.put(groupName, groupJson(groupName));
+            }
+            for (String nodeName : nodeNames) {
+                proxies.put(nodeName, nodeJson(nodeName));
+            }
+            sendJson(exchange, 200, Map.of("proxies", proxies));
+        } else if ("GET".equals(method) && "/group".equals(path)) {
+            count(method, "/group");
+            List<Object> groups = new ArrayList<>();
+            for (String groupName : groupNames) {
+                groups.add(groupJson(groupName));
+            }
+            sendJson(exchange, 200, Map.of("proxies", groups));
+        } else if ("GET".equals(method) && (matcher = GROUP_DELAY.matcher(path)).matches()) {
+            count(method, "/group/{name}/delay");
+            handleGroupDelay(exchange, matcher.group(1), parseTimeout(query));
+        } else if ("GET".equals(method) && (matcher = GROUP.matcher(path)).matches()) {
+            count(method, "/group/{name}");
+            String groupName = matcher.group(1);
+            if (selected.containsKey(groupName)) {
+                sendJson(exchange, 200, groupJson(groupName));
+            } else {
+                sendJson(exchange, 404, Map.of("message", "Resource not found"));
+            }
+        } else if ("GET".equals(method) && (matcher = PROXY_DELAY.matcher(path)).matches()) {
+            count(method, "/proxies/{name}/delay");
+            handleProxyDelay(exchange, matcher.group(1), parseTimeout(query));
+        } else if ("GET".equals(method) && (matcher = PROXY.matcher(path)).matches()) {
+            count(method, "/proxies/{name}");
+            String name = matcher.group(1);
+            if (selected.containsKey(name)) {
+                sendJson(exchange, 200, groupJson(name));
+            } else if (nodeSet.contains(name)) {
+                sendJson(exchange, 200, nodeJson(name));
+            } else {
+                sendJson(exchange, 404, Map.of("message", "Resource not found"));
+            }
+        } else if ("PUT".equals(method) && (matcher = PROXY.matcher(path)).matches()) {
+            count(method, "/proxies/{name}");
+            handleSelect(exchange, matcher.group(1));
+        } else {
+            count(method, "*unknown");
+            sendJson(exchange, 404, Map.of("message", "Resource not found"));
+        }
+    }
+
+    private void handleGroupDelay(HttpExchange exchange, String groupName, int timeout) throws IOException {
+        if (!selected.containsKey(groupName)) {
+            sendJson(exchange, 404, Map.of("message", "Resource not found"));
+            return;
+        }
+        // Clash 等待组内所有节点测试完成，只返回成功的节点
+        Map<String, Integer> delays = new HashMap<>();
+        int slowest = 0;
+        boolean anyTimeout = false;
+        for (String nodeName : nodeNames) {
+            int delay = latencyModel.sample(nodeName, random);
+            if (delay > timeout) {
+                anyTimeout = true;
+                lastDelays.put(nodeName, 0);
+            } else {
+                delays.put(nodeName, delay);
+                lastDelays.put(nodeName, delay);
+                slowest = Math.max(slowest, delay);
+            }
+        }
+        sleep(anyTimeout ? timeout : slowest);
+        sendJson(exchange, 200, delays);
+    }
+
+    private void handleProxyDelay(HttpExchange exchange, String name, int timeout) throws IOException {
+        if (!nodeSet.contains(name) && !selected.containsKey(name)) {
+            sendJson(exchange, 404, Map.of("message", "Resource not found"));
+            return;
+        }
+        String nodeName = selected.containsKey(name) ? selected.get(name) : name;
+        int delay = latencyModel.sample(nodeName, random);
+        if (delay > timeout) {
+            lastDelays.put(nodeName, 0);
+            sleep(timeout);
+            sendJson(exchange, 504, Map.of("message", "Timeout"));
+            return;
+        }
+        lastDelays.put(nodeName, delay);
+        sleep(delay);
+        sendJson(exchange, 200, Map.of("delay", delay));
+    }
+
+    private void handleSelect(HttpExchange exchange, String groupName) throws IOException {
+        if (!selected.containsKey(groupName)) {
+            sendJson(exchange, 404, Map.of("message", "Resource not found"));
+            return;
+        }
+        Map<?, ?> body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = objectMapper.readValue(in, Map.class);
+        } catch (IOException e) {
+            sendJson(exchange, 400, Map.of("message", "Body invalid"));
+            return;
+        }
+        Object name = body.get("name");
+        if (!(name instanceof String) || !nodeSet.contains(name)) {
+            sendJson(exchange, 400, Map.of("message", "Selector update error: proxy not exist"));
+            return;
+        }
+        selected.put(groupName, (String) name);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private Map<String, Object> groupJson(String groupName) {
+        Map<String, Object> group = new LinkedHashMap<>();
+        group.put("name", groupName);
+        group.put("type", "Selector");
+        group.put("now", selected.get(groupName));
+        group.put("all", nodeNames);
+        group.put("history", Collections.emptyList());
+        group.put("udp", true);
+        return group;
+    }
+
+    private Map<String, Object> nodeJson(String nodeName) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("name", nodeName);
+        node.put("type", "Shadowsocks");
+        Integer delay = lastDelays.get(nodeName);
+        node.put("history", delay == null ? Collections.emptyList()
+                : List.of(Map.of("time", "2024-01-01T00:00:00Z", "delay", delay)));
+        node.put("udp", true);
+        return node;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void count(String method, String route) {
+        requestCounts.computeIfAbsent(method + " " + route, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private void sleep(int millis) {
+        if (!simulateDelay || millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int parseTimeout(Map<String, String> query) {
+        try {
+            return Integer.parseInt(query.getOrDefault("timeout", "5000"));
+        } catch (NumberFormatException e) {
+            return 5000;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> result = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return result;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int index = pair.indexOf('=');
+            String key = index >= 0 ? pair.substring(0, index) : pair;
+            String value = index >= 0 ? pair.substring(index + 1) : "";
+            result.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * 独立运行，用于让应用连接模拟控制器进行本机压测
+     * 参数：[端口] [策略组数量] [节点数量]，默认 9090 10 10000
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9090;
+        int groupCount = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nodeCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        MockClashController controller = new MockClashController(groupCount, nodeCount);
+        controller.setLatencyModel(LatencyModel.logNormal(120, 0.6).withNodeOffset(200).withTimeoutRate(0.05));
+        String baseUrl = controller.start(port);
+        System.out.printf("Mock Clash controller listening on %s (%d groups, %d nodes)%n",
+                baseUrl, groupCount, nodeCount);
+        // 服务线程是守护线程，阻塞主线程保持运行
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.ProxyGroupRuntimeState;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AutoChangePolicy 的测试
+ * 策略组有 A、B、C 三个节点，A 为优先节点，最大延迟 1000ms，最大超时次数 2
+ */
+class AutoChangePolicyTests {
+
+    private static final int MAX_DELAY = 1000;
+
+    private static final List<String> MEMBERS = List.of("A", "B", "C");
+
+    @Test
+    void keepsWorkingCurrentAndWaitsBeforeFailover() {
+        AutoChangePolicy policy = new AutoChangePolicy(0, 0.2, 0);
+        ProxyGroupRuntimeState state = new ProxyGroupRuntimeState(null, "group", 1);
+
+        AutoChangePolicy.Decision keep = policy.evaluate(observe("B", Map.of("B", 200, "C", 100)), state, 1000);
+        assertEquals(AutoChangePolicy.Action.KEEP, keep.getAction());
+        assertEquals(200, keep.getDelay());
+        assertEquals(0, state.getTimeoutCount());
+
+        AutoChangePolicy.Decision wait = policy.evaluate(observe("B", Map.of("C", 100)), state, 2000);
+        assertEquals(AutoChangePolicy.Action.WAIT, wait.getAction());
+        assertEquals(1, wait.getTimeoutCount());
+        assertFalse(wait.isFailover());
+    }
+
+    @Test
+    void switchToPreferredFromFailedCurrentIsFailover() {
+        AutoChangePolicy policy = new AutoChangePolicy(600000, 0.2, 1);
+        ProxyGroupRuntimeState state = switchedTo("B", 1000);
+
+        AutoChangePolicy.Decision decision = policy.evaluate(observe("B", Map.of("A", 100, "C", 100)), state, 2000);
+        assertEquals(AutoChangePolicy.Action.SWITCH, decision.getAction());
+        assertTrue(decision.isFailover());
+
+        // 故障切换计入 failoverCount，不占用主动切换次数
+        state.recordSwitch(decision.getTarget(), decision.getDelay(), decision.isFailover(), 2000);
+        assertEquals(1L, state.getFailoverCount());
+        assertEquals(1, state.countSwitchesSince(0));
+    }
+
+    @Test
+    void failoverPrefersStandbyOverScan() {
+        AutoChangePolicy policy = new AutoChangePolicy(0, 0.2, 0);
+        ProxyGroupRuntimeState state = new ProxyGroupRuntimeState(null, "group", 1);
+        Map<String, Integer> standby = new LinkedHashMap<>();
+        standby.put("B", 150);
+        standby.put("C", 300);
+
+        // 当前节点 B 也在备用列表中，跳过它选择下一个
+        AutoChangePolicy.Observation observation = new AutoChangePolicy.Observation("B", "A", Map.of(),
+                Set.of("A", "B"), false, MAX_DELAY, 2, MEMBERS, score(standby), standby);
+        AutoChangePolicy.Decision decision = policy.evaluate(observation, state, 1000);
+        assertEquals(AutoChangePolicy.Action.FAILOVER, decision.getAction());
+        assertEquals("C", decision.getTarget());
+        assertEquals(300, decision.getDelay());
+        assertTrue(decision.isFromStandby());
+        assertTrue(decision.isFailover());
+    }
+
+    @Test
+    void scanSelectsFailoverFromFullResults() {
+        AutoChangePolicy policy = new AutoChangePolicy(0, 0.2, 0);
+        ProxyGroupRuntimeState state = new ProxyGroupRuntimeState(null, "group", 1);
+
+        // 增量探测只测试了 A 和 B，两者都失败，需要测试整个策略组
+        AutoChangePolicy.Observation partial = new AutoChangePolicy.Observation("B", "A", Map.of(),
+                Set.of("A", "B"), false, MAX_DELAY, 2, MEMBERS, score(Map.of()), Map.of());
+        assertEquals(AutoChangePolicy.Action.SCAN, policy.evaluate(partial, state, 1000).getAction());
+
+        Map<String, Integer> full = Map.of("C", 400);
+        AutoChangePolicy.Decision decision = policy.selectFailover(new AutoChangePolicy.Observation("B", "A", full,
+                Set.copyOf(MEMBERS), true, MAX_DELAY, 2, MEMBERS, score(full), Map.of()), state);
+        assertEquals(AutoChangePolicy.Action.FAILOVER, decision.getAction());
+        assertEquals("C", decision.getTarget());
+        assertFalse(decision.isFromStandby());
+        assertTrue(decision.isFailover());
+
+        AutoChangePolicy.Decision none = policy.selectFailover(new AutoChangePolicy.Observation("B", "A", Map.of(),
+                Set.copyOf(MEMBERS), true, MAX_DELAY, 2, MEMBERS, score(Map.of()), Map.of()), state);
+        assertEquals(AutoChangePolicy.Action.NO_CANDIDATE, none.getAction());
+    }
+
+    @Test
+    void dwellBlocksSwitchBackWhileCurrentWorks() {
+        AutoChangePolicy policy = new AutoChangePolicy(600000, 0.2, 0);
+        ProxyGroupRuntimeState state = switchedTo("B", 1000);
+
+        AutoChangePolicy.Decision blocked = policy.evaluate(observe("B", Map.of("A", 100, "B", 200)), state, 60000);
+        assertEquals(AutoChangePolicy.Action.KEEP, blocked.getAction());
+        assertEquals(200, blocked.getDelay());
+        assertEquals(1L, state.snapshot().get("suppressedByDwell"));
+
+        AutoChangePolicy.Decision allowed = policy.evaluate(observe("B", Map.of("A", 100, "B", 200)), state, 700000);
+        assertEquals(AutoChangePolicy.Action.SWITCH, allowed.getAction());
+        assertEquals("A", allowed.getTarget());
+        assertFalse(allowed.isFailover());
+    }
+
+    @Test
+    void marginBlocksSwitchToBarelyAcceptablePreferred() {
+        AutoChangePolicy policy = new AutoChangePolicy(0, 0.2, 0);
+        ProxyGroupRuntimeState state = switchedTo("B", 1000);
+
+        AutoChangePolicy.Decision decision = policy.evaluate(observe("B", Map.of("A", 900, "B", 200)), state, 2000);
+        assertEquals(AutoChangePolicy.Action.KEEP, decision.getAction());
+        assertEquals(1L, state.snapshot().get("suppressedByMargin"));
+    }
+
+    @Test
+    void marginComparesPreferredWithCurrent() {
+        AutoChangePolicy policy = new AutoChangePolicy(0, 0.2, 0);
+        ProxyGroupRuntimeState state = switchedTo("B", 1000);
+
+        // A 远低于最大延迟，但没有比 B 低 20%
+        AutoChangePolicy.Decision blocked = policy.evaluate(observe("B", Map.of("A", 500, "B", 550)), state, 2000);
+        assertEquals(AutoChangePolicy.Action.KEEP, blocked.getAction());
+        assertEquals(1L, state.snapshot().get("suppressedByMargin"));
+
+        AutoChangePolicy.Decision allowed = policy.evaluate(observe("B", Map.of("A", 400, "B", 550)), state, 3000);
+        assertEquals(AutoChangePolicy.Action.SWITCH, allowed.getAction());
+    }
+
+    @Test
+    void budgetBlocksSwitchAfterTooManySwitches() {
+        AutoChangePolicy policy = new AutoChangePolicy(0, 0.2, 2);
+        ProxyGroupRuntimeState state = switchedTo("C", 1000);
+        state.recordSwitch("B", 200, false, 2000);
+
+        AutoChangePolicy.Decision decision = policy.evaluate(observe("B", Map.of("A", 100, "B", 200)), state, 3000);
+        assertEquals(AutoChangePolicy.Action.KEEP, decision.getAction());
+        assertEquals(1L, state.snapshot().get("suppressedByBudget"));
+        assertEquals(1L, state.getSuppressedSwitchCount());
+    }
+
+    @Test
+    void failedCurrentBypassesHysteresis() {
+        AutoChangePolicy policy = new AutoChangePolicy(600000, 0.2, 0);
+        ProxyGroupRuntimeState state = switchedTo("B", 1000);
+
+        // B 本次测试过但没有延迟，即测试失败，不受最短停留时间限制
+        AutoChangePolicy.Observation observation = new AutoChangePolicy.Observation("B", "A", Map.of("A", 100),
+                Set.of("A", "B"), false, MAX_DELAY, 2, MEMBERS, score(Map.of("A", 100)), Map.of());
+        AutoChangePolicy.Decision decision = policy.evaluate(observation, state, 60000);
+        assertEquals(AutoChangePolicy.Action.SWITCH, decision.getAction());
+        assertEquals("A", decision.getTarget());
+        assertTrue(decision.isFailover());
+        assertEquals(0L, state.getSuppressedSwitchCount());
+    }
+
+    @Test
+    void untestedCurrentKeepsHysteresis() {
+        AutoChangePolicy policy = new AutoChangePolicy(600000, 0.2, 0);
+        ProxyGroupRuntimeState state = switchedTo("B", 1000);
+
+        // 只测试了 A，不知道 B 是否正常，仍然需要满足最短停留时间
+        AutoChangePolicy.Observation observation = new AutoChangePolicy.Observation("B", "A", Map.of("A", 100),
+                Set.of("A"), false, MAX_DELAY, 2, MEMBERS, score(Map.of("A", 100)), Map.of());
+        AutoChangePolicy.Decision decision = policy.evaluate(observation, state, 60000);
+        assertEquals(AutoChangePolicy.Action.WAIT, decision.getAction());
+        assertEquals(1L, state.snapshot().get("suppressedByDwell"));
+    }
+
+    private static ProxyGroupRuntimeState switchedTo(String proxy, long time) {
+        ProxyGroupRuntimeState state = new ProxyGroupRuntimeState(null, "group", 0);
+        state.recordSwitch(proxy, 100, false, time);
+        return state;
+    }
+
+    private static AutoChangePolicy.Observation observe(String currentProxy, Map<String, Integer> delays) {
+        return new AutoChangePolicy.Observation(currentProxy, "A", delays, Set.copyOf(MEMBERS), true, MAX_DELAY, 2,
+                MEMBERS, score(delays), Map.of());
+    }
+
+    private static ToDoubleFunction<String> score(Map<String, Integer> delays) {
+        return proxy -> delays.getOrDefault(proxy, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.clashautochange.service;
+
+import com.github.clashautochange.model.SimulationPolicy;
+import com.github.clashautochange.model.SimulationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * AutoChangeSimulator 的测试
+ */
+class AutoChangeSimulatorTests {
+
+    @Test
+    void comparesFailoverThresholdsOverReplayedOutage() {
+        SimulationPolicy fast = policy("fast", 2);
+        SimulationPolicy slow = policy("slow", 10);
+        AutoChangeSimulator simulator = new AutoChangeSimulator("group", "A", List.of(fast, slow),
+                () -> new LatencyWindow(20, 0.3), (window, fallbackDelay) -> fallbackDelay);
+
+        // 优先节点 A 在第2到第4分钟不可用，B 一直可用
+        for (int minute = 0; minute < 10; minute++) {
+            long time = minute * 60000L;
+            simulator.accept("A", minute >= 2 && minute <= 4 ? -1 : 50, time);
+            simulator.accept("B", 100, time);
+        }
+        List<SimulationResult> results = simulator.finish(600000);
+
+        SimulationResult fastResult = results.get(0);
+        assertEquals(10, fastResult.getChecks());
+        // 连续两次超时后切到 B，A 恢复后切回
+        assertEquals(2, fastResult.getSwitches());
+        assertEquals(1, fastResult.getFailovers());
+        assertEquals(60000, fastResult.getBadTime());
+        assertEquals(60000, fastResult.getMeanTimeToRecover());
+        assertEquals("A", fastResult.getFinalProxy());
+
+        SimulationResult slowResult = results.get(1);
+        assertEquals(0, slowResult.getSwitches());
+        assertEquals(180000, slowResult.getBadTime());
+        assertEquals(0.3, slowResult.getBadRatio(), 1e-9);
+        assertEquals(1, slowResult.getRecoveries());
+        assertEquals(180000, slowResult.getMeanTimeToRecover());
+    }
+
+    private static SimulationPolicy policy(String name, int maxTimeoutCount) {
+        SimulationPolicy policy = new SimulationPolicy();
+        policy.setName(name);
+        policy.setCheckInterval(60000);
+        policy.setMaxTimeoutCount(maxTimeoutCount);
+        policy.setMinDwell(0);
+        policy.setMargin(0);
+        policy.setMaxSwitchesPerHour(0);
+        policy.setScoreSelection(false);
+        return policy;
+    }
+}
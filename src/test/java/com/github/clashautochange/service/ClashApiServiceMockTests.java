@@ -0,0 +1,92 @@
+package com.github.clashautochange.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.clashautochange.config.ClashApiConfig;
+import com.github.clashautochange.mock.FailureScript;
+import com.github.clashautochange.mock.LatencyModel;
+import com.github.clashautochange.mock.MockClashController;
+import com.github.clashautochange.model.ClashEndpoint;
+import com.github.clashautochange.model.ClashProxySnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ClashApiService 对模拟 Clash 控制器的测试
+ */
+class ClashApiServiceMockTests {
+
+    private static final int NODE_COUNT = 200;
+
+    private MockClashController mock;
+    private ClashApiService clashApiService;
+    private ClashEndpoint endpoint;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mock = new MockClashController(3, NODE_COUNT);
+        mock.setLatencyModel(LatencyModel.uniform(5, 50));
+        mock.setSimulateDelay(false);
+        mock.setSecret("secret");
+        endpoint = new ClashEndpoint(mock.start(), "secret");
+
+        ClashCircuitBreakerRegistry registry = new ClashCircuitBreakerRegistry();
+        ReflectionTestUtils.setField(registry, "failureThreshold", 3);
+        ReflectionTestUtils.setField(registry, "initialBackoff", 60000L);
+        ReflectionTestUtils.setField(registry, "maxBackoff", 60000L);
+        clashApiService = new ClashApiService(new RestTemplate(), new ClashApiConfig(null),
+                new ClashResponseParser(new ObjectMapper()), registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mock.close();
+    }
+
+    @Test
+    void readsSnapshotAndSelectsProxy() {
+        ClashProxySnapshot snapshot = clashApiService.getProxySnapshot(endpoint);
+        assertEquals("node-0", snapshot.getCurrentProxy("group-1"));
+        assertEquals(NODE_COUNT, snapshot.getGroupMembers("group-1").size());
+        assertEquals(3, snapshot.getSelectorGroups().size());
+
+        clashApiService.selectProxy(endpoint, "group-1", "node-9");
+        assertEquals("node-9", mock.getCurrentProxy("group-1"));
+    }
+
+    @Test
+    void groupDelayOmitsTimedOutNodes() {
+        mock.setLatencyModel(LatencyModel.fixed(50));
+        Map<String, Integer> delays = clashApiService.testGroupDelay(endpoint, "group-0", "http://test", 100);
+        assertEquals(NODE_COUNT, delays.size());
+        assertEquals(Integer.valueOf(50), delays.get("node-3"));
+
+        mock.setLatencyModel(LatencyModel.fixed(50).withTimeoutRate(1.0));
+        assertTrue(clashApiService.testGroupDelay(endpoint, "group-0", "http://test", 100).isEmpty());
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveConnectionFailures() {
+        mock.getFailureScript().add(FailureScript.Rule.drop("^/proxies$"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ResourceAccessException.class, () -> clashApiService.getProxySnapshot(endpoint));
+        }
+        long requests = mock.getRequestCount("GET *failure");
+
+        assertThrows(ClashCircuitOpenException.class, () -> clashApiService.getProxySnapshot(endpoint));
+        assertFalse(clashApiService.isAvailable(endpoint));
+        assertEquals(requests, mock.getRequestCount("GET *failure"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.clashautochange.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.clashautochange.model.ClashConnection;
+import com.github.clashautochange.model.ClashProxy;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ClashResponseParser 测试
+ * 与 Map 树反序列化的分配对比见 ClashResponseParserBenchmark
+ */
+class ClashResponseParserTests {
+
+    private static final int NODE_COUNT = 2000;
+    private static final int GROUP_COUNT = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ClashResponseParser parser = new ClashResponseParser(objectMapper);
+
+    @Test
+    void parsesGroupsFromProxiesResponse() throws IOException {
+        byte[] payload = buildProxiesPayload();
+
+        Map<String, ClashProxy> proxies = parser.parseProxies(new ByteArrayInputStream(payload));
+
+        assertEquals(NODE_COUNT + GROUP_COUNT, proxies.size());
+        ClashProxy group = proxies.get("group-0");
+        assertEquals("Selector", group.getType());
+        assertEquals("node-0", group.getNow());
+        assertEquals(NODE_COUNT, group.getAll().size());
+        assertEquals(Integer.valueOf(123), proxies.get("node-1").getDelay());
+    }
+
+    @Test
+    void parsesGroupMembersWithoutAllArray() throws IOException {
+        String all = "{\"all\":[\"node-0\",\"node-1\"],\"name\":\"group-0\","
+                + "\"now\":\"node-0\",\"type\":\"Selector\"}";
+        String proxies = "{\"name\":\"group-0\",\"proxies\":[{\"name\":\"node-0\",\"delay\":100},{\"name\":\"node-1\"}]}";
+        String flat = "{\"node-0\":\"Shadowsocks\",\"node-1\":\"Vmess\",\"history\":[]}";
+
+        assertEquals(List.of("node-0", "node-1"), parser.parseGroupMembers(
+                new ByteArrayInputStream(all.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(List.of("node-0", "node-1"), parser.parseGroupMembers(
+                new ByteArrayInputStream(proxies.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(List.of("node-0", "node-1"), parser.parseGroupMembers(
+                new ByteArrayInputStream(flat.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void parsesConnectionChains() throws IOException {
+        String json = "{\"downloadTotal\":1,\"uploadTotal\":2,\"connections\":["
+                + "{\"id\":\"a\",\"metadata\":{\"host\":\"example.com\"},\"chains\":[\"node-1\",\"group-0\"],\"rule\":\"Match\"},"
+                + "{\"id\":\"b\",\"chains\":[\"node-1\",\"group-1\",\"group-0\"]},"
+                + "{\"id\":\"c\",\"chains\":[\"DIRECT\"]}]}";
+
+        List<ClashConnection> connections = parser.parseConnections(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, connections.size());
+        assertTrue(connections.get(0).isRoutedThrough("group-0", "node-1"));
+        assertFalse(connections.get(1).isRoutedThrough("group-0", "node-1"));
+        assertTrue(connections.get(1).isRoutedThrough("group-1", "node-1"));
+        assertFalse(connections.get(2).isRoutedThrough("group-0", "DIRECT"));
+    }
+
+    /**
+     * 构造与 Clash GET /proxies 结构相同的响应
+     */
+    private byte[] buildProxiesPayload() {
+        StringBuilder json = new StringBuilder("{\"proxies\":{");
+        for (int i = 0; i < NODE_COUNT; i++) {
+            json.append("\"node-").append(i).append("\":{")
+                    .append("\"alive\":true,\"extra\":{},\"id\":\"").append(i).append("\",")
+                    .append("\"history\":[{\"time\":\"2025-01-01T00:00:00Z\",\"delay\":").append(100 + i % 50)
+                    .append("},{\"time\":\"2025-01-01T00:01:00Z\",\"delay\":").append(100 + (i + 22) % 50).append("}],")
+                    .append("\"name\":\"node-").append(i).append("\",")
+                    .append("\"tfo\":false,\"type\":\"Shadowsocks\",\"udp\":true,\"xudp\":false},");
+        }
+        for (int g = 0; g < GROUP_COUNT; g++) {
+            json.append("\"group-").append(g).append("\":{\"all\":[");
+            for (int i = 0; i < NODE_COUNT; i++) {
+                json.append(i > 0 ? "," : "").append("\"node-").append(i).append('"');
+            }
+            json.append("],\"history\":[],\"name\":\"group-").append(g)
+                    .append("\",\"now\":\"node-0\",\"type\":\"Selector\",\"udp\":true}")
+                    .append(g < GROUP_COUNT - 1 ? "," : "");
+        }
+        json.append("}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.clashautochange.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DelaySketch 和 DelayBucket 的测试
+ */
+class DelaySketchTests {
+
+    @Test
+    void quantilesStayWithinRelativeError() {
+        DelaySketch sketch = new DelaySketch();
+        for (int delay = 1; delay <= 1000; delay++) {
+            sketch.add(delay);
+        }
+        assertEquals(-1, new DelaySketch().quantile(0.5));
+        assertWithin(500, sketch.quantile(0.5));
+        assertWithin(950, sketch.quantile(0.95));
+        assertWithin(1000, sketch.quantile(1));
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        DelaySketch sketch = new DelaySketch();
+        for (int i = 0; i < 100000; i++) {
+            sketch.add(50 + i % 300);
+        }
+        sketch.add(65000);
+
+        DelaySketch decoded = DelaySketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.getTotal(), decoded.getTotal());
+        assertEquals(sketch.quantile(0.5), decoded.quantile(0.5));
+        assertEquals(sketch.quantile(1), decoded.quantile(1));
+        assertTrue(sketch.toBytes().length <= 512);
+        assertEquals(0, DelaySketch.fromBytes(null).getTotal());
+    }
+
+    @Test
+    void mergedBucketsMatchSingleBucket() {
+        DelayBucket whole = new DelayBucket();
+        DelayBucket first = new DelayBucket();
+        DelayBucket second = new DelayBucket();
+        DelayBucket lost = new DelayBucket();
+        int[] delays = {120, -1, 80, 300, 95, -1, 210};
+        for (int i = 0; i < delays.length; i++) {
+            whole.add(delays[i]);
+            (i < 3 ? first : second).add(delays[i]);
+        }
+        lost.add(-1);
+
+        DelayBucket merged = new DelayBucket();
+        merged.merge(first);
+        merged.merge(lost);
+        merged.merge(second);
+        whole.add(-1);
+
+        assertEquals(whole.getCount(), merged.getCount());
+        assertEquals(whole.getLoss(), merged.getLoss());
+        assertEquals(80, merged.getMin());
+        assertEquals(300, merged.getMax());
+        assertEquals(whole.average(), merged.average());
+        assertEquals(whole.getSketch().quantile(0.5), merged.getSketch().quantile(0.5));
+        assertEquals(-1, lost.average());
+        assertEquals(-1, lost.getMin());
+    }
+
+    @Test
+    void resolutionsAlignBuckets() {
+        LocalDateTime time = LocalDateTime.of(2025, 3, 1, 10, 37, 12);
+        assertEquals(LocalDateTime.of(2025, 3, 1, 10, 35), ProxyDelayRollupService.Resolution.FIVE_MINUTES.truncate(time));
+        assertEquals(LocalDateTime.of(2025, 3, 1, 10, 40), ProxyDelayRollupService.Resolution.FIVE_MINUTES.ceil(time));
+        assertEquals(LocalDateTime.of(2025, 3, 1, 10, 0), ProxyDelayRollupService.Resolution.HOUR.truncate(time));
+        assertEquals(LocalDateTime.of(2025, 3, 2, 0, 0), ProxyDelayRollupService.Resolution.DAY.ceil(time));
+        LocalDateTime hour = LocalDateTime.of(2025, 3, 1, 10, 0);
+        assertEquals(hour, ProxyDelayRollupService.Resolution.HOUR.ceil(hour));
+    }
+
+    private static void assertWithin(int expected, int actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.05 + 1,
+                "期望约为 " + expected + "，实际为 " + actual);
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.clashautochange.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LatencyWindow 的测试
+ */
+class LatencyWindowTests {
+
+    @Test
+    void computesPercentilesLossAndJitterOverWindow() {
+        LatencyWindow window = new LatencyWindow(4, 0.5);
+        window.record(100, 1);
+        window.record(LatencyWindow.LOST, 2);
+        window.record(300, 3);
+        window.record(200, 4);
+
+        assertEquals(4, window.sampleCount());
+        assertEquals(0.25, window.lossRatio(), 1e-9);
+        assertEquals(200, window.percentile(0.5));
+        assertEquals(300, window.percentile(0.95));
+        // 100 -> 300 -> 200
+        assertEquals(150, window.jitter(), 1e-9);
+        // 100 -> 200 -> 200
+        assertEquals(200, window.ewma(), 1e-9);
+
+        // 覆盖最早的两个结果
+        window.record(50, 5);
+        window.record(60, 6);
+        assertEquals(4, window.sampleCount());
+        assertEquals(0, window.lossRatio(), 1e-9);
+        assertEquals(60, window.percentile(0.5));
+        // 300 -> 200 -> 50 -> 60
+        assertEquals((100 + 150 + 10) / 3.0, window.jitter(), 1e-9);
+    }
+
+    @Test
+    void steadyNodeScoresBetterThanSingleLuckySample() {
+        LatencyWindow steady = new LatencyWindow(10, 0.3);
+        LatencyWindow flaky = new LatencyWindow(10, 0.3);
+        for (int i = 0; i < 10; i++) {
+            steady.record(80, i);
+            flaky.record(i % 2 == 0 ? LatencyWindow.LOST : 400, i);
+        }
+        flaky.record(20, 10);
+
+        double steadyScore = steady.score(0.6, 0.4, 0.5, 1000);
+        double flakyScore = flaky.score(0.6, 0.4, 0.5, 1000);
+        assertTrue(steadyScore < flakyScore);
+        assertEquals(Double.MAX_VALUE, new LatencyWindow(10, 0.3).score(0.6, 0.4, 0.5, 1000));
+    }
+}